@@ -0,0 +1,204 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -distinct
+ |                                  java ColumnSortSelection -count
+ |                                  java ColumnSortSelection -group=<width>
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  An optional stage after the sort that prints a compact
+ |                  summary of the sorted values instead of every value:
+ |                    distinct   - each distinct value once
+ |                    count      - each distinct value and how many times
+ |                                 it occurs
+ |                    group      - for every bucket of width consecutive
+ |                                 values that occurs, its lowest value and
+ |                                 how many values fall in it
+ |
+ |        Input:  The sorted values, one at a time, in ascending order.
+ |
+ |       Output:  One line per key: "<value>" for distinct, "<key> <count>"
+ |                  for count and group.
+ |
+ |   Techniques:  Because the values arrive in order, equal keys are next
+ |                  to each other, so a key only has to be compared with the
+ |                  last one: O(1) per value and no hash table. The column
+ |                  sort feeds the stage from step8Sort, the pass that
+ |                  already writes every value in sorted order, so the
+ |                  summary costs no extra pass over the data.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * --------------------------------------------------------- Class: AggregateStage
+ *
+ * Purpose: Collapses a sorted stream of values into (key, count) pairs.
+ *
+ * Fields: - String mode: DISTINCT, COUNT or GROUP. - long width: the bucket
+ * width for GROUP, otherwise 1. - long[] keys / int[] counts: the pairs so
+ * far, in ascending key order. - int size: the number of pairs. - long
+ * values: the number of values fed.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class AggregateStage {
+
+	final static String DISTINCT = "distinct"; // Each distinct value once
+	final static String COUNT = "count"; // Each distinct value and its count
+	final static String GROUP = "group"; // Each bucket of width values and its count
+
+	private String mode; // DISTINCT, COUNT or GROUP
+	private long width; // Bucket width; 1 unless mode is GROUP
+
+	private long[] keys = new long[16]; // Keys seen, ascending (long, since a bucket may start below Integer.MIN_VALUE)
+	private int[] counts = new int[16]; // Values with each key
+	private int size; // Number of keys
+	private long values; // Values fed
+
+	/*--------------------------------------------------- AggregateStage -----
+	 |  Constructor AggregateStage
+	 |
+	 |  Parameters:
+	 |      mode (IN) -- DISTINCT, COUNT or GROUP.
+	 |      width (IN) -- the bucket width for GROUP, at least 1.
+	 *-------------------------------------------------------------------*/
+	AggregateStage(String mode, long width) {
+		this.mode = mode;
+		this.width = mode.equals(GROUP) ? width : 1;
+	}
+
+	/*--------------------------------------------------- fromOptions -----
+	 |  Method fromOptions
+	 |
+	 |  Purpose:  Builds the stage asked for on the command line.
+	 |
+	 |  Post-condition: If more than one stage is given, or the group
+	 |      width is not a positive integer, a message is printed and the
+	 |      program terminates.
+	 |
+	 |  Parameters:
+	 |      args (IN) -- the command-line arguments.
+	 |
+	 |  Returns:  The stage, or null if none was asked for.
+	 *-------------------------------------------------------------------*/
+	static AggregateStage fromOptions(String[] args) {
+
+		String group = ColumnSortSelection.optionValue(args, "-group=");
+		boolean distinct = ColumnSortSelection.hasOption(args, "-distinct");
+		boolean count = ColumnSortSelection.hasOption(args, "-count");
+
+		if ((distinct ? 1 : 0) + (count ? 1 : 0) + (group != null ? 1 : 0) > 1) {
+			fail("Only one of -distinct, -count and -group can be given");
+		}
+
+		if (group != null) {
+			long width = 0;
+			try {
+				width = Long.parseLong(group);
+			} catch (NumberFormatException e) {
+				fail("-group needs a bucket width");
+			}
+			if (width < 1) {
+				fail("-group needs a bucket width of at least 1");
+			}
+			return new AggregateStage(GROUP, width);
+		}
+		return distinct ? new AggregateStage(DISTINCT, 1) : count ? new AggregateStage(COUNT, 1) : null;
+	}
+
+	/*--------------------------------------------------- accept -----
+	 |  Method accept
+	 |
+	 |  Purpose:  Adds the next sorted value.
+	 |
+	 |  Pre-condition: value is not smaller than the value before it.
+	 |
+	 |  Parameters:
+	 |      value (IN) -- the value.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void accept(int value) {
+
+		long key = Math.floorDiv((long) value, this.width) * this.width;
+		this.values++;
+
+		if (this.size > 0 && this.keys[this.size - 1] == key) {
+			this.counts[this.size - 1]++;
+			return;
+		}
+
+		if (this.size == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, this.size * 2);
+			this.counts = Arrays.copyOf(this.counts, this.size * 2);
+		}
+		this.keys[this.size] = key;
+		this.counts[this.size] = 1;
+		this.size++;
+	}
+
+	/*--------------------------------------------------- getValues -----
+	 |  Method getValues
+	 |
+	 |  Returns:  The number of values fed so far.
+	 *-------------------------------------------------------------------*/
+	long getValues() {
+		return this.values;
+	}
+
+	/*--------------------------------------------------- describe -----
+	 |  Method describe
+	 |
+	 |  Returns:  A summary line such as "Stage = count, 16 keys from 4100
+	 |      values".
+	 *-------------------------------------------------------------------*/
+	String describe() {
+		return "Stage = " + this.mode + (this.mode.equals(GROUP) ? " (width " + this.width + ")" : "") + ", "
+				+ this.size + (this.size == 1 ? " key from " : " keys from ") + this.values + " values";
+	}
+
+	/*--------------------------------------------------- print -----
+	 |  Method print
+	 |
+	 |  Purpose:  Prints one line per key.
+	 |
+	 |  Parameters:
+	 |      out (IN) -- where to print.
+	 |
+	 |  Returns:  The number of characters printed.
+	 *-------------------------------------------------------------------*/
+	long print(PrintStream out) {
+
+		long bytes = 0;
+		boolean withCount = !this.mode.equals(DISTINCT);
+
+		for (int index = 0; index < this.size; index++) {
+			String line = withCount ? this.keys[index] + " " + this.counts[index] : Long.toString(this.keys[index]);
+			out.println(line);
+			bytes += line.length() + 1;
+		}
+		return bytes;
+	}
+
+	/*--------------------------------------------------- fail -----
+	 |  Method fail
+	 |
+	 |  Purpose:  Prints a message and terminates the program.
+	 |
+	 |  Returns:  None; the program exits.
+	 *-------------------------------------------------------------------*/
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(0);
+	}
+
+}
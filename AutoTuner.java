@@ -0,0 +1,415 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -tune
+ |                                  java ColumnSortSelection -profile=<file>
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Picks the r x s shape, the column kernel and the number of
+ |                  threads for the column sort on the current machine.
+ |                  calculateRowsCols always takes the largest valid s, but
+ |                  which shape is fastest depends on the kernel (selection
+ |                  sort favours short columns, Arrays.sort does not mind
+ |                  tall ones), the caches and the number of cores.
+ |
+ |   Techniques:  A short calibration run times each kernel on a few columns
+ |                  of values sampled from the input, for every valid shape,
+ |                  and scales the time up to the real column height (r^2 for
+ |                  selection sort, r log r for the others). A second run
+ |                  times the same batch of columns on 1, 2, 4, ... threads
+ |                  (through ColumnScheduler) to measure the speedup. The
+ |                  estimate for a configuration is the four sorting passes
+ |                  (steps 1, 3, 5 and 7) over s columns divided by the
+ |                  speedup, which cannot exceed s;
+ |                  the permutation steps cost about the same for every shape,
+ |                  so they are left out. The cheapest estimate wins.
+ |
+ |                  With a profile file the choice is cached per n, keyed by
+ |                  the machine (cores, architecture, Java version), so later
+ |                  runs skip the calibration.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * --------------------------------------------------------- Class: AutoTuner
+ *
+ * Purpose: Holds a tuned configuration, and finds one by calibration or from a
+ * profile file.
+ *
+ * Fields: - int rows / cols: the shape picked. - String kernel: the column
+ * kernel. - int threads: columns sorted at the same time. - int candidates:
+ * shapes considered. - long calibrationNanos: time spent calibrating. - File
+ * profile: the profile the choice came from, or null if it was calibrated.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class AutoTuner {
+
+	final static String[] KERNELS = ColumnSortSelection.KERNELS; // Kernels calibrated
+	final static int SORTING_PASSES = 4; // Steps 1, 3, 5 and 7
+	final static int CALIBRATION_COLUMNS = 4; // Columns timed per shape and kernel
+	final static int SELECTION_ROWS = 1 << 10; // Tallest column timed with selection sort
+	final static int LIBRARY_ROWS = 1 << 14; // Tallest column timed with Arrays.sort
+	final static int MAX_CANDIDATES = 16; // Most shapes calibrated, the ones with the most columns
+	final static String MACHINE_KEY = "machine"; // Profile entry naming the machine it was made on
+
+	int rows; // Number of rows picked (r)
+	int cols; // Number of columns picked (s)
+	String kernel; // Column kernel picked
+	int threads; // Columns sorted at the same time
+
+	int candidates; // Shapes considered
+	long calibrationNanos; // Time spent calibrating
+	File profile; // Profile the choice was read from, or null
+
+	/*--------------------------------------------------- tune -----
+	 |  Method tune
+	 |
+	 |  Purpose:  Picks a configuration for the loaded values: from the
+	 |      profile file if it has one for this machine and n, otherwise
+	 |      by calibration, saving the result to the profile if one was
+	 |      given.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the loaded values.
+	 |      profile (IN) -- the profile file, or null.
+	 |
+	 |  Returns:  The configuration.
+	 *-------------------------------------------------------------------*/
+	static AutoTuner tune(readFile file, File profile) {
+
+		AutoTuner tuner = new AutoTuner();
+
+		if (profile != null && tuner.loadProfile(profile, file.numItems)) {
+			return tuner;
+		}
+
+		tuner.calibrate(file);
+
+		if (profile != null) {
+			tuner.saveProfile(profile, file.numItems);
+		}
+		return tuner;
+	}
+
+	/*--------------------------------------------------- candidateShapes -----
+	 |  Method candidateShapes
+	 |
+	 |  Purpose:  Lists the shapes the column sort can use for n values:
+	 |      for each s, the r readFile.paddedRows gives, with any cells
+	 |      past n left as virtual padding. s = 1 always qualifies. At most
+	 |      MAX_CANDIDATES are kept, preferring the most columns.
+	 |
+	 |  Parameters:
+	 |      n (IN) -- the number of values.
+	 |
+	 |  Returns:  The shapes as {r, s}, shortest columns first.
+	 *-------------------------------------------------------------------*/
+	static List<int[]> candidateShapes(int n) {
+
+		List<int[]> shapes = new ArrayList<int[]>();
+
+		for (long s = (long) Math.cbrt(n / 2.0) + 2; s >= 2 && shapes.size() < MAX_CANDIDATES; s--) {
+			long r = readFile.paddedRows(n, s);
+			if (r > 0) {
+				shapes.add(new int[] { (int) r, (int) s });
+			}
+		}
+		shapes.add(new int[] { n, 1 });
+		return shapes;
+	}
+
+	/*--------------------------------------------------- calibrate -----
+	 |  Method calibrate
+	 |
+	 |  Purpose:  Times the kernels on every candidate shape and the
+	 |      speedup of 1, 2, 4, ... threads, and keeps the configuration
+	 |      with the lowest estimate (see the header).
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the loaded values, sampled for the columns.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void calibrate(readFile file) {
+
+		long start = System.nanoTime();
+		SplittableRandom random = new SplittableRandom(ColumnSortSelection.SAMPLE_SEED);
+
+		// Let the JIT compile every kernel before anything is timed
+		for (String warm : KERNELS) {
+			timeColumns(file, 64, 256, warm, 1, random);
+		}
+
+		List<int[]> shapes = candidateShapes(file.numItems);
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		// Speedup of each thread count on the same batch of columns
+		List<Integer> threadCounts = new ArrayList<Integer>();
+		List<Double> speedups = new ArrayList<Double>();
+		int batchRows = Math.min(file.numItems, LIBRARY_ROWS / 4);
+		long single = 0;
+		for (int count = 1; count <= cores; count = count * 2 > cores && count < cores ? cores : count * 2) {
+			long nanos = timeColumns(file, batchRows, 2 * cores, ColumnSortSelection.LIBRARY_KERNEL, count, random);
+			single = count == 1 ? nanos : single;
+			threadCounts.add(count);
+			speedups.add((double) single / Math.max(1, nanos));
+		}
+
+		double best = Double.MAX_VALUE;
+
+		for (String candidate : KERNELS) {
+
+			int lastRows = -1; // Height timed for the previous shape
+			double lastTime = 0; // Its time per column
+
+			for (int[] shape : shapes) {
+
+				int r = shape[0];
+				int s = shape[1];
+				int timedRows = Math.min(r, candidate.equals(ColumnSortSelection.SELECTION_KERNEL)
+						? SELECTION_ROWS : LIBRARY_ROWS);
+				int timedCols = Math.min(s, CALIBRATION_COLUMNS);
+
+				// Once the columns are taller than the timed height, the timing is the same
+				if (timedRows != lastRows) {
+					lastTime = (double) timeColumns(file, timedRows, timedCols, candidate, 1, random) / timedCols;
+					lastRows = timedRows;
+				}
+
+				double perColumn = lastTime * scale(candidate, timedRows, r);
+				double serial = SORTING_PASSES * (double) s * perColumn;
+
+				for (int index = 0; index < threadCounts.size(); index++) {
+					double estimate = serial / Math.min(speedups.get(index), s);
+					if (estimate < best) {
+						best = estimate;
+						this.rows = r;
+						this.cols = s;
+						this.kernel = candidate;
+						this.threads = threadCounts.get(index);
+					}
+				}
+			}
+		}
+
+		this.candidates = shapes.size();
+		this.calibrationNanos = System.nanoTime() - start;
+	}
+
+	/*--------------------------------------------------- scale -----
+	 |  Method scale
+	 |
+	 |  Purpose:  How much longer a column of r values takes than the
+	 |      timed column of timedRows values, for the given kernel.
+	 |
+	 |  Parameters:
+	 |      kernel (IN) -- the kernel.
+	 |      timedRows (IN) -- the height that was timed.
+	 |      r (IN) -- the real height.
+	 |
+	 |  Returns:  The factor, 1 if the whole column was timed.
+	 *-------------------------------------------------------------------*/
+	private static double scale(String kernel, int timedRows, int r) {
+
+		double ratio = (double) r / timedRows;
+
+		if (kernel.equals(ColumnSortSelection.SELECTION_KERNEL)) {
+			return ratio * ratio;
+		}
+		return ratio * Math.log(Math.max(2, r)) / Math.log(Math.max(2, timedRows));
+	}
+
+	/*--------------------------------------------------- timeColumns -----
+	 |  Method timeColumns
+	 |
+	 |  Purpose:  Fills columns with values sampled from the input and
+	 |      times sorting them with the given kernel and thread count.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the loaded values.
+	 |      rows (IN) -- the height of each column.
+	 |      columns (IN) -- the number of columns.
+	 |      kernel (IN) -- the kernel.
+	 |      threads (IN) -- columns sorted at the same time.
+	 |      random (IN) -- picks the sampled values.
+	 |
+	 |  Returns:  The time to sort the columns, in nanoseconds.
+	 *-------------------------------------------------------------------*/
+	private static long timeColumns(readFile file, int rows, int columns, String kernel, int threads,
+			SplittableRandom random) {
+
+		Integer[][] sample = new Integer[columns][rows];
+		for (Integer[] column : sample) {
+			for (int row = 0; row < rows; row++) {
+				do { // Skip the virtual padding
+					column[row] = file.sortCol[random.nextInt(file.ROWS)][random.nextInt(file.COLS)];
+				} while (column[row] == null);
+			}
+		}
+
+		if (threads == 1) {
+			long start = System.nanoTime();
+			for (Integer[] column : sample) {
+				ColumnSortSelection.sortValues(column, kernel);
+			}
+			return System.nanoTime() - start;
+		}
+
+		// The sort itself lays a matrix out by row, as ColumnScheduler expects
+		Integer[][] matrix = new Integer[rows][columns];
+		for (int col = 0; col < columns; col++) {
+			for (int row = 0; row < rows; row++) {
+				matrix[row][col] = sample[col][row];
+			}
+		}
+
+		long start = System.nanoTime();
+		new ColumnScheduler(threads).sortColumns(matrix, matrix, columns, kernel);
+		return System.nanoTime() - start;
+	}
+
+	/*--------------------------------------------------- describe -----
+	 |  Method describe
+	 |
+	 |  Returns:  The line printed after n, r and s, such as "Tuned =
+	 |      library kernel, 4 threads (calibrated 6 shapes in 0.210
+	 |      seconds)".
+	 *-------------------------------------------------------------------*/
+	String describe() {
+		return "Tuned = " + this.kernel + " kernel, " + this.threads + (this.threads == 1 ? " thread (" : " threads (")
+				+ (this.profile != null ? "from profile " + this.profile
+						: "calibrated " + this.candidates + " shapes in "
+								+ ColumnSortSelection.formatToThreeDecimals(this.calibrationNanos / ColumnSortSelection.BILLION)
+								+ " seconds")
+				+ ")";
+	}
+
+	/*--------------------------------------------------- machine -----
+	 |  Method machine
+	 |
+	 |  Returns:  A description of this machine. A profile made on a
+	 |      different one is not used.
+	 *-------------------------------------------------------------------*/
+	static String machine() {
+		return Runtime.getRuntime().availableProcessors() + " cores, " + System.getProperty("os.arch") + ", Java "
+				+ System.getProperty("java.version");
+	}
+
+	/*--------------------------------------------------- loadProfile -----
+	 |  Method loadProfile
+	 |
+	 |  Purpose:  Reads the configuration for n from the profile file. An
+	 |      entry is "<n> = <r> <s> <kernel> <threads>".
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the profile file.
+	 |      n (IN) -- the number of values.
+	 |
+	 |  Returns:  true if the file exists, was made on this machine and
+	 |      has a valid entry for n.
+	 *-------------------------------------------------------------------*/
+	private boolean loadProfile(File file, int n) {
+
+		Properties entries = readProfile(file);
+		String entry = entries.getProperty(Integer.toString(n));
+
+		if (entry == null || !machine().equals(entries.getProperty(MACHINE_KEY))) {
+			return false;
+		}
+
+		String[] fields = entry.trim().split("\\s+");
+		try {
+			int r = Integer.parseInt(fields[0]);
+			int s = Integer.parseInt(fields[1]);
+			boolean known = Arrays.asList(KERNELS).contains(fields[2]);
+
+			if (fields.length != 4 || !known || s < 1 || (s == 1 ? r != n : readFile.paddedRows(n, s) != r)) {
+				return false;
+			}
+			this.rows = r;
+			this.cols = s;
+			this.kernel = fields[2];
+			this.threads = Math.max(1, Integer.parseInt(fields[3]));
+
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			return false;
+		}
+
+		this.profile = file;
+		return true;
+	}
+
+	/*--------------------------------------------------- saveProfile -----
+	 |  Method saveProfile
+	 |
+	 |  Purpose:  Adds the configuration for n to the profile file. The
+	 |      other entries are kept if they were made on this machine and
+	 |      dropped otherwise. A file that cannot be written only costs
+	 |      the next run a calibration, so the error is reported and the
+	 |      sort goes on.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the profile file.
+	 |      n (IN) -- the number of values.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void saveProfile(File file, int n) {
+
+		Properties entries = readProfile(file);
+		if (!machine().equals(entries.getProperty(MACHINE_KEY))) {
+			entries.clear();
+		}
+		entries.setProperty(MACHINE_KEY, machine());
+		entries.setProperty(Integer.toString(n), this.rows + " " + this.cols + " " + this.kernel + " " + this.threads);
+
+		try (OutputStream out = new FileOutputStream(file)) {
+			entries.store(out, "ColumnSortSelection tuning profile: <n> = <r> <s> <kernel> <threads>");
+		} catch (IOException e) {
+			System.err.println("Could not save the tuning profile " + file + ": " + e.getMessage());
+		}
+	}
+
+	/*--------------------------------------------------- readProfile -----
+	 |  Method readProfile
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the profile file.
+	 |
+	 |  Returns:  Its entries, or none if it does not exist or cannot be
+	 |      read.
+	 *-------------------------------------------------------------------*/
+	private static Properties readProfile(File file) {
+
+		Properties entries = new Properties();
+
+		if (file.isFile()) {
+			try (InputStream in = new FileInputStream(file)) {
+				entries.load(in);
+			} catch (IOException | IllegalArgumentException e) {
+				entries.clear();
+			}
+		}
+		return entries;
+	}
+
+}
@@ -0,0 +1,370 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -checkpoint=<file>
+ |                                  java ColumnSortSelection -resume=<file>
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Checkpoints for the column sort. After each of the eight
+ |                  steps the matrix and the number of the step just
+ |                  finished are written to a file, so a run that dies part
+ |                  way through can be resumed from the last finished step
+ |                  instead of reading the input and redoing every step.
+ |
+ |       Format:  All numbers are big-endian, written with one sequential
+ |                  pass through a FileChannel:
+ |                    int  MAGIC, int VERSION, int step,
+ |                    int  numItems, int ROWS, int COLS, int matrixCols,
+ |                    long count, long sum, long hash   (input checksum)
+ |                    int  value * (ROWS * matrixCols)  (the matrix in CMO)
+ |                    int  index * (ROWS * COLS - numItems)
+ |                    long CRC-32 of everything before it
+ |                  matrixCols is COLS, or COLS + 1 between steps 6 and 8
+ |                  while the shifted matrix is being sorted. The indexes
+ |                  list the CMO positions of the virtual padding, which is
+ |                  written as PADDING in the matrix since every int is a
+ |                  possible value.
+ |
+ |   Techniques:  Each checkpoint is written to a temporary file next to the
+ |                  target, forced to disk and then moved over the target in
+ |                  one atomic rename, so a crash while writing leaves the
+ |                  previous checkpoint intact.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * --------------------------------------------------------- Class: Checkpoint
+ *
+ * Purpose: Saves the state of a ColumnSortSelection after each step and loads
+ * it back. A Checkpoint read from a file also carries the matrix and the
+ * input checksum it was saved with.
+ *
+ * Fields: - Path path: the checkpoint file. - SortChecksum input: checksum of
+ * the values read, kept so a resumed run can still be verified. - int step:
+ * the last step saved or loaded. - int numItems / ROWS / COLS: the shape. -
+ * Integer[][] matrix: the matrix loaded by load, or null. - int writes /
+ * long writeNanos / long largestBytes: what the checkpoints have cost.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class Checkpoint {
+
+	final static int MAGIC = 0x43534350; // "CSCP"
+	final static int VERSION = 2; // Format version
+	final static int HEADER_BYTES = 7 * Integer.BYTES + 3 * Long.BYTES; // Bytes before the matrix
+	final static int PADDING = Integer.MAX_VALUE; // Written for a virtual padding (null) cell
+	final static int BUFFER_BYTES = 1 << 20; // Bytes written or read per channel call
+
+	private Path path; // The checkpoint file
+	SortChecksum input; // Checksum of the values read
+
+	int step; // Last step saved or loaded
+	int numItems; // Total number of items
+	int ROWS; // Number of rows (r)
+	int COLS; // Number of columns (s)
+	Integer[][] matrix; // Matrix loaded by load, or null
+
+	int writes; // Checkpoints written
+	long writeNanos; // Time spent writing them
+	long largestBytes; // Size of the largest one
+
+	/*--------------------------------------------------- Checkpoint -----
+	 |  Constructor Checkpoint
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the checkpoint file; it is replaced after every
+	 |          step.
+	 |      input (IN) -- the checksum of the values read.
+	 *-------------------------------------------------------------------*/
+	Checkpoint(File file, SortChecksum input) {
+		this.path = file.toPath();
+		this.input = input;
+	}
+
+	/*--------------------------------------------------- save -----
+	 |  Method save
+	 |
+	 |  Purpose:  Writes the matrix after a step, in the format described
+	 |      above, and adds the time and size to the totals.
+	 |
+	 |  Pre-condition: matrix is the state the step left behind (see
+	 |      ColumnSortSelection.stepState).
+	 |
+	 |  Post-condition: The checkpoint file holds this step. If it cannot
+	 |      be written, a message is printed and the program exits.
+	 |
+	 |  Parameters:
+	 |      step (IN) -- the step just finished, 1 to 8.
+	 |      matrix (IN) -- the matrix, r rows of s or s + 1 values.
+	 |      numItems (IN) -- the number of values.
+	 |      cols (IN) -- the number of columns, s.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void save(int step, Integer[][] matrix, int numItems, int cols) {
+
+		long start = System.nanoTime();
+
+		int rows = matrix.length;
+		int matrixCols = matrix[0].length;
+		Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			CRC32 crc = new CRC32();
+
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(step);
+			buffer.putInt(numItems).putInt(rows).putInt(cols).putInt(matrixCols);
+			buffer.putLong(this.input.count).putLong(this.input.sum).putLong(this.input.hash);
+
+			int[] padding = new int[rows * cols - numItems];
+			int padded = 0;
+
+			for (int col = 0; col < matrixCols; col++) {
+				for (int row = 0; row < rows; row++) {
+					if (!buffer.hasRemaining()) {
+						drain(channel, buffer, crc);
+					}
+					if (matrix[row][col] == null) {
+						padding[padded++] = col * rows + row;
+						buffer.putInt(PADDING);
+					} else {
+						buffer.putInt(matrix[row][col]);
+					}
+				}
+			}
+			for (int index : padding) {
+				if (!buffer.hasRemaining()) {
+					drain(channel, buffer, crc);
+				}
+				buffer.putInt(index);
+			}
+			drain(channel, buffer, crc);
+
+			buffer.putLong(crc.getValue());
+			drain(channel, buffer, null);
+
+			channel.force(true);
+
+		} catch (IOException e) {
+			fail("Could not write the checkpoint " + temp + ": " + e.getMessage());
+		}
+
+		try {
+			Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			fail("Could not replace the checkpoint " + this.path + ": " + e.getMessage());
+		}
+
+		this.step = step;
+		this.writes++;
+		this.writeNanos += System.nanoTime() - start;
+		this.largestBytes = Math.max(this.largestBytes, size(rows, cols, matrixCols, numItems));
+	}
+
+	/*--------------------------------------------------- drain -----
+	 |  Method drain
+	 |
+	 |  Purpose:  Writes out what the buffer holds and empties it.
+	 |
+	 |  Parameters:
+	 |      channel (IN) -- the file being written.
+	 |      buffer (IN) -- the bytes to write, from 0 to its position.
+	 |      crc (IN) -- updated with the bytes written, or null.
+	 |
+	 |  Throws: IOException if the write fails.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private static void drain(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+		buffer.flip();
+		if (crc != null) {
+			crc.update(buffer.duplicate());
+		}
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/*--------------------------------------------------- load -----
+	 |  Method load
+	 |
+	 |  Purpose:  Reads a checkpoint back, checking the magic number,
+	 |      version, size and CRC first.
+	 |
+	 |  Post-condition: step, the shape, matrix and input are set. If the
+	 |      file is missing, damaged or from another version, a message is
+	 |      printed and the program exits.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the checkpoint file.
+	 |
+	 |  Returns:  The loaded checkpoint, which will keep saving to the
+	 |      same file.
+	 *-------------------------------------------------------------------*/
+	static Checkpoint load(File file) {
+
+		Checkpoint checkpoint = new Checkpoint(file, new SortChecksum());
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			CRC32 crc = new CRC32();
+
+			fill(channel, buffer, HEADER_BYTES, crc);
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				fail(file + " is not a checkpoint written by this version");
+			}
+			checkpoint.step = buffer.getInt();
+			checkpoint.numItems = buffer.getInt();
+			checkpoint.ROWS = buffer.getInt();
+			checkpoint.COLS = buffer.getInt();
+			int matrixCols = buffer.getInt();
+			checkpoint.input.count = buffer.getLong();
+			checkpoint.input.sum = buffer.getLong();
+			checkpoint.input.hash = buffer.getLong();
+
+			long cells = (long) checkpoint.ROWS * checkpoint.COLS;
+			if (checkpoint.step < 1 || checkpoint.step > 8 || cells < checkpoint.numItems || cells > Integer.MAX_VALUE
+					|| (matrixCols != checkpoint.COLS && matrixCols != checkpoint.COLS + 1)) {
+				fail(file + " is damaged (bad header)");
+			}
+			long expected = size(checkpoint.ROWS, checkpoint.COLS, matrixCols, checkpoint.numItems);
+			if (channel.size() != expected) {
+				fail(file + " is damaged (expected " + expected + " bytes, found " + channel.size() + ")");
+			}
+
+			Integer[][] matrix = new Integer[checkpoint.ROWS][matrixCols];
+			for (int col = 0; col < matrixCols; col++) {
+				for (int row = 0; row < checkpoint.ROWS; row++) {
+					if (!buffer.hasRemaining()) {
+						long left = (long) (matrixCols - col) * checkpoint.ROWS - row;
+						fill(channel, buffer, (int) Math.min(BUFFER_BYTES, left * Integer.BYTES), crc);
+					}
+					matrix[row][col] = buffer.getInt();
+				}
+			}
+			// Empty the cells that hold virtual padding
+			int padding = (int) (cells - checkpoint.numItems);
+			for (int pad = 0; pad < padding; pad++) {
+				if (!buffer.hasRemaining()) {
+					fill(channel, buffer, Math.min(BUFFER_BYTES, (padding - pad) * Integer.BYTES), crc);
+				}
+				int index = buffer.getInt();
+				if (index < 0 || index >= checkpoint.ROWS * matrixCols) {
+					fail(file + " is damaged (bad padding index)");
+				}
+				matrix[index % checkpoint.ROWS][index / checkpoint.ROWS] = null;
+			}
+			long computed = crc.getValue();
+
+			fill(channel, buffer, Long.BYTES, null);
+			if (buffer.getLong() != computed) {
+				fail(file + " is damaged (CRC mismatch)");
+			}
+			checkpoint.matrix = matrix;
+
+		} catch (IOException e) {
+			fail("Could not read the checkpoint " + file + ": " + e.getMessage());
+		}
+		return checkpoint;
+	}
+
+	/*--------------------------------------------------- size -----
+	 |  Method size
+	 |
+	 |  Parameters:
+	 |      rows (IN) -- r.
+	 |      cols (IN) -- s.
+	 |      matrixCols (IN) -- the columns saved, s or s + 1.
+	 |      numItems (IN) -- n.
+	 |
+	 |  Returns:  The size in bytes of a checkpoint of this shape.
+	 *-------------------------------------------------------------------*/
+	private static long size(int rows, int cols, int matrixCols, int numItems) {
+		long padding = (long) rows * cols - numItems;
+		return HEADER_BYTES + ((long) rows * matrixCols + padding) * Integer.BYTES + Long.BYTES;
+	}
+
+	/*--------------------------------------------------- fill -----
+	 |  Method fill
+	 |
+	 |  Purpose:  Reads exactly the given number of bytes into the buffer
+	 |      and readies it for reading.
+	 |
+	 |  Parameters:
+	 |      channel (IN) -- the file being read.
+	 |      buffer (IN) -- the buffer to fill.
+	 |      bytes (IN) -- the number of bytes to read.
+	 |      crc (IN) -- updated with the bytes read, or null.
+	 |
+	 |  Throws: IOException if the file ends early or cannot be read.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private static void fill(FileChannel channel, ByteBuffer buffer, int bytes, CRC32 crc) throws IOException {
+		buffer.clear().limit(bytes);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("the file ends early");
+			}
+		}
+		buffer.flip();
+		if (crc != null) {
+			crc.update(buffer.duplicate());
+		}
+	}
+
+	/*--------------------------------------------------- report -----
+	 |  Method report
+	 |
+	 |  Purpose:  Describes what the checkpoints cost, for the summary.
+	 |
+	 |  Parameters:
+	 |      seconds (IN) -- the elapsed time of the sort, which includes
+	 |          the checkpoints.
+	 |
+	 |  Returns:  A line such as "Checkpoints = 8 written to ck.bin in
+	 |      0.120 seconds (14.2% of the sort), largest = 164036 bytes".
+	 *-------------------------------------------------------------------*/
+	String report(double seconds) {
+		double writeSeconds = this.writeNanos / ColumnSortSelection.BILLION;
+		return "Checkpoints = " + this.writes + " written to " + this.path + " in "
+				+ ColumnSortSelection.formatToThreeDecimals(writeSeconds) + " seconds ("
+				+ ColumnSortSelection.formatToThreeDecimals(seconds > 0 ? 100 * writeSeconds / seconds : 0)
+				+ "% of the sort), largest = " + this.largestBytes + " bytes";
+	}
+
+	/*--------------------------------------------------- fail -----
+	 |  Method fail
+	 |
+	 |  Purpose:  Prints a message and terminates the program.
+	 |
+	 |  Returns:  None; the program exits.
+	 *-------------------------------------------------------------------*/
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,201 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -emit
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Prints the sorted values while the column sort is still
+ |                  running. After step 6 shifts the matrix down by r / 2,
+ |                  step 7 sorts each of its s + 1 columns, and once a
+ |                  column is sorted every value in it is already in its
+ |                  final place: step 8 only shifts them back. So each
+ |                  column can be printed as soon as step 7 has sorted it
+ |                  and every column before it, instead of after step 8 and
+ |                  the summary.
+ |
+ |        Input:  The shifted matrix of step 7 and the columns it has
+ |                  sorted, in any order.
+ |
+ |       Output:  The values in ascending order on System.out, one per
+ |                  line, as print2dArray prints them. The markers step 6
+ |                  added and the virtual padding are skipped. The values
+ |                  are out before verify runs, so a failed check still
+ |                  exits with status 1, but only after they were printed.
+ |
+ |   Techniques:  A cursor holds the first column not printed yet; a
+ |                  sorted column only moves it along if the columns
+ |                  before it are sorted too, so columns the scheduler
+ |                  finishes out of order wait for the gap to be filled.
+ |                  The printing itself is done by one writer thread,
+ |                  through its own buffer over System.out flushed after
+ |                  every column, so the sorting threads never wait on the
+ |                  output and a reader downstream gets whole columns as
+ |                  they are ready.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.BufferedOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * --------------------------------------------------------- Class: ColumnEmitter
+ *
+ * Purpose: Prints the columns of step 7 in order as they become final.
+ *
+ * Fields: - Integer[][] matrix: the shifted matrix. - boolean[] sorted: the
+ * columns step 7 has sorted. - int next: the first column not handed to the
+ * writer yet. - ExecutorService writer: the thread that prints. - long
+ * firstOutput: when the first column was printed. - long bytes: characters
+ * printed.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class ColumnEmitter {
+
+	final static int BUFFER_BYTES = 1 << 16; // Output buffer of the writer thread
+
+	private final Integer[][] matrix; // The shifted matrix, r x (s + 1)
+	private final int rows; // r
+	private final int cols; // s + 1
+	private final long start; // When the sort started, from System.nanoTime
+	private final boolean[] sorted; // The columns step 7 has sorted, guarded by this
+	private int next; // First column not handed to the writer, guarded by this
+
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "column-emitter");
+		thread.setDaemon(true);
+		return thread;
+	}); // Prints the columns, one at a time, in order
+	private final PrintStream out = new PrintStream(new BufferedOutputStream(System.out, BUFFER_BYTES), false); // System.out, without a flush per line
+
+	private volatile long firstOutput; // When the first column was printed, or 0
+	private long bytes; // Characters printed, written by the writer thread only
+	private final SortMonitor.OutputEvent event = SortMonitor.beginPhase(new SortMonitor.OutputEvent()); // The output, from the first column to finish
+
+	/*--------------------------------------------------- ColumnEmitter -----
+	 |  Constructor ColumnEmitter
+	 |
+	 |  Parameters:
+	 |      matrix (IN) -- the matrix step 6 built; step 7 writes the
+	 |          sorted columns into its rows.
+	 |      start (IN) -- when the sort started, from System.nanoTime.
+	 *-------------------------------------------------------------------*/
+	ColumnEmitter(Integer[][] matrix, long start) {
+		this.matrix = matrix;
+		this.rows = matrix.length;
+		this.cols = matrix[0].length;
+		this.start = start;
+		this.sorted = new boolean[this.cols];
+		System.out.flush(); // Anything printed before goes out ahead of the values
+	}
+
+	/*--------------------------------------------------- columnSorted -----
+	 |  Method columnSorted
+	 |
+	 |  Purpose:  Records that step 7 has written a sorted column, and
+	 |      hands every column from the cursor on that is now ready to the
+	 |      writer. Safe to call from any sorting thread.
+	 |
+	 |  Pre-condition: The column is sorted and will not be written again.
+	 |
+	 |  Parameters:
+	 |      col (IN) -- the column.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	synchronized void columnSorted(int col) {
+		this.sorted[col] = true;
+		while (this.next < this.cols && this.sorted[this.next]) {
+			int ready = this.next++;
+			this.writer.execute(() -> print(ready));
+		}
+	}
+
+	/*--------------------------------------------------- print -----
+	 |  Method print
+	 |
+	 |  Purpose:  Prints one column on the writer thread, skipping the
+	 |      markers by position as step8Sort does, and the padding.
+	 |
+	 |  Parameters:
+	 |      col (IN) -- the column.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void print(int col) {
+
+		int half = this.rows / 2; // Rows of markers at the top of column 0 and from here down in the last
+
+		for (int row = 0; row < this.rows; row++) {
+			if ((col == 0 && row < half) || (col == this.cols - 1 && row >= half)) {
+				continue; // A marker from step 6
+			}
+			Integer value = this.matrix[row][col];
+			if (value != null) { // Virtual padding is never printed
+				String line = value.toString();
+				this.out.println(line);
+				this.bytes += line.length() + 1;
+			}
+		}
+		this.out.flush();
+
+		if (this.firstOutput == 0) {
+			this.firstOutput = System.nanoTime();
+		}
+	}
+
+	/*--------------------------------------------------- finish -----
+	 |  Method finish
+	 |
+	 |  Purpose:  Waits for the writer to print every column handed to
+	 |      it and stops it.
+	 |
+	 |  Pre-condition: Step 7 has sorted every column.
+	 |
+	 |  Post-condition: Every value is printed and flushed.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void finish() {
+		this.writer.shutdown();
+		try {
+			this.writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while printing columns", e);
+		}
+		this.out.flush();
+		SortMonitor.output(this.event, this.bytes);
+	}
+
+	/*--------------------------------------------------- describe -----
+	 |  Method describe
+	 |
+	 |  Purpose:  Compares when the first value was printed with when the
+	 |      sort finished step 8, the earliest it could have been printed
+	 |      without -emit.
+	 |
+	 |  Pre-condition: finish has returned.
+	 |
+	 |  Parameters:
+	 |      seconds (IN) -- the elapsed time of the sort, from start.
+	 |
+	 |  Returns:  The line for the summary, such as "Emitted = first
+	 |      value after 0.012 seconds, step 8 done after 0.107 seconds."
+	 *-------------------------------------------------------------------*/
+	String describe(double seconds) {
+		return "Emitted = first value after "
+				+ ColumnSortSelection.formatToThreeDecimals((this.firstOutput - this.start) / ColumnSortSelection.BILLION)
+				+ " seconds, step 8 done after " + ColumnSortSelection.formatToThreeDecimals(seconds) + " seconds.";
+	}
+
+}
@@ -0,0 +1,439 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Sorts the columns of a matrix on several threads for steps
+ |                  1, 3, 5 and 7 of the column sort. Columns do not cost the
+ |                  same (the selection kernel's cost depends on the data, and
+ |                  Arrays.sort is faster on presorted runs), so handing each
+ |                  thread a fixed share of whole columns leaves the step
+ |                  waiting on whichever thread drew the slowest ones.
+ |
+ |   Techniques:  The work is cut into pieces: whole columns when there are
+ |                  plenty of them, otherwise row ranges of at least
+ |                  MIN_PIECE_ROWS, aiming for TASKS_PER_THREAD pieces per
+ |                  thread. Each thread starts with a contiguous range of
+ |                  pieces, packed as (next, end) into one AtomicLong, and
+ |                  takes from the front of it with a compare-and-set. A
+ |                  thread that runs out steals the back half of another
+ |                  thread's range the same way, so no locks are taken and the
+ |                  threads finish within about one piece of each other. The
+ |                  thread that sorts the last piece of a column merges the
+ |                  column's sorted pieces and writes it back. Progress is
+ |                  counted in atomics here and in SortMonitor.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * --------------------------------------------------------- Class: ColumnScheduler
+ *
+ * Purpose: Sorts every column of a matrix with a given kernel on a fixed
+ * number of threads, stealing work at sub-column granularity.
+ *
+ * Fields: - int threads: the threads that sort, the caller included. - the
+ * counters of the pieces sorted, columns sorted and ranges stolen over every
+ * call.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class ColumnScheduler {
+
+	final static int MIN_PIECE_ROWS = 512; // Shortest row range a column is cut into
+	final static int TASKS_PER_THREAD = 4; // Pieces per thread aimed for, so there is work left to steal
+
+	private final int threads; // Threads that sort, the caller included
+
+	private final AtomicLong piecesSorted = new AtomicLong(); // Pieces sorted over every call
+	private final AtomicLong columnsSorted = new AtomicLong(); // Columns sorted over every call
+	private final AtomicLong steals = new AtomicLong(); // Ranges stolen over every call
+	private volatile int pieceRows; // Rows per piece in the last call
+
+	/**
+	 * The state of one call of sortColumns, shared by its threads.
+	 */
+	private static class Pass {
+		Integer[][] from; // Matrix the columns are read from
+		Integer[][] to; // Matrix the sorted columns are written to
+		String kernel; // Column kernel, see ColumnSortSelection.sortValues
+		int rows; // Rows of the matrix
+		int pieces; // Pieces per column
+		AtomicLong[] ranges; // Each thread's (next, end) range of pieces
+		AtomicIntegerArray remaining; // Pieces of each column not sorted yet
+		AtomicReferenceArray<Integer[]> buffers; // Each column's values while its pieces are sorted
+		IntConsumer sorted; // Told each column written back, or null
+		SortMonitor.Job job; // The caller's job, for the progress of its step
+	}
+
+	/*--------------------------------------------------- ColumnScheduler -----
+	 |  Constructor ColumnScheduler
+	 |
+	 |  Parameters:
+	 |      threads (IN) -- the threads to sort with, at least 2.
+	 *-------------------------------------------------------------------*/
+	ColumnScheduler(int threads) {
+		this.threads = threads;
+	}
+
+	/*--------------------------------------------------- sortColumns -----
+	 |  Method sortColumns
+	 |
+	 |  Purpose:  Sorts the first cols columns of from into to, which may
+	 |      be the same matrix or share its rows. The calling thread works
+	 |      as one of the threads.
+	 |
+	 |  Pre-condition: from and to have the same number of rows and at
+	 |      least cols columns.
+	 |
+	 |  Post-condition: Each of the columns of to holds the same column
+	 |      of from, sorted, with the virtual padding last.
+	 |
+	 |  Parameters:
+	 |      from (IN) -- the matrix to read.
+	 |      to (OUT) -- the matrix to write.
+	 |      cols (IN) -- the columns to sort.
+	 |      kernel (IN) -- one of ColumnSortSelection.KERNELS.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void sortColumns(Integer[][] from, Integer[][] to, int cols, String kernel) {
+		sortColumns(from, to, cols, kernel, null);
+	}
+
+	/*--------------------------------------------------- sortColumns -----
+	 |  Method sortColumns
+	 |
+	 |  Purpose:  As above, and tells sorted about each column as soon as
+	 |      it is written back, on the thread that wrote it. Columns are
+	 |      finished in no particular order.
+	 |
+	 |  Parameters:
+	 |      from (IN) -- the matrix to read.
+	 |      to (OUT) -- the matrix to write.
+	 |      cols (IN) -- the columns to sort.
+	 |      kernel (IN) -- one of ColumnSortSelection.KERNELS.
+	 |      sorted (IN) -- called with each column sorted, or null.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void sortColumns(Integer[][] from, Integer[][] to, int cols, String kernel, IntConsumer sorted) {
+
+		Pass pass = new Pass();
+		pass.from = from;
+		pass.to = to;
+		pass.kernel = kernel;
+		pass.sorted = sorted;
+		pass.job = SortMonitor.job();
+		pass.rows = from.length;
+		pass.pieces = piecesPerColumn(pass.rows, cols);
+		pass.remaining = new AtomicIntegerArray(cols);
+		pass.buffers = new AtomicReferenceArray<Integer[]>(cols);
+		for (int col = 0; col < cols; col++) {
+			pass.remaining.set(col, pass.pieces);
+		}
+		this.pieceRows = pass.rows / pass.pieces;
+
+		// Deal the pieces out in contiguous ranges, so each thread mostly
+		// sorts all the pieces of its own columns
+		int tasks = cols * pass.pieces;
+		pass.ranges = new AtomicLong[this.threads];
+		for (int thread = 0; thread < this.threads; thread++) {
+			pass.ranges[thread] = new AtomicLong(
+					pack((int) ((long) tasks * thread / this.threads), (int) ((long) tasks * (thread + 1) / this.threads)));
+		}
+
+		Thread[] workers = new Thread[this.threads - 1];
+		for (int thread = 1; thread < this.threads; thread++) {
+			final int self = thread;
+			workers[thread - 1] = new Thread(() -> work(pass, self), "column-sort-" + thread);
+			workers[thread - 1].setDaemon(true);
+			workers[thread - 1].start();
+		}
+
+		work(pass, 0);
+
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while sorting columns", e);
+			}
+		}
+	}
+
+	/*--------------------------------------------------- piecesPerColumn -----
+	 |  Method piecesPerColumn
+	 |
+	 |  Purpose:  Picks how many row ranges each column is cut into: one
+	 |      when there are TASKS_PER_THREAD columns per thread already,
+	 |      otherwise enough to get there, as long as no piece is shorter
+	 |      than MIN_PIECE_ROWS.
+	 |
+	 |  Parameters:
+	 |      rows (IN) -- the rows of a column.
+	 |      cols (IN) -- the columns to sort.
+	 |
+	 |  Returns:  The pieces per column, at least 1.
+	 *-------------------------------------------------------------------*/
+	private int piecesPerColumn(int rows, int cols) {
+		int wanted = this.threads * TASKS_PER_THREAD;
+		int pieces = (wanted + cols - 1) / Math.max(1, cols);
+		return Math.max(1, Math.min(pieces, rows / MIN_PIECE_ROWS));
+	}
+
+	/*--------------------------------------------------- work -----
+	 |  Method work
+	 |
+	 |  Purpose:  The loop of one thread: sort pieces from its own range
+	 |      until it is empty, then steal, until there is nothing left.
+	 |
+	 |  Parameters:
+	 |      pass (IN) -- the call's shared state.
+	 |      self (IN) -- the thread's index.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void work(Pass pass, int self) {
+		while (true) {
+			int task = take(pass.ranges[self]);
+			if (task < 0) {
+				task = steal(pass, self);
+				if (task < 0) {
+					return;
+				}
+			}
+			sortPiece(pass, task);
+		}
+	}
+
+	/*--------------------------------------------------- take -----
+	 |  Method take
+	 |
+	 |  Purpose:  Takes the next piece from the front of a range.
+	 |
+	 |  Parameters:
+	 |      range (IN/OUT) -- the packed (next, end) range.
+	 |
+	 |  Returns:  The piece, or -1 if the range is empty.
+	 *-------------------------------------------------------------------*/
+	private static int take(AtomicLong range) {
+		while (true) {
+			long current = range.get();
+			int next = next(current);
+			int end = end(current);
+			if (next >= end) {
+				return -1;
+			}
+			if (range.compareAndSet(current, pack(next + 1, end))) {
+				return next;
+			}
+		}
+	}
+
+	/*--------------------------------------------------- steal -----
+	 |  Method steal
+	 |
+	 |  Purpose:  Takes the back half of the first other thread's range
+	 |      that is not empty. The first piece of it is returned and the
+	 |      rest becomes this thread's range.
+	 |
+	 |  Pre-condition: This thread's own range is empty.
+	 |
+	 |  Parameters:
+	 |      pass (IN) -- the call's shared state.
+	 |      self (IN) -- the thread's index.
+	 |
+	 |  Returns:  The piece, or -1 if every range is empty.
+	 *-------------------------------------------------------------------*/
+	private int steal(Pass pass, int self) {
+
+		for (int offset = 1; offset < this.threads; offset++) {
+
+			AtomicLong victim = pass.ranges[(self + offset) % this.threads];
+
+			while (true) {
+				long current = victim.get();
+				int next = next(current);
+				int end = end(current);
+				if (next >= end) {
+					break;
+				}
+				int middle = next + (end - next) / 2; // The victim keeps [next, middle)
+				if (victim.compareAndSet(current, pack(next, middle))) {
+					pass.ranges[self].set(pack(middle + 1, end));
+					this.steals.incrementAndGet();
+					SortMonitor.stolen();
+					return middle;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/*--------------------------------------------------- sortPiece -----
+	 |  Method sortPiece
+	 |
+	 |  Purpose:  Sorts one piece. A whole column is sorted and written
+	 |      back at once. A row range is copied into its column's buffer
+	 |      and sorted there; the thread that finishes a column's last
+	 |      piece merges the pieces and writes the column back. The
+	 |      decrement of the column's remaining count publishes each
+	 |      piece to that thread.
+	 |
+	 |  Parameters:
+	 |      pass (IN) -- the call's shared state.
+	 |      task (IN) -- the piece: column task / pieces, range task % pieces.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void sortPiece(Pass pass, int task) {
+
+		int col = task / pass.pieces;
+		int piece = task % pass.pieces;
+		int low = bound(pass, piece);
+		int high = bound(pass, piece + 1);
+
+		Integer[] buffer;
+		if (pass.pieces == 1) {
+			buffer = new Integer[pass.rows];
+		} else {
+			buffer = pass.buffers.get(col);
+			if (buffer == null) {
+				pass.buffers.compareAndSet(col, null, new Integer[pass.rows]);
+				buffer = pass.buffers.get(col);
+			}
+		}
+
+		for (int row = low; row < high; row++) {
+			buffer[row] = pass.from[row][col];
+		}
+		ColumnSortSelection.sortValues(buffer, low, high, pass.kernel);
+
+		this.piecesSorted.incrementAndGet();
+		SortMonitor.pieceDone();
+
+		if (pass.remaining.decrementAndGet(col) > 0) {
+			return; // Another thread will finish the column
+		}
+
+		if (pass.pieces > 1) {
+			buffer = merge(pass, buffer);
+			pass.buffers.set(col, null);
+		}
+		for (int row = 0; row < pass.rows; row++) {
+			pass.to[row][col] = buffer[row];
+		}
+		this.columnsSorted.incrementAndGet();
+		SortMonitor.columnDone(pass.job);
+
+		if (pass.sorted != null) {
+			pass.sorted.accept(col);
+		}
+	}
+
+	/*--------------------------------------------------- merge -----
+	 |  Method merge
+	 |
+	 |  Purpose:  Merges the sorted pieces of a column, pairwise, until
+	 |      one run is left: O(r log pieces).
+	 |
+	 |  Parameters:
+	 |      pass (IN) -- the call's shared state.
+	 |      buffer (IN) -- the column, each piece sorted.
+	 |
+	 |  Returns:  The sorted column; buffer or a new array.
+	 *-------------------------------------------------------------------*/
+	private static Integer[] merge(Pass pass, Integer[] buffer) {
+
+		Integer[] source = buffer;
+		Integer[] target = new Integer[pass.rows];
+
+		for (int width = 1; width < pass.pieces; width *= 2) {
+			for (int first = 0; first < pass.pieces; first += 2 * width) {
+				int low = bound(pass, first);
+				int middle = bound(pass, Math.min(first + width, pass.pieces));
+				int high = bound(pass, Math.min(first + 2 * width, pass.pieces));
+
+				int left = low;
+				int right = middle;
+				for (int at = low; at < high; at++) {
+					if (right >= high || (left < middle
+							&& ColumnSortSelection.PADDING_LAST.compare(source[left], source[right]) <= 0)) {
+						target[at] = source[left++];
+					} else {
+						target[at] = source[right++];
+					}
+				}
+			}
+			Integer[] swap = source;
+			source = target;
+			target = swap;
+		}
+		return source;
+	}
+
+	/*--------------------------------------------------- bound -----
+	 |  Method bound
+	 |
+	 |  Parameters:
+	 |      pass (IN) -- the call's shared state.
+	 |      piece (IN) -- a piece, or pieces for the end of the column.
+	 |
+	 |  Returns:  The first row of the piece.
+	 *-------------------------------------------------------------------*/
+	private static int bound(Pass pass, int piece) {
+		return (int) ((long) pass.rows * piece / pass.pieces);
+	}
+
+	/*--------------------------------------------------- report -----
+	 |  Method report
+	 |
+	 |  Returns:  A summary line such as "Scheduler = 4 threads, 64
+	 |      pieces of 1024 rows over 40 columns, 7 ranges stolen".
+	 *-------------------------------------------------------------------*/
+	String report() {
+		return "Scheduler = " + this.threads + " threads, " + this.piecesSorted.get() + " pieces of "
+				+ this.pieceRows + " rows over " + this.columnsSorted.get() + " columns, " + this.steals.get()
+				+ (this.steals.get() == 1 ? " range stolen" : " ranges stolen");
+	}
+
+	/*--------------------------------------------------- pack -----
+	 |  Method pack
+	 |
+	 |  Returns:  next and end in one long.
+	 *-------------------------------------------------------------------*/
+	private static long pack(int next, int end) {
+		return ((long) next << 32) | (end & 0xFFFFFFFFL);
+	}
+
+	/*--------------------------------------------------- next -----
+	 |  Method next
+	 |
+	 |  Returns:  The next piece of a packed range.
+	 *-------------------------------------------------------------------*/
+	private static int next(long range) {
+		return (int) (range >>> 32);
+	}
+
+	/*--------------------------------------------------- end -----
+	 |  Method end
+	 |
+	 |  Returns:  The end of a packed range.
+	 *-------------------------------------------------------------------*/
+	private static int end(long range) {
+		return (int) range;
+	}
+
+}
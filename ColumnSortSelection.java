@@ -78,11 +78,18 @@
  |
  *===========================================================================*/
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * --------------------------------------------------------- Class: ColumnSortSelection
@@ -110,9 +117,24 @@ import java.util.Scanner;
 public class ColumnSortSelection {
 
 	final static double BILLION = 1000000000.0; // Number of nanoseconds in one second
+	final static int COUNTING_RANGE_LIMIT = 1 << 24; // Largest value range given to the counting sort
+	final static int HISTOGRAM_BUDGET = 1 << 24; // Counters allowed across all counting sort threads
+	final static int BUCKET_TARGET = 4096; // Values per bucket the sample sort aims for
+	final static int MAX_BUCKETS = 4096; // Most splitters the sample sort picks
+	final static int OVERSAMPLE = 32; // Sampled values per splitter
+	final static long SAMPLE_SEED = 0x5EED; // Fixed seed, so the sample sort is reproducible
+	final static String SELECTION_KERNEL = "selection"; // Column kernel: selection sort, O(r^2)
+	final static String LIBRARY_KERNEL = "library"; // Column kernel: Arrays.sort, O(r log r)
+	final static String PARTITION_KERNEL = "partition"; // Column kernel: three-way quicksort, O(r log d) for d distinct values
+	final static String[] KERNELS = { SELECTION_KERNEL, LIBRARY_KERNEL, PARTITION_KERNEL }; // Every column kernel
+	final static int INSERTION_CUTOFF = 16; // Ranges the partition kernel finishes with insertion sort
+	final static Comparator<Integer> PADDING_LAST = Comparator.nullsLast(Comparator.naturalOrder()); // Sorts the virtual padding (null) after every value
 	private static long startTime; // Start time for elapsed time calculations
 	private static long elapsedTime; // Total elapsed time in nanoseconds
 	private static double seconds; // Elapsed time in seconds
+	private static long loadTime; // Nanoseconds spent reading the input
+	private static boolean verify; // Check every result against its input (off with -noverify)
+	private static AggregateStage aggregation; // Stage asked for with -distinct, -count or -group, or null
 
 	private Integer[][] array2D; // 2D array for storing integer values
 	private Integer[][] array2dCopy; // Copy of the original 2D array for sorting
@@ -121,6 +143,18 @@ public class ColumnSortSelection {
 	private int ROWS; // Number of rows in the 2D array(also known as r)
 	private int COLS; // Number of columns in the 2D array(also known as s)
 
+	private ArrayList<String> details = new ArrayList<String>(); // Extra summary lines for printMessage
+	private SortChecksum output; // Checksum of the final write, filled by step8Sort
+	private AggregateStage stage; // Summary printed instead of the values, fed by step8Sort, or null
+	private Checkpoint checkpoint; // Where the state is saved after each step, or null
+	private boolean emit; // Print each column as soon as step 7 makes it final (-emit, main's sorter only)
+	private ColumnEmitter emitter; // Prints the columns of step 7 as they are sorted, or null
+
+	private String kernel = SELECTION_KERNEL; // How each column is sorted in steps 1, 3, 5 and 7
+	private int threads = 1; // Columns sorted at the same time in steps 1, 3, 5 and 7
+	private ColumnScheduler scheduler; // Sorts the columns of steps 1, 3, 5 and 7 when threads > 1, or null
+	private String configuration; // Tuned configuration printed after s, or null
+
 	/*--------------------------------------------------- ColumnSortSelection -----
 	 |  Constructor ColumnSortSelection
 	 |
@@ -328,7 +362,10 @@ public class ColumnSortSelection {
 	 |  Purpose:  This method sorts the odd-indexed columns (1, 3, 5, 7) 
 	 |      of a 2D array using the selection sort algorithm. It extracts 
 	 |      each specified column into a temporary array, sorts that array, 
-	 |      and then updates the original array with the sorted values.
+	 |      and then updates the original array with the sorted values. 
+	 |      With one thread the columns are sorted one after another (see 
+	 |      forEachColumn); with more, the ColumnScheduler sorts them in 
+	 |      parallel.
 	 |
 	 |  Pre-condition: The 2D array has been initialized with a specified 
 	 |      number of rows and columns. The array must contain Integer values.
@@ -343,36 +380,57 @@ public class ColumnSortSelection {
 	 *---------------------------------------------------------------------*/
 	public void selectionSort() {
 
-		int ColAt = 0; // Index to track the current column being sorted
-
-		for (int col = 0; col < this.COLS; col++) {
+		if (this.scheduler != null) {
+			this.scheduler.sortColumns(this.array2D, this.array2dCopy, this.COLS, this.kernel);
+		} else {
+			forEachColumn(this.COLS, this::sortColumn);
+		}
 
-			Integer[] temp = new Integer[this.ROWS]; // Temporary array to hold the current column's values
+		this.array2D = this.array2dCopy.clone(); // Clone the sorted copy back to the original array
+	}
 
-			// Populate the temporary array with values from the current column
-			for (int row = 0; row < this.ROWS; row++) {
-				temp[row] = this.array2D[row][col];
-			}
+	/*--------------------------------------------------- sortColumn -----
+	 |  Method sortColumn 
+	 |
+	 |  Purpose:  This method sorts a single column of the 2D array with 
+	 |      selectRow. It is the body of selectionSort, and is also called 
+	 |      by the streaming loader to sort each column as soon as it has 
+	 |      been filled, while later columns are still being parsed.
+	 |
+	 |  Pre-condition: The column has been completely filled. Different 
+	 |      columns may be sorted from different threads at the same time, 
+	 |      since each call only writes its own column.
+	 |
+	 |  Post-condition: The column is sorted in array2dCopy.
+	 |
+	 |  Parameters: 
+	 |      col (IN) -- the index of the column to sort
+	 |
+	 |  Returns:  None (the array2dCopy is modified in place)
+	 *---------------------------------------------------------------------*/
+	void sortColumn(int col) {
 
-			// Sort the values in the temporary array and place them back into the original
-			// array
-			selectRow(temp, ColAt);
+		Integer[] temp = new Integer[this.ROWS]; // Temporary array to hold the current column's values
 
-			ColAt++; // Move to next column
+		// Populate the temporary array with values from the current column
+		for (int row = 0; row < this.ROWS; row++) {
+			temp[row] = this.array2D[row][col];
 		}
 
-		this.array2D = this.array2dCopy.clone(); // Clone the sorted copy back to the original array
+		// Sort the values in the temporary array and place them back into the original
+		// array
+		selectRow(temp, col);
 	}
 
 	/*--------------------------------------------------- selectRow -----
 	 |  Method selectRow 
 	 |
-	 |  Purpose:  This method performs a selection sort on a provided 
-	 |      array of integers. It iteratively finds the minimum value 
-	 |      in the unsorted portion of the array and swaps it with the 
-	 |      current index, effectively sorting the array in ascending 
-	 |      order. The sorted values are then stored in a copy of the 
-	 |      original 2D array at the specified column index.
+	 |  Purpose:  This method sorts a provided array of integers with 
+	 |      the configured kernel (see sortValues), by default a selection 
+	 |      sort that iteratively finds the minimum value in the unsorted 
+	 |      portion of the array and swaps it with the current index. The 
+	 |      sorted values are then stored in a copy of the original 2D 
+	 |      array at the specified column index.
 	 |
 	 |  Pre-condition: The input array (temp) must be initialized and 
 	 |      contain Integer values. The colAt parameter should be a valid 
@@ -391,33 +449,277 @@ public class ColumnSortSelection {
 	 *---------------------------------------------------------------------*/
 	private void selectRow(Integer[] temp, int colAt) {
 
+		// Sort the column with the configured kernel (selection sort by default)
+		sortValues(temp, this.kernel);
+
+		// Update the original array copy with the sorted values from the temporary
+		// array
+		for (int row = 0; row < this.ROWS; row++) {
+			this.array2dCopy[row][colAt] = temp[row];
+		}
+	}
+
+	/*--------------------------------------------------- sortValues -----
+	 |  Method sortValues 
+	 |
+	 |  Purpose:  Sorts the values of one column with the given kernel. 
+	 |      The selection kernel is the program's original selection sort: 
+	 |      it repeatedly finds the minimum of the unsorted part and swaps 
+	 |      it to the front, which is O(r^2) but moves each value at most 
+	 |      once. The library kernel uses Arrays.sort, O(r log r). The 
+	 |      partition kernel is a three-way quicksort (see partitionSort) 
+	 |      that collapses equal values, for columns with few distinct 
+	 |      ones. AutoTuner times them to pick one. All of them put the 
+	 |      virtual padding (null cells, see readFile.calculateRowsCols) 
+	 |      after every value.
+	 |
+	 |  Parameters: 
+	 |      temp (IN/OUT) -- the values, sorted in place
+	 |      kernel (IN) -- one of KERNELS
+	 |
+	 |  Returns:  None.
+	 *---------------------------------------------------------------------*/
+	static void sortValues(Integer[] temp, String kernel) {
+		sortValues(temp, 0, temp.length, kernel);
+	}
+
+	/*--------------------------------------------------- sortValues -----
+	 |  Method sortValues 
+	 |
+	 |  Purpose:  Sorts part of a column with the given kernel, as above. 
+	 |      ColumnScheduler uses this to sort a column in pieces.
+	 |
+	 |  Parameters: 
+	 |      temp (IN/OUT) -- the values, temp[from..to) sorted in place
+	 |      from (IN) -- the first index to sort
+	 |      to (IN) -- one past the last index to sort
+	 |      kernel (IN) -- one of KERNELS
+	 |
+	 |  Returns:  None.
+	 *---------------------------------------------------------------------*/
+	static void sortValues(Integer[] temp, int from, int to, String kernel) {
+
+		if (LIBRARY_KERNEL.equals(kernel)) {
+			Arrays.sort(temp, from, to, PADDING_LAST);
+			return;
+		}
+
+		if (PARTITION_KERNEL.equals(kernel)) {
+			partitionSort(temp, from, to);
+			return;
+		}
+
 		// Iterate through the temporary array to perform selection sort
-		for (int index = 0; index < temp.length; index++) {
+		for (int index = from; index < to; index++) {
 
-			int min = temp[index]; // Initialize the minimum value with the current index's value
+			Integer min = temp[index]; // Initialize the minimum value with the current index's value
 			int switchNum = index; // Track the index of the minimum value found
 
-			// Find the minimum value in the unsorted portion of the array
-			for (int checkAt = index + 1; checkAt < temp.length; checkAt++) {
-				if (temp[checkAt] < min) {
+			// Find the minimum value in the unsorted portion of the array (padding is never smaller)
+			for (int checkAt = index + 1; checkAt < to; checkAt++) {
+				if (temp[checkAt] != null && (min == null || temp[checkAt] < min)) {
 					min = temp[checkAt];
 					switchNum = checkAt;
 				}
 			}
 
 			// Swap the found minimum element with the element at the current index
-			int tempNum = temp[index];
+			Integer tempNum = temp[index];
 			temp[index] = temp[switchNum];
 			temp[switchNum] = tempNum;
 		}
+	}
 
-		// Update the original array copy with the sorted values from the temporary
-		// array
-		for (int row = 0; row < this.ROWS; row++) {
-			this.array2dCopy[row][colAt] = temp[row];
+	/*--------------------------------------------------- partitionSort -----
+	 |  Method partitionSort 
+	 |
+	 |  Purpose:  The partition kernel. A quicksort that splits each range 
+	 |      three ways (Dijkstra's Dutch national flag): values below the 
+	 |      pivot, equal to it and above it. The equal block is final, so 
+	 |      a run of k equal values costs one pass instead of k, and a 
+	 |      column of d distinct values takes O(r log d). Ranges that are 
+	 |      already in order (sorted input, or all one value) are found 
+	 |      with a single scan and left alone; short ranges are finished 
+	 |      with insertion sort. The pivot is the median of the first, 
+	 |      middle and last values.
+	 |
+	 |  Parameters: 
+	 |      temp (IN/OUT) -- the values, temp[from..to) sorted in place
+	 |      from (IN) -- the first index to sort
+	 |      to (IN) -- one past the last index to sort
+	 |
+	 |  Returns:  None.
+	 *---------------------------------------------------------------------*/
+	private static void partitionSort(Integer[] temp, int from, int to) {
+
+		while (to - from > INSERTION_CUTOFF) {
+
+			if (inOrder(temp, from, to)) {
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			Integer pivot = medianOf(temp[from], temp[middle], temp[to - 1]);
+
+			// [from, less) < pivot, [less, at) == pivot, (greater, to) > pivot
+			int less = from;
+			int at = from;
+			int greater = to - 1;
+			while (at <= greater) {
+				int order = compareCells(temp[at], pivot);
+				if (order < 0) {
+					swap(temp, less++, at++);
+				} else if (order > 0) {
+					swap(temp, at, greater--);
+				} else {
+					at++;
+				}
+			}
+
+			// Recurse into the smaller side and loop on the larger, so the
+			// stack stays O(log r)
+			if (less - from < to - greater - 1) {
+				partitionSort(temp, from, less);
+				from = greater + 1;
+			} else {
+				partitionSort(temp, greater + 1, to);
+				to = less;
+			}
+		}
+
+		// Insertion sort for the short range left
+		for (int index = from + 1; index < to; index++) {
+			Integer value = temp[index];
+			int hole = index;
+			while (hole > from && compareCells(temp[hole - 1], value) > 0) {
+				temp[hole] = temp[hole - 1];
+				hole--;
+			}
+			temp[hole] = value;
+		}
+	}
+
+	/*--------------------------------------------------- inOrder -----
+	 |  Method inOrder 
+	 |
+	 |  Purpose:  Checks whether a range is already sorted, stopping at 
+	 |      the first value out of order.
+	 |
+	 |  Parameters: 
+	 |      temp (IN) -- the values
+	 |      from (IN) -- the first index
+	 |      to (IN) -- one past the last index
+	 |
+	 |  Returns:  true if temp[from..to) is in ascending order.
+	 *---------------------------------------------------------------------*/
+	private static boolean inOrder(Integer[] temp, int from, int to) {
+		for (int index = from + 1; index < to; index++) {
+			if (compareCells(temp[index - 1], temp[index]) > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*--------------------------------------------------- medianOf -----
+	 |  Method medianOf 
+	 |
+	 |  Parameters: 
+	 |      first, second, third (IN) -- three cells
+	 |
+	 |  Returns:  The middle one of the three, in PADDING_LAST order.
+	 *---------------------------------------------------------------------*/
+	private static Integer medianOf(Integer first, Integer second, Integer third) {
+		if (compareCells(first, second) > 0) {
+			Integer swap = first;
+			first = second;
+			second = swap;
+		}
+		if (compareCells(second, third) <= 0) {
+			return second;
+		}
+		return compareCells(first, third) > 0 ? first : third;
+	}
+
+	/*--------------------------------------------------- compareCells -----
+	 |  Method compareCells 
+	 |
+	 |  Purpose:  Compares two cells the way PADDING_LAST does, without 
+	 |      going through the Comparator: null (virtual padding) is 
+	 |      larger than every value.
+	 |
+	 |  Parameters: 
+	 |      first, second (IN) -- the cells
+	 |
+	 |  Returns:  Negative, zero or positive as first is smaller, equal 
+	 |      or larger.
+	 *---------------------------------------------------------------------*/
+	private static int compareCells(Integer first, Integer second) {
+		if (first == null || second == null) {
+			return first == second ? 0 : first == null ? 1 : -1;
+		}
+		return Integer.compare(first, second);
+	}
+
+	/*--------------------------------------------------- swap -----
+	 |  Method swap 
+	 |
+	 |  Parameters: 
+	 |      temp (IN/OUT) -- the values
+	 |      first, second (IN) -- the indexes to exchange
+	 |
+	 |  Returns:  None.
+	 *---------------------------------------------------------------------*/
+	private static void swap(Integer[] temp, int first, int second) {
+		Integer value = temp[first];
+		temp[first] = temp[second];
+		temp[second] = value;
+	}
+
+	/*--------------------------------------------------- forEachColumn -----
+	 |  Method forEachColumn 
+	 |
+	 |  Purpose:  Runs a task for every column, in order, on this 
+	 |      thread. With more than one thread the sorting steps go through 
+	 |      the ColumnScheduler instead.
+	 |
+	 |  Parameters: 
+	 |      cols (IN) -- the number of columns
+	 |      task (IN) -- the work for one column
+	 |
+	 |  Returns:  None.
+	 *---------------------------------------------------------------------*/
+	private void forEachColumn(int cols, IntConsumer task) {
+
+		for (int col = 0; col < cols; col++) {
+			task.accept(col);
+			SortMonitor.columnDone(); // Progress for the -metrics endpoint
 		}
 	}
 
+	/*--------------------------------------------------- configure -----
+	 |  Method configure 
+	 |
+	 |  Purpose:  Sets the column kernel and the number of columns sorted 
+	 |      at the same time, as picked by AutoTuner. More than one thread 
+	 |      sorts through a ColumnScheduler, which splits uneven columns 
+	 |      and lets idle threads steal work.
+	 |
+	 |  Parameters: 
+	 |      kernel (IN) -- one of KERNELS
+	 |      threads (IN) -- threads to sort columns with, at least 1
+	 |      configuration (IN) -- the line printed after s to describe 
+	 |          the choice, or null
+	 |
+	 |  Returns:  None.
+	 *---------------------------------------------------------------------*/
+	void configure(String kernel, int threads, String configuration) {
+		this.kernel = kernel;
+		this.threads = Math.max(1, threads);
+		this.configuration = configuration;
+		this.scheduler = this.threads > 1 ? new ColumnScheduler(this.threads) : null;
+	}
+
 	/*--------------------------------------------------- step2OfSort -----
 	 |  Method step2OfSort 
 	 |
@@ -441,7 +743,7 @@ public class ColumnSortSelection {
 	 *---------------------------------------------------------------------*/
 	private void step2OfSort() {
 
-		int amountNumsInEach = this.numItems / this.COLS;
+		int amountNumsInEach = this.ROWS; // Cells per column, including any padding
 
 		int rowAt = 0; // Keeps track of the current row position for updating array
 
@@ -649,7 +951,8 @@ public class ColumnSortSelection {
 	 |
 	 |  Post-condition: The original 2D array copy (array2dCopy) is updated 
 	 |      with sorted column values after the selection sort process is 
-	 |      complete.
+	 |      complete. With -emit each column is handed to the emitter as 
+	 |      soon as it is sorted, since it already holds final values.
 	 |
 	 |  Parameters: 
 	 |      None
@@ -661,22 +964,32 @@ public class ColumnSortSelection {
 
 		Integer[][] tempArray = this.array2dCopy;
 
-		int ColAt = 0;
+		if (this.emit && this.stage == null) {
+			this.emitter = new ColumnEmitter(tempArray, startTime);
+			this.emitter.columnSorted(this.COLS); // The last column is left sorted by step 5
+		}
 
-		for (int col = 0; col < this.COLS; col++) {
+		if (this.scheduler != null) {
+			this.scheduler.sortColumns(this.array2dCopy, tempArray, this.COLS, this.kernel,
+					this.emitter == null ? null : this.emitter::columnSorted);
+		} else {
+			forEachColumn(this.COLS, col -> {
 
-			Integer[] temp = new Integer[this.ROWS]; // Temporary array for column values.
+				Integer[] temp = new Integer[this.ROWS]; // Temporary array for column values.
 
-			// Extract the current column's values into the temporary array.
-			for (int row = 0; row < this.ROWS; row++) {
-				temp[row] = this.array2dCopy[row][col];
-			}
+				// Extract the current column's values into the temporary array.
+				for (int row = 0; row < this.ROWS; row++) {
+					temp[row] = this.array2dCopy[row][col];
+				}
 
-			// Sort the temporary column values using a helper method and update the
-			// tempArray.
-			tempArray = selectRowHelper7(temp, ColAt, tempArray);
+				// Sort the temporary column values using a helper method and update the
+				// tempArray.
+				selectRowHelper7(temp, col, tempArray);
 
-			ColAt++;
+				if (this.emitter != null) {
+					this.emitter.columnSorted(col);
+				}
+			});
 		}
 		this.array2dCopy = tempArray.clone();
 	}
@@ -708,25 +1021,8 @@ public class ColumnSortSelection {
 	 *--------------------------------------------------------------------------*/
 	private Integer[][] selectRowHelper7(Integer[] temp, int colAt, Integer[][] tempArray) {
 
-		// Selection sort on the temporary array
-		for (int index = 0; index < temp.length; index++) {
-
-			int min = temp[index];
-			int switchNum = index;
-
-			// Find the minimum value in the unsorted portion of the array
-			for (int checkAt = index + 1; checkAt < temp.length; checkAt++) {
-				if (temp[checkAt] < min) {
-					min = temp[checkAt];
-					switchNum = checkAt;
-				}
-			}
-
-			// Swap the found minimum element with the current element
-			int tempNum = temp[index];
-			temp[index] = temp[switchNum];
-			temp[switchNum] = tempNum;
-		}
+		// Sort the column with the configured kernel (selection sort by default)
+		sortValues(temp, this.kernel);
 
 		// Update the specified column in the tempArray with sorted values
 		for (int row = 0; row < this.ROWS; row++) {
@@ -740,15 +1036,21 @@ public class ColumnSortSelection {
 	 |  Method step8Sort 
 	 |
 	 |  Purpose:  This method processes a 2D array (array2dCopy) to
-	 |      extract all valid integer values (excluding 
-	 |      Integer.MAX_VALUE and Integer.MIN_VALUE) and store them 
-	 |      in a list. The valid values are then reassigned back 
-	 |      to the original 2D array (array2D) column by column.
+	 |      extract all valid integer values (excluding the 
+	 |      Integer.MAX_VALUE and Integer.MIN_VALUE markers added by 
+	 |      step6Sort) and store them in a list. The markers are skipped 
+	 |      by position, not by value: the first r / 2 cells of the first 
+	 |      column and the cells from row r / 2 down in the last column. 
+	 |      Skipping them by value would also drop real input values equal 
+	 |      to Integer.MIN_VALUE or Integer.MAX_VALUE. The valid values 
+	 |      are then reassigned back to the original 2D array (array2D) 
+	 |      column by column; this final write also fills the output 
+	 |      checksum used by verify and feeds the -distinct, -count or 
+	 |      -group stage, if any, since the values pass by in order here.
 	 |
 	 |  Pre-condition: The array2dCopy must be populated with integer 
-	 |      values, including Integer.MAX_VALUE and Integer.MIN_VALUE, 
-	 |      which are used as markers and should be excluded from 
-	 |      processing.
+	 |      values, including the markers, laid out as step6Sort left 
+	 |      them (step7SelectionSort does not move them).
 	 |
 	 |  Post-condition: The original 2D array (array2D) is updated with 
 	 |      the valid integer values from array2dCopy, in the same 
@@ -763,11 +1065,13 @@ public class ColumnSortSelection {
 		// Create a list to hold valid integers, excluding marker values
 		ArrayList<Integer> arrayList = new ArrayList<Integer>();
 
+		int lastCol = this.array2dCopy[0].length - 1;
+		int infinities = this.array2dCopy.length / 2; // First row of the Integer.MAX_VALUE markers
+
 		for (int col = 0; col < this.array2dCopy[0].length; col++) {
 			for (int row = 0; row < this.array2dCopy.length; row++) {
-				// Check for valid integers, excluding markers
-				if (!((this.array2dCopy[row][col] == Integer.MAX_VALUE)
-						|| (this.array2dCopy[row][col] == Integer.MIN_VALUE))) {
+				// Skip the cells step6Sort filled with markers
+				if (!((col == 0 && row < this.ROWS / 2) || (col == lastCol && row >= infinities))) {
 
 					arrayList.add(this.array2dCopy[row][col]);
 
@@ -775,404 +1079,1702 @@ public class ColumnSortSelection {
 			}
 		}
 
+		this.output = new SortChecksum();
+
 		int index = 0;
 		// Reassign valid values back to the original 2D array
 		for (int col = 0; col < this.COLS; col++) {
 			for (int row = 0; row < this.ROWS; row++) {
 				this.array2D[row][col] = arrayList.get(index);
+				if (this.array2D[row][col] != null) { // Padding is not part of the output
+					this.output.addInOrder(this.array2D[row][col]);
+					if (this.stage != null) {
+						this.stage.accept(this.array2D[row][col]);
+					}
+				}
 				index++;
 			}
 		}
 	}
 
-	/*--------------------------------------------------- formatToThreeDecimals -----
-	 |  Method formatToThreeDecimals 
+	/*--------------------------------------------------- verify -----
+	 |  Method verify 
 	 |
-	 |  Purpose:  This method formats a given double value to three 
-	 |      decimal places. If the absolute value of the input is 
-	 |      less than 0.001, it returns a string representation of 
-	 |      "0.000" to ensure consistent formatting for small values.
+	 |  Purpose:  This method checks the result of the sort against the 
+	 |      checksum the loader computed while reading the file: the 
+	 |      output must be in ascending order and hold exactly the values 
+	 |      read. The column sort fills the output checksum during 
+	 |      step8Sort's final write; for the other engines the 2D array is 
+	 |      walked once in CMO here. Either way the check is O(n), so it 
+	 |      can be left on.
 	 |
-	 |  Pre-condition: A double value (value) has been supplied, 
-	 |      which may be positive, negative, or zero.
+	 |  Pre-condition: The array has been sorted.
 	 |
-	 |  Post-condition: The method returns a string representation 
-	 |      of the input value formatted to three decimal places, 
-	 |      or "0.000" if the absolute value is less than 0.001.
+	 |  Post-condition: If the check fails the program exits with an 
+	 |      error (see SortChecksum.verify); otherwise the time it took is 
+	 |      added to the summary.
 	 |
 	 |  Parameters:
-	 |      value (IN) -- the double value to be formatted
+	 |      input (IN) -- the checksum of the values loaded
 	 |
-	 |  Returns:  A string representing the formatted value to three 
-	 |      decimal places.
-	 *-------------------------------------------------------------------*/
-	public static String formatToThreeDecimals(double value) {
-		if (Math.abs(value) < 0.001) {
-			return "0.000";
-		} else {
-			DecimalFormat df = new DecimalFormat("0.000");
-			return df.format(value);
+	 |  Returns:  None.
+	 *---------------------------------------------------------------------*/
+	void verify(SortChecksum input) {
+
+		long start = System.nanoTime();
+
+		if (this.output == null) {
+			this.output = new SortChecksum();
+			for (int col = 0; col < this.COLS; col++) {
+				for (int row = 0; row < this.ROWS; row++) {
+					if (this.array2D[row][col] != null) {
+						this.output.addInOrder(this.array2D[row][col]);
+					}
+				}
+			}
 		}
+		input.verify(this.output);
+
+		addDetail("Verified = " + this.output.count + " values in order, checksums match ("
+				+ formatToThreeDecimals((System.nanoTime() - start) / BILLION) + " seconds)");
 	}
 
-	/*--------------------------------------------------- printMessage -----
-	 |  Method printMessage 
+	/*--------------------------------------------------- countingSortReason -----
+	 |  Method countingSortReason 
 	 |
-	 |  Purpose:  This method prints various details about the sorting 
-	 |      process, including the number of items, rows, columns, 
-	 |      elapsed time, and the contents of a 2D array. The elapsed 
-	 |      time is formatted to three decimal places for better readability.
+	 |  Purpose:  This method decides, from the statistics gathered by 
+	 |      the loader, whether the counting sort should be used. It pays 
+	 |      off when the spread between the smallest and largest value is 
+	 |      no larger than n, since then it sorts in O(n) time with a 
+	 |      histogram of at most n counters, where the column sort still 
+	 |      does all eight steps.
 	 |
-	 |  Pre-condition: A double value (seconds) representing the 
-	 |      elapsed time has been provided, along with initialized 
-	 |      instance variables for numItems, ROWS, COLS, and array2D.
+	 |  Pre-condition: The file has been read.
 	 |
-	 |  Post-condition: The method outputs the number of items, 
-	 |      number of rows, number of columns, elapsed time in seconds, 
-	 |      and the contents of the 2D array to the console.
+	 |  Post-condition: None.
 	 |
 	 |  Parameters:
-	 |      seconds (IN) -- the elapsed time in seconds to be printed
+	 |      file (IN) -- the loader holding min, max and numItems
 	 |
-	 |  Returns:  This method does not return a value.
+	 |  Returns:  The reason for the choice, to be printed in the summary. 
+	 |      It starts with "range" if the counting sort should be used.
 	 *-------------------------------------------------------------------*/
-	private void printMessage(double seconds) {
-
-		System.out.println("n = " + this.numItems);
-
-		System.out.println("r = " + this.ROWS);
-
-		System.out.println("s = " + this.COLS);
+	static String countingSortReason(readFile file) {
 
-		String sec = formatToThreeDecimals(seconds);
+		if (file.numItems == 0 || file.min > file.max) {
+			return "no values"; // Never "range", so the counting sort is not picked
+		}
 
-		System.out.print("Elapsed time = " + sec);
-		System.out.println(" seconds.");
+		long range = (long) file.max - file.min + 1;
 
-		print2dArray(this.array2D);
+		if (range > COUNTING_RANGE_LIMIT) {
+			return "value range " + range + " > " + COUNTING_RANGE_LIMIT;
+		}
+		if (range > file.numItems) {
+			return "value range " + range + " > n = " + file.numItems;
+		}
+		return "range " + range + " <= n = " + file.numItems;
 	}
 
-	/*--------------------------------------------------- print2dArray -----
-	 |  Method print2dArray 
+	/*--------------------------------------------------- countingSort -----
+	 |  Method countingSort 
 	 |
-	 |  Purpose:  This method prints the elements of a two-dimensional 
-	 |      array of integers to the console. Each element is printed 
-	 |      in a column-wise manner, iterating through the rows for 
-	 |      each column.
+	 |  Purpose:  This method sorts the 2D array with a parallel counting 
+	 |      sort instead of the column sort steps. Each thread counts how 
+	 |      often every value occurs in its own band of rows, the counts 
+	 |      are added up into the index each value starts at in CMO, and 
+	 |      the threads then write disjoint slices of the output, split so 
+	 |      that each writes about n / threads values. Every occurrence of 
+	 |      a value shares one boxed Integer.
 	 |
-	 |  Pre-condition: A two-dimensional array of integers has been 
-	 |      provided, with at least one row and one column.
+	 |  Pre-condition: Every value lies in [min, max], and max - min + 1 
+	 |      is at most COUNTING_RANGE_LIMIT.
 	 |
-	 |  Post-condition: The elements of the array are printed to the 
-	 |      console, with each value displayed on a new line.
+	 |  Post-condition: array2D holds the values in sorted CMO, as after 
+	 |      step8Sort.
 	 |
 	 |  Parameters:
-	 |      array (IN) -- the two-dimensional array of integers to be printed
+	 |      min (IN) -- the smallest value in the array
+	 |      max (IN) -- the largest value in the array
 	 |
-	 |  Returns:  This method does not return a value.
-	 *-------------------------------------------------------------------*/
-	private void print2dArray(Integer[][] array) {
-		for (int i = 0; i < array[0].length; i++) {
-			for (int j = 0; j < array.length; j++) {
-				System.out.println(array[j][i]);
+	 |  Returns:  None (the array2D is modified in place)
+	 *---------------------------------------------------------------------*/
+	void countingSort(int min, int max) {
+
+		int range = max - min + 1;
+		int threads = Math.max(1, Math.min(Math.min(Runtime.getRuntime().availableProcessors(), this.ROWS),
+				HISTOGRAM_BUDGET / range));
+
+		// Count every value, one histogram per band of rows
+		int[][] counts = new int[threads][range];
+
+		IntStream.range(0, threads).parallel().forEach(thread -> {
+			int[] histogram = counts[thread];
+			for (int row = bandStart(thread, threads); row < bandStart(thread + 1, threads); row++) {
+				for (int col = 0; col < this.COLS; col++) {
+					if (this.array2D[row][col] != null) {
+						histogram[this.array2D[row][col] - min]++;
+					}
+				}
 			}
+		});
+
+		// Add the histograms up into the CMO index each value starts at
+		long[] starts = new long[range + 1];
+		for (int value = 0; value < range; value++) {
+			long count = 0;
+			for (int thread = 0; thread < threads; thread++) {
+				count += counts[thread][value];
+			}
+			starts[value + 1] = starts[value] + count;
 		}
+
+		// Write the values back, each thread taking about n / threads of them
+		IntStream.range(0, threads).parallel().forEach(thread -> {
+			int first = firstValueAt(starts, (long) this.numItems * thread / threads);
+			int last = firstValueAt(starts, (long) this.numItems * (thread + 1) / threads);
+
+			for (int value = first; value < last; value++) {
+				Integer boxed = value + min;
+				for (long index = starts[value]; index < starts[value + 1]; index++) {
+					this.array2D[(int) (index % this.ROWS)][(int) (index / this.ROWS)] = boxed;
+				}
+			}
+		});
+
+		clearPadding();
 	}
 
-	/*--------------------------------------------------- main -----
-	 |  Method main 
+	/*--------------------------------------------------- clearPadding -----
+	 |  Method clearPadding 
 	 |
-	 |  Purpose:  The entry point of the program that initializes the 
-	 |      necessary components and orchestrates the sorting process 
-	 |      based on the number of columns in the data. It utilizes 
-	 |      a `readFile` object to load data and a `ColumnSortSelection` instance to 
-	 |      perform the sorting. It measures and prints the elapsed time 
-	 |      for the sorting operations.
+	 |  Purpose:  Empties the cells after the first numItems in CMO. The 
+	 |      engines that write their output straight into array2D use this 
+	 |      to leave the virtual padding at the end, where the column sort 
+	 |      leaves it.
 	 |
-	 |  Pre-condition: The program expects a valid input file to be 
-	 |      provided by the `readFile` class, containing sortable data 
-	 |      in the specified format.
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void clearPadding() {
+		for (long index = this.numItems; index < (long) this.ROWS * this.COLS; index++) {
+			this.array2D[(int) (index % this.ROWS)][(int) (index / this.ROWS)] = null;
+		}
+	}
+
+	/*--------------------------------------------------- bandStart -----
+	 |  Method bandStart 
 	 |
-	 |  Post-condition: The sorting operations are performed based on 
-	 |      the number of columns. The elapsed time is calculated and 
-	 |      printed alongside the sorted data.
+	 |  Purpose:  Returns the first row of a thread's band of rows when 
+	 |      the rows are split evenly between the given number of threads.
 	 |
 	 |  Parameters:
-	 |      args (IN) -- an array of command-line arguments (not used 
-	 |      in this implementation)
-	 |
-	 |  Throws:  FileNotFoundException if the input file is not found.
+	 |      thread (IN) -- the band, from 0 to threads
+	 |      threads (IN) -- the number of bands
 	 |
-	 |  Returns:  This method does not return a value; it exits the program 
-	 |      after execution.
+	 |  Returns:  The first row of the band.
 	 *-------------------------------------------------------------------*/
-	public static void main(String[] args) throws FileNotFoundException {
-
-		readFile file = new readFile();
-
-		ColumnSortSelection ColumnSortSelection = new ColumnSortSelection(file.sortCol, file.numItems, file.ROWS, file.COLS);
+	private int bandStart(int thread, int threads) {
+		return (int) ((long) this.ROWS * thread / threads);
+	}
 
-		if (ColumnSortSelection.COLS == 1) {
+	/*--------------------------------------------------- firstValueAt -----
+	 |  Method firstValueAt 
+	 |
+	 |  Purpose:  Finds, by binary search over the start indexes, the 
+	 |      first value (relative to min) that starts at or after the 
+	 |      given CMO index.
+	 |
+	 |  Parameters:
+	 |      starts (IN) -- the CMO index each value starts at, with one 
+	 |          extra entry holding n
+	 |      index (IN) -- a CMO index from 0 to n
+	 |
+	 |  Returns:  The first value starting at or after index.
+	 *-------------------------------------------------------------------*/
+	private static int firstValueAt(long[] starts, long index) {
+		int low = 0;
+		int high = starts.length - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] < index) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
 
-			startTime = System.nanoTime();
+	/*--------------------------------------------------- sampleSort -----
+	 |  Method sampleSort 
+	 |
+	 |  Purpose:  This method is an alternative engine that is not bound 
+	 |      by r >= 2(s - 1)^2. The column sort steps are only used to sort 
+	 |      a small random sample, from which evenly spaced splitters are 
+	 |      picked. Every value is then put in the bucket between its two 
+	 |      splitters, and the buckets, many more than s, are sorted in 
+	 |      parallel. Since the splitters follow the sample, a skewed 
+	 |      distribution still gives buckets of about the same size. A 
+	 |      splitter picked more than once marks a value too frequent for 
+	 |      one bucket; its copies go to an equality bucket of their own, 
+	 |      which needs no sorting, so heavy duplicates do not unbalance 
+	 |      the buckets either.
+	 |
+	 |  Pre-condition: The 2D array is filled.
+	 |
+	 |  Post-condition: array2D holds the values in sorted CMO, as after 
+	 |      step8Sort, and the engine details are added to the summary.
+	 |
+	 |  Parameters: 
+	 |      None
+	 |
+	 |  Returns:  None (the array2D is modified in place)
+	 *---------------------------------------------------------------------*/
+	void sampleSort() {
+
+		int picks = Math.max(1, Math.min(MAX_BUCKETS, this.numItems / BUCKET_TARGET));
+		int[] sample = sortedSample(picks * OVERSAMPLE);
+
+		// Pick evenly spaced splitters; a value picked twice is a heavy one
+		int[] splitters = new int[picks];
+		boolean[] heavy = new boolean[picks];
+		int unique = 0;
+		int heavyCount = 0;
+		for (int pick = 1; pick <= picks; pick++) {
+			int splitter = sample[(int) ((long) sample.length * pick / (picks + 1))];
+			if (unique > 0 && splitters[unique - 1] == splitter) {
+				if (!heavy[unique - 1]) {
+					heavy[unique - 1] = true;
+					heavyCount++;
+				}
+			} else {
+				splitters[unique++] = splitter;
+			}
+		}
+		int[] bounds = Arrays.copyOf(splitters, unique);
+
+		// Bucket 2i holds values up to splitter i, bucket 2i + 1 copies of a heavy splitter i
+		int buckets = 2 * unique + 1;
+		int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), this.ROWS));
+
+		// Count the values of each bucket, per band of rows
+		int[][] counts = new int[threads][buckets];
+		IntStream.range(0, threads).parallel().forEach(thread -> {
+			for (int row = bandStart(thread, threads); row < bandStart(thread + 1, threads); row++) {
+				for (int col = 0; col < this.COLS; col++) {
+					if (this.array2D[row][col] != null) {
+						counts[thread][bucketOf(this.array2D[row][col], bounds, heavy)]++;
+					}
+				}
+			}
+		});
+
+		// Turn the counts into where each band writes into each bucket
+		int[] bucketStarts = new int[buckets + 1];
+		int largest = 0; // Most values in a bucket that has to be sorted
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			int at = bucketStarts[bucket];
+			for (int thread = 0; thread < threads; thread++) {
+				int count = counts[thread][bucket];
+				counts[thread][bucket] = at;
+				at += count;
+			}
+			bucketStarts[bucket + 1] = at;
+			if (bucket % 2 == 0) {
+				largest = Math.max(largest, at - bucketStarts[bucket]);
+			}
+		}
+
+		// Scatter the values into their buckets
+		int[] flat = new int[this.numItems];
+		IntStream.range(0, threads).parallel().forEach(thread -> {
+			int[] next = counts[thread];
+			for (int row = bandStart(thread, threads); row < bandStart(thread + 1, threads); row++) {
+				for (int col = 0; col < this.COLS; col++) {
+					if (this.array2D[row][col] != null) {
+						int value = this.array2D[row][col];
+						flat[next[bucketOf(value, bounds, heavy)]++] = value;
+					}
+				}
+			}
+		});
+
+		// Sort the buckets in parallel; equality buckets are already sorted
+		IntStream.range(0, buckets).parallel().filter(bucket -> bucket % 2 == 0)
+				.forEach(bucket -> Arrays.sort(flat, bucketStarts[bucket], bucketStarts[bucket + 1]));
+
+		// Write the values back in CMO
+		IntStream.range(0, this.COLS).parallel().forEach(col -> {
+			for (int row = 0; row < this.ROWS && col * this.ROWS + row < this.numItems; row++) {
+				this.array2D[row][col] = flat[col * this.ROWS + row];
+			}
+		});
+		clearPadding();
+
+		addDetail("Engine = sample sort (" + buckets + " buckets from a sample of " + sample.length + ", "
+				+ heavyCount + " equality buckets, largest bucket sorted = "
+				+ largest + " values)");
+	}
+
+	/*--------------------------------------------------- sortedSample -----
+	 |  Method sortedSample 
+	 |
+	 |  Purpose:  This method draws a random sample of about the given 
+	 |      size from the 2D array and sorts it with the column sort steps. 
+	 |      The sample's size is rounded down to a shape from 
+	 |      readFile.fittingShape, so it always gets a valid multi-column 
+	 |      shape.
+	 |
+	 |  Pre-condition: The 2D array is filled.
+	 |
+	 |  Post-condition: None; the 2D array is not changed.
+	 |
+	 |  Parameters: 
+	 |      size (IN) -- the number of values wanted
+	 |
+	 |  Returns:  The sample, in ascending order.
+	 *---------------------------------------------------------------------*/
+	private int[] sortedSample(int size) {
+
+		int[] shape = readFile.fittingShape(size);
+		int r = shape[0];
+		int s = shape[1];
+
+		SplittableRandom random = new SplittableRandom(SAMPLE_SEED);
+		Integer[][] sample = new Integer[r][s];
+		for (int row = 0; row < r; row++) {
+			for (int col = 0; col < s; col++) {
+				do { // Skip the virtual padding
+					sample[row][col] = this.array2D[random.nextInt(this.ROWS)][random.nextInt(this.COLS)];
+				} while (sample[row][col] == null);
+			}
+		}
+
+		ColumnSortSelection sorter = new ColumnSortSelection(sample, r * s, r, s);
+		sorter.sort(false);
+
+		// Read the sorted sample back in CMO
+		int[] sorted = new int[r * s];
+		for (int col = 0; col < s; col++) {
+			for (int row = 0; row < r; row++) {
+				sorted[col * r + row] = sorter.array2D[row][col];
+			}
+		}
+		return sorted;
+	}
+
+	/*--------------------------------------------------- bucketOf -----
+	 |  Method bucketOf 
+	 |
+	 |  Purpose:  This method finds the bucket of a value by binary 
+	 |      search over the splitters. With i the first splitter not less 
+	 |      than the value, the bucket is 2i, or 2i + 1 if the value equals 
+	 |      splitter i and splitter i is heavy.
+	 |
+	 |  Parameters: 
+	 |      value (IN) -- the value to place
+	 |      splitters (IN) -- the distinct splitters, in ascending order
+	 |      heavy (IN) -- which splitters have an equality bucket
+	 |
+	 |  Returns:  The bucket, from 0 to 2 * splitters.length.
+	 *---------------------------------------------------------------------*/
+	private static int bucketOf(int value, int[] splitters, boolean[] heavy) {
+		int low = 0;
+		int high = splitters.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (splitters[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		if (low < splitters.length && splitters[low] == value && heavy[low]) {
+			return 2 * low + 1;
+		}
+		return 2 * low;
+	}
+
+	/*--------------------------------------------------- formatToThreeDecimals -----
+	 |  Method formatToThreeDecimals 
+	 |
+	 |  Purpose:  This method formats a given double value to three 
+	 |      decimal places. If the absolute value of the input is 
+	 |      less than 0.001, it returns a string representation of 
+	 |      "0.000" to ensure consistent formatting for small values.
+	 |
+	 |  Pre-condition: A double value (value) has been supplied, 
+	 |      which may be positive, negative, or zero.
+	 |
+	 |  Post-condition: The method returns a string representation 
+	 |      of the input value formatted to three decimal places, 
+	 |      or "0.000" if the absolute value is less than 0.001.
+	 |
+	 |  Parameters:
+	 |      value (IN) -- the double value to be formatted
+	 |
+	 |  Returns:  A string representing the formatted value to three 
+	 |      decimal places.
+	 *-------------------------------------------------------------------*/
+	public static String formatToThreeDecimals(double value) {
+		if (Math.abs(value) < 0.001) {
+			return "0.000";
+		} else {
+			DecimalFormat df = new DecimalFormat("0.000");
+			return df.format(value);
+		}
+	}
+
+	/*--------------------------------------------------- printMessage -----
+	 |  Method printMessage 
+	 |
+	 |  Purpose:  This method prints various details about the sorting 
+	 |      process, including the number of items, rows, columns, 
+	 |      elapsed time, and the contents of a 2D array. The elapsed 
+	 |      time is formatted to three decimal places for better readability.
+	 |
+	 |  Pre-condition: A double value (seconds) representing the 
+	 |      elapsed time has been provided, along with initialized 
+	 |      instance variables for numItems, ROWS, COLS, and array2D.
+	 |
+	 |  Post-condition: The method outputs the number of items, 
+	 |      number of rows, number of columns, elapsed time in seconds, 
+	 |      any lines added with addDetail, and the contents of the 2D 
+	 |      array to the console, or the stage's summary of them if one 
+	 |      was asked for. With -emit the values were printed during 
+	 |      step 7, so this waits for the last of them and prints only 
+	 |      the summary, after them.
+	 |
+	 |  Parameters:
+	 |      seconds (IN) -- the elapsed time in seconds to be printed
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private void printMessage(double seconds) {
+
+		if (this.emitter != null) {
+			this.emitter.finish(); // The values are out already; the summary follows them
+			this.details.add(this.emitter.describe(seconds));
+		}
+
+		System.out.println("n = " + this.numItems);
+
+		System.out.println("r = " + this.ROWS);
+
+		System.out.println("s = " + this.COLS);
+
+		if (this.configuration != null) {
+			System.out.println(this.configuration);
+		}
+
+		String sec = formatToThreeDecimals(seconds);
+
+		System.out.print("Elapsed time = " + sec);
+		System.out.println(" seconds.");
+
+		if (this.stage != null) {
+			if (this.stage.getValues() == 0) {
+				feedStage(); // Engines that do not run step8Sort
+			}
+			this.details.add(this.stage.describe());
+		}
+
+		for (String detail : this.details) {
+			System.out.println(detail);
+		}
+
+		if (this.stage != null) {
+			SortMonitor.OutputEvent event = SortMonitor.beginPhase(new SortMonitor.OutputEvent());
+			SortMonitor.output(event, this.stage.print(System.out));
+		} else if (this.emitter == null) {
+			print2dArray(this.array2D);
+		}
+	}
+
+	/*--------------------------------------------------- feedStage -----
+	 |  Method feedStage 
+	 |
+	 |  Purpose:  Feeds the stage from the sorted 2D array, for the 
+	 |      engines and shapes that never run step8Sort (a single column, 
+	 |      the counting and sample sorts, or a resumed checkpoint taken 
+	 |      after step 8). This walk replaces the one print2dArray would 
+	 |      have made.
+	 |
+	 |  Pre-condition: The 2D array holds the values in sorted CMO.
+	 |
+	 |  Post-condition: Every value has been passed to the stage.
+	 |
+	 |  Parameters: None
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private void feedStage() {
+		for (int col = 0; col < this.COLS; col++) {
+			for (int row = 0; row < this.ROWS; row++) {
+				if (this.array2D[row][col] != null) {
+					this.stage.accept(this.array2D[row][col]);
+				}
+			}
+		}
+	}
+
+	/*--------------------------------------------------- addDetail -----
+	 |  Method addDetail 
+	 |
+	 |  Purpose:  Adds a line to the summary printMessage prints after the 
+	 |      elapsed time, such as timings that only some modes measure.
+	 |
+	 |  Pre-condition: None.
+	 |
+	 |  Post-condition: The line is printed by the next printMessage.
+	 |
+	 |  Parameters:
+	 |      detail (IN) -- the line to print
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	void addDetail(String detail) {
+		this.details.add(detail);
+	}
+
+	/*--------------------------------------------------- print2dArray -----
+	 |  Method print2dArray 
+	 |
+	 |  Purpose:  This method prints the elements of a two-dimensional 
+	 |      array of integers to the console. Each element is printed 
+	 |      in a column-wise manner, iterating through the rows for 
+	 |      each column.
+	 |
+	 |  Pre-condition: A two-dimensional array of integers has been 
+	 |      provided, with at least one row and one column.
+	 |
+	 |  Post-condition: The elements of the array are printed to the 
+	 |      console, with each value displayed on a new line.
+	 |
+	 |  Parameters:
+	 |      array (IN) -- the two-dimensional array of integers to be printed
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private void print2dArray(Integer[][] array) {
+		SortMonitor.OutputEvent event = SortMonitor.beginPhase(new SortMonitor.OutputEvent());
+		long bytes = 0; // Characters written, for the output event
+
+		for (int i = 0; i < array[0].length; i++) {
+			for (int j = 0; j < array.length; j++) {
+				if (array[j][i] != null) { // Virtual padding is never printed
+					String line = array[j][i].toString();
+					System.out.println(line);
+					bytes += line.length() + 1;
+				}
+			}
+		}
+		SortMonitor.output(event, bytes);
+	}
+
+	/*--------------------------------------------------- main -----
+	 |  Method main 
+	 |
+	 |  Purpose:  The entry point of the program that initializes the 
+	 |      necessary components and orchestrates the sorting process 
+	 |      based on the number of columns in the data. It utilizes 
+	 |      a `readFile` object to load data and a `ColumnSortSelection` instance to 
+	 |      perform the sorting. It measures and prints the elapsed time 
+	 |      for the sorting operations.
+	 |
+	 |  Pre-condition: The program expects a valid input file to be 
+	 |      provided by the `readFile` class, containing sortable data 
+	 |      in the specified format.
+	 |
+	 |  Post-condition: The sorting operations are performed based on 
+	 |      the number of columns. The elapsed time is calculated and 
+	 |      printed alongside the sorted data.
+	 |
+	 |  Parameters:
+	 |      args (IN) -- an array of command-line arguments. Every result 
+	 |      is checked against its input (see verify) unless -noverify is 
+	 |      passed. Passing 
+	 |      -offheap keeps the matrix in native memory (see runOffHeap).
+	 |      When the values span a small range the counting sort is used 
+	 |      instead of the column sort, unless -columnsort is passed. 
+	 |      Passing -samplesort uses the sample sort (see sampleSort).
+	 |      Passing -stream (or -binary for raw int32 input) overlaps 
+	 |      reading the file with step 1 (see runStreaming). Passing 
+	 |      -compressed keeps the columns compressed (see runCompressed). 
+	 |      Passing -external sorts files larger than memory (see 
+	 |      runExternal). Passing -tune picks the shape, column kernel and 
+	 |      threads for this machine (see AutoTuner), and -profile=<file> 
+	 |      caches that choice. Passing -checkpoint=<file> saves the column sort 
+	 |      after every step, and -resume=<file> carries on from there 
+	 |      (see runResume). Passing -kernel=<name> sorts the columns with 
+	 |      that kernel (see sortValues). Passing -distinct, -count or 
+	 |      -group=<width> prints a summary of the sorted values instead 
+	 |      of the values (see AggregateStage). Passing -metrics=<port> serves the progress 
+	 |      of the sort over HTTP (see SortMonitor). Passing -keys=<k> sorts 
+	 |      lines of k integer fields (see runComposite). Every engine 
+	 |      reserves its estimated peak memory first (see reserve); 
+	 |      -budget=<MB> sets the budget, and a heap sort that does not 
+	 |      fit it is downgraded to the external sort. Passing -window=<N> 
+	 |      keeps the last N values of a stream sorted (see runWindow). 
+	 |      Passing -shared=<file> sorts values a producer process left in 
+	 |      a memory-mapped file, in place (see runShared). Passing -emit 
+	 |      runs the column sort and prints each column as soon as step 7 
+	 |      makes it final, ahead of the summary (see ColumnEmitter). Passing 
+	 |      -join=<file> joins the input with a second file, or combines 
+	 |      them as multisets with -op=<operation> (see runJoin).
+	 |
+	 |  Throws:  FileNotFoundException if the input file is not found.
+	 |
+	 |  Returns:  This method does not return a value; it exits the program 
+	 |      after execution.
+	 *-------------------------------------------------------------------*/
+	public static void main(String[] args) throws FileNotFoundException {
+
+		verify = !hasOption(args, "-noverify");
+		aggregation = AggregateStage.fromOptions(args);
+		boolean emit = hasOption(args, "-emit");
+
+		if (aggregation != null && emit) {
+			System.out.println("-emit prints the values, so it cannot be combined with -distinct, -count or -group");
+			System.exit(0);
+		}
+
+		// Only the heap column sort of the default path has a step 7 to print from
+		if (emit && (hasOption(args, "-offheap") || hasOption(args, "-external") || hasOption(args, "-compressed")
+				|| hasOption(args, "-stream") || hasOption(args, "-binary") || hasOption(args, "-samplesort")
+				|| optionValue(args, "-keys=") != null || optionValue(args, "-window=") != null
+				|| optionValue(args, "-shared=") != null || optionValue(args, "-resume=") != null
+				|| optionValue(args, "-join=") != null)) {
+			System.out.println("-emit works with the in-memory column sort only, not with -offheap, -external, "
+					+ "-compressed, -stream, -binary, -samplesort, -keys, -window, -shared, -resume or -join");
+			System.exit(0);
+		}
+
+		if (aggregation != null && (hasOption(args, "-offheap") || hasOption(args, "-external")
+				|| hasOption(args, "-compressed") || optionValue(args, "-keys=") != null
+				|| optionValue(args, "-window=") != null || optionValue(args, "-shared=") != null
+				|| optionValue(args, "-join=") != null)) {
+			System.out.println("-distinct, -count and -group work with the in-memory engines only");
+			System.exit(0);
+		}
+
+		if (optionValue(args, "-metrics=") != null) {
+			try {
+				int port = SortMonitor.serve(Integer.parseInt(optionValue(args, "-metrics=")));
+				System.out.println("Metrics at http://127.0.0.1:" + port + "/");
+			} catch (NumberFormatException e) {
+				System.out.println("-metrics needs a port number");
+				System.exit(0);
+			}
+		}
+
+		if (optionValue(args, "-budget=") != null) {
+			try {
+				long budget = Long.parseLong(optionValue(args, "-budget="));
+				if (budget < 1) {
+					throw new NumberFormatException();
+				}
+				MemoryGovernor.setBudget(budget << 20);
+			} catch (NumberFormatException e) {
+				System.out.println("-budget needs a number of megabytes");
+				System.exit(0);
+			}
+		}
+
+		String kernel = optionValue(args, "-kernel=");
+
+		if (kernel != null && !Arrays.asList(KERNELS).contains(kernel)) {
+			System.out.println("Unknown kernel " + kernel + "; expected one of " + String.join(", ", KERNELS));
+			System.exit(0);
+		}
+
+		if (kernel != null && (hasOption(args, "-offheap") || hasOption(args, "-compressed")
+				|| optionValue(args, "-keys=") != null || optionValue(args, "-window=") != null
+				|| optionValue(args, "-shared=") != null)) {
+			System.out.println("-kernel picks how the heap column sort sorts its columns, which -offheap, "
+					+ "-compressed, -keys, -window and -shared do not use");
+			System.exit(0);
+		}
+
+		if (optionValue(args, "-resume=") != null) {
+			runResume(new File(optionValue(args, "-resume=")), kernel);
+			return;
+		}
+
+		if (optionValue(args, "-keys=") != null) {
+			runComposite(optionValue(args, "-keys="));
+			return;
+		}
+
+		if (optionValue(args, "-window=") != null) {
+			runWindow(args);
+			return;
+		}
+
+		if (optionValue(args, "-shared=") != null) {
+			runShared(new File(optionValue(args, "-shared=")));
+			return;
+		}
+
+		if (optionValue(args, "-join=") != null) {
+			runJoin(args);
+			return;
+		}
+
+		if (hasOption(args, "-offheap")) {
+			runOffHeap();
+			return;
+		}
+
+		if (hasOption(args, "-external")) {
+			runExternal(args);
+			return;
+		}
+
+		if (hasOption(args, "-compressed")) {
+			runCompressed();
+			return;
+		}
+
+		if (hasOption(args, "-stream") || hasOption(args, "-binary")) {
+			runStreaming(hasOption(args, "-binary"), kernel);
+			return;
+		}
+
+		File input = new File(readFile.promptFileName());
+		String checkpointFile = optionValue(args, "-checkpoint=");
+
+		// Admitted before loading, so a file that does not fit is never read onto the heap.
+		// Only the plain sort can go out of core; the summary stages, checkpoints and -emit need the matrix
+		MemoryGovernor.Reservation memory = reserve("heap", MemoryGovernor.heapBytes(input),
+				aggregation == null && checkpointFile == null && !emit ? ExternalColumnSort.DEFAULT_MEMORY_MB << 20 : 0);
+
+		if (memory.outcome.equals(MemoryGovernor.DOWNGRADED)) {
+			System.out.println(memory.describe() + ", sorting externally");
+			runExternal(args, input, memory);
+			return;
+		}
+
+		long loadStart = System.nanoTime();
+		readFile file = new readFile(input);
+		loadTime = System.nanoTime() - loadStart;
+
+		String profileFile = optionValue(args, "-profile=");
+		AutoTuner tuner = null;
+
+		if (hasOption(args, "-tune") || profileFile != null) {
+			tuner = AutoTuner.tune(file, profileFile == null ? null : new File(profileFile));
+			file.reshape(tuner.rows, tuner.cols);
+		}
+
+		ColumnSortSelection ColumnSortSelection = new ColumnSortSelection(file.sortCol, file.numItems, file.ROWS, file.COLS);
+
+		ColumnSortSelection.stage = aggregation;
+		ColumnSortSelection.emit = emit;
+		ColumnSortSelection.addDetail(memory.describe());
+
+		if (tuner != null) {
+			ColumnSortSelection.configure(tuner.kernel, tuner.threads, tuner.describe());
+		} else if (kernel != null) {
+			ColumnSortSelection.configure(kernel, 1, null);
+		}
+
+		String reason = countingSortReason(file);
+		boolean columnSort = hasOption(args, "-columnsort") || checkpointFile != null || tuner != null
+				|| kernel != null || emit;
+		boolean counting = reason.startsWith("range") && !columnSort;
+
+		ColumnSortSelection.addDetail("Values: min = " + file.min + ", max = " + file.max + ", distinct = "
+				+ (file.distinct < 0 ? "over " + readFile.DISTINCT_LIMIT : file.distinct));
+
+		startTime = System.nanoTime();
+
+		if (hasOption(args, "-samplesort")) {
+			SortMonitor.beginJob("sample", file.numItems, 0, 0, 1);
+			SortMonitor.step(1, "sample", file.COLS, file.numItems, () -> ColumnSortSelection.sampleSort());
+			SortMonitor.endJob();
+		} else if (counting) {
+			ColumnSortSelection.addDetail("Engine = counting sort (" + reason + ")");
+			SortMonitor.beginJob("counting", file.numItems, 0, 0, 1);
+			SortMonitor.step(1, "counting", file.COLS, file.numItems,
+					() -> ColumnSortSelection.countingSort(file.min, file.max));
+			SortMonitor.endJob();
+		} else {
+			ColumnSortSelection.addDetail("Engine = column sort, " + ColumnSortSelection.kernel + " kernel ("
+					+ (hasOption(args, "-columnsort") ? "-columnsort given"
+							: tuner != null ? "tuned"
+									: kernel != null ? "-kernel given"
+											: checkpointFile != null ? "-checkpoint given"
+													: emit ? "-emit given" : reason)
+					+ ")");
+			if (checkpointFile != null) {
+				ColumnSortSelection.checkpoint = new Checkpoint(new File(checkpointFile), file.checksum);
+			}
+			ColumnSortSelection.sort(false);
+		}
+
+		elapsedTime = System.nanoTime() - startTime;
+		seconds = (elapsedTime / BILLION);
+		ColumnSortSelection.addDetail(describeLoad(loadTime + elapsedTime, ""));
+
+		if (verify) {
+			ColumnSortSelection.verify(file.checksum);
+		}
+
+		if (ColumnSortSelection.checkpoint != null) {
+			ColumnSortSelection.addDetail(ColumnSortSelection.checkpoint.report(seconds));
+		}
+
+		if (ColumnSortSelection.scheduler != null) {
+			ColumnSortSelection.addDetail(ColumnSortSelection.scheduler.report());
+		}
+
+		ColumnSortSelection.printMessage(seconds);
+		memory.close();
+	}
+
+	/*--------------------------------------------------- runResume -----
+	 |  Method runResume 
+	 |
+	 |  Purpose:  Resumes a column sort from the checkpoint written after 
+	 |      its last finished step (see -checkpoint), without reading the 
+	 |      input again. The remaining steps keep checkpointing to the 
+	 |      same file, so a second crash can be resumed as well. The 
+	 |      input checksum is stored in the checkpoint, so the result is 
+	 |      verified as usual. The kernel is not saved in the checkpoint, 
+	 |      so the remaining steps use the one given with -kernel, or the 
+	 |      selection kernel.
+	 |
+	 |  Pre-condition: The file was written by Checkpoint.save.
+	 |
+	 |  Post-condition: The sorted values are printed along with the step 
+	 |      resumed from and the checkpoint cost.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the checkpoint file
+	 |      kernel (IN) -- the column kernel given with -kernel, or null
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private static void runResume(File file, String kernel) {
+
+		startTime = System.nanoTime();
+
+		Checkpoint checkpoint = Checkpoint.load(file);
+		MemoryGovernor.Reservation memory = reserve("heap",
+				MemoryGovernor.heapBytes(checkpoint.numItems, checkpoint.ROWS, checkpoint.COLS), 0);
+
+		ColumnSortSelection ColumnSortSelection = new ColumnSortSelection(checkpoint.matrix, checkpoint.numItems,
+				checkpoint.ROWS, checkpoint.COLS);
+		ColumnSortSelection.addDetail(memory.describe());
+		ColumnSortSelection.restore(checkpoint.step, checkpoint.matrix);
+		ColumnSortSelection.stage = aggregation;
+		checkpoint.matrix = null;
+
+		if (kernel != null) {
+			ColumnSortSelection.configure(kernel, 1, null);
+		}
+
+		ColumnSortSelection.addDetail("Engine = column sort, " + ColumnSortSelection.kernel
+				+ " kernel (resumed after step " + checkpoint.step + " from "
+				+ file + " in " + formatToThreeDecimals((System.nanoTime() - startTime) / BILLION) + " seconds)");
+
+		ColumnSortSelection.checkpoint = checkpoint;
+		ColumnSortSelection.sortFrom(checkpoint.step);
+
+		elapsedTime = System.nanoTime() - startTime;
+		seconds = (elapsedTime / BILLION);
+
+		if (verify) {
+			ColumnSortSelection.verify(checkpoint.input);
+		}
+
+		ColumnSortSelection.addDetail(checkpoint.report(seconds));
+
+		ColumnSortSelection.printMessage(seconds);
+		memory.close();
+	}
 
-			ColumnSortSelection.selectionSort();
+	/*--------------------------------------------------- sort -----
+	 |  Method sort 
+	 |
+	 |  Purpose:  Runs the sorting steps in order. A single column is 
+	 |      sorted with one selection sort pass; otherwise all eight 
+	 |      column sort steps are run (see sortFrom).
+	 |
+	 |  Pre-condition: The 2D array is filled.
+	 |
+	 |  Post-condition: array2D holds the values in sorted CMO.
+	 |
+	 |  Parameters:
+	 |      columnsSorted (IN) -- true if step 1 has already been done, 
+	 |      as the streaming loader does while it reads the file
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	void sort(boolean columnsSorted) {
+
+		if (columnsSorted) {
+			// Finish step 1 the way selectionSort does, so step 2 reads from a
+			// different outer array than the one it writes rows into
+			this.array2D = this.array2dCopy.clone();
+		}
+
+		sortFrom(columnsSorted ? 1 : 0);
+	}
+
+	/*--------------------------------------------------- sortFrom -----
+	 |  Method sortFrom 
+	 |
+	 |  Purpose:  Runs the steps after the given one. With a single 
+	 |      column, step 1 is the whole sort. If a checkpoint is set, the 
+	 |      state is saved after every step, so the run can be resumed 
+	 |      from the last finished one (see runResume).
+	 |
+	 |  Pre-condition: The 2D arrays hold the state the given step left 
+	 |      behind (see restore).
+	 |
+	 |  Post-condition: array2D holds the values in sorted CMO.
+	 |
+	 |  Parameters:
+	 |      done (IN) -- the last step already finished, 0 for none
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	void sortFrom(int done) {
+
+		int last = this.COLS == 1 ? 1 : 8;
+
+		SortMonitor.beginJob("column", this.numItems, this.ROWS, this.COLS, last);
+
+		for (int step = done + 1; step <= last; step++) {
+
+			final int current = step;
+			int columns = (step == 6 || step == 7) ? this.COLS + 1 : this.COLS; // Steps 6 and 7 write the extra column
+			SortMonitor.step(step, stepKernel(step), columns, (long) this.ROWS * columns, () -> runStep(current));
+
+			if (this.checkpoint != null) {
+				this.checkpoint.save(step, stepState(step), this.numItems, this.COLS);
+			}
+		}
+
+		SortMonitor.endJob();
+	}
+
+	/*--------------------------------------------------- runStep -----
+	 |  Method runStep 
+	 |
+	 |  Purpose:  Runs one of the eight column sort steps.
+	 |
+	 |  Parameters:
+	 |      step (IN) -- the step, 1 to 8
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private void runStep(int step) {
+		switch (step) {
+		case 2:
+			this.step2OfSort();
+			break;
+		case 4:
+			this.step4Sort();
+			break;
+		case 6:
+			this.step6Sort();
+			break;
+		case 7:
+			this.step7SelectionSort();
+			break;
+		case 8:
+			this.step8Sort();
+			break;
+		default: // Steps 1, 3 and 5
+			this.selectionSort();
+		}
+	}
+
+	/*--------------------------------------------------- stepKernel -----
+	 |  Method stepKernel 
+	 |
+	 |  Purpose:  Names what a step does, for its JFR event: the column 
+	 |      kernel for the sorting steps, and the permutation otherwise.
+	 |
+	 |  Parameters:
+	 |      step (IN) -- the step, 1 to 8
+	 |
+	 |  Returns:  The name.
+	 *-------------------------------------------------------------------*/
+	private String stepKernel(int step) {
+		switch (step) {
+		case 2:
+			return "transpose";
+		case 4:
+			return "untranspose";
+		case 6:
+			return "shift";
+		case 8:
+			return "unshift";
+		default: // Steps 1, 3, 5 and 7
+			return this.kernel;
+		}
+	}
+
+	/*--------------------------------------------------- stepState -----
+	 |  Method stepState 
+	 |
+	 |  Purpose:  Returns the 2D array that holds the result of a step: 
+	 |      array2dCopy, with its extra column, after steps 6 and 7, and 
+	 |      array2D after every other step.
+	 |
+	 |  Parameters:
+	 |      step (IN) -- the step just finished
+	 |
+	 |  Returns:  The 2D array to checkpoint.
+	 *-------------------------------------------------------------------*/
+	private Integer[][] stepState(int step) {
+		return (step == 6 || step == 7) ? this.array2dCopy : this.array2D;
+	}
 
+	/*--------------------------------------------------- restore -----
+	 |  Method restore 
+	 |
+	 |  Purpose:  Sets up the 2D arrays the way the given step leaves 
+	 |      them, from the matrix a checkpoint saved after it, so that 
+	 |      sortFrom can carry on. After steps 6 and 7 the matrix is the 
+	 |      shifted array2dCopy and array2D only needs room for step8Sort; 
+	 |      otherwise it is array2D, and array2dCopy is a separate outer 
+	 |      array over the same rows, as selectionSort leaves it.
+	 |
+	 |  Parameters:
+	 |      step (IN) -- the step the matrix was saved after
+	 |      matrix (IN) -- the saved matrix
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private void restore(int step, Integer[][] matrix) {
+		if (step == 6 || step == 7) {
+			this.array2dCopy = matrix;
+			this.array2D = new Integer[this.ROWS][this.COLS];
 		} else {
+			this.array2D = matrix;
+			this.array2dCopy = matrix.clone();
+		}
+	}
+
+	/*--------------------------------------------------- runStreaming -----
+	 |  Method runStreaming 
+	 |
+	 |  Purpose:  Runs the sort with streaming ingestion. When the number 
+	 |      of values is known before they are read (a binary file, or a 
+	 |      text file starting with an "n = <count>" header), the shape is 
+	 |      picked up front and each column is sorted (step 1) on a worker 
+	 |      thread as soon as the parser has filled it. The remaining steps 
+	 |      then run as usual. Since parsing and step 1 overlap, the elapsed 
+	 |      time here covers loading as well as sorting, and the time to the 
+	 |      first sorted column is reported too. Text files without a header 
+	 |      are loaded with readFile and sorted as in main, where the elapsed 
+	 |      time is the sort alone. Either way the "Load + sort" line gives 
+	 |      the total from the start of reading, as main prints it too, so 
+	 |      the two paths can be compared.
+	 |
+	 |  Pre-condition: The user enters the name of a valid input file.
+	 |
+	 |  Post-condition: The sorted values and matrix details are printed.
+	 |
+	 |  Parameters:
+	 |      binary (IN) -- true if the file holds raw 32-bit big-endian 
+	 |      integers instead of text
+	 |      kernel (IN) -- the column kernel given with -kernel, or null 
+	 |      for the selection kernel
+	 |
+	 |  Throws:  FileNotFoundException if the input file is not found.
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private static void runStreaming(boolean binary, String kernel) throws FileNotFoundException {
+
+		File input = new File(readFile.promptFileName());
+
+		startTime = System.nanoTime();
+
+		StreamingReader reader = new StreamingReader(input, binary);
+
+		ColumnSortSelection ColumnSortSelection;
+		SortChecksum loaded = reader.checksum;
+		MemoryGovernor.Reservation memory;
+
+		if (reader.numItems < 0) {
+
+			// No header, so n is estimated from the file until the whole file is read
+			memory = reserve("heap", MemoryGovernor.heapBytes(input), 0);
+			startTime = System.nanoTime();
+			readFile file = new readFile(input);
+			loadTime = System.nanoTime() - startTime;
+
+			ColumnSortSelection = new ColumnSortSelection(file.sortCol, file.numItems, file.ROWS, file.COLS);
+			ColumnSortSelection.stage = aggregation;
+			if (kernel != null) {
+				ColumnSortSelection.configure(kernel, 1, null);
+			}
+			ColumnSortSelection.addDetail("Values: min = " + file.min + ", max = " + file.max + ", distinct = "
+					+ (file.distinct < 0 ? "over " + readFile.DISTINCT_LIMIT : file.distinct));
+			ColumnSortSelection.addDetail("Engine = column sort, " + ColumnSortSelection.kernel
+					+ " kernel (no \"n = \" header to stream with)");
 
 			startTime = System.nanoTime();
 
-			ColumnSortSelection.selectionSort();
-			ColumnSortSelection.step2OfSort();
-			ColumnSortSelection.selectionSort();
-			ColumnSortSelection.step4Sort();
-			ColumnSortSelection.selectionSort();
-			ColumnSortSelection.step6Sort();
-			ColumnSortSelection.step7SelectionSort();
-			ColumnSortSelection.step8Sort();
+			ColumnSortSelection.sort(false);
+
+			loaded = file.checksum;
+
+			elapsedTime = System.nanoTime() - startTime;
+			ColumnSortSelection.addDetail(describeLoad(loadTime + elapsedTime, ""));
+
+		} else {
+
+			memory = reserve("heap", MemoryGovernor.heapBytes(reader.numItems, reader.ROWS, reader.COLS), 0);
+
+			ColumnSortSelection = new ColumnSortSelection(reader.sortCol, reader.numItems, reader.ROWS, reader.COLS);
+			ColumnSortSelection.stage = aggregation;
+			if (kernel != null) {
+				ColumnSortSelection.configure(kernel, 1, null); // Before streamInto, which sorts with it
+			}
+
+			reader.streamInto(ColumnSortSelection);
+			loadTime = System.nanoTime() - startTime;
 
+			ColumnSortSelection.sort(true);
+
+			elapsedTime = System.nanoTime() - startTime;
+			ColumnSortSelection.addDetail("Engine = column sort, " + ColumnSortSelection.kernel
+					+ " kernel (" + (binary ? "-binary" : "-stream") + " given)");
+			ColumnSortSelection.addDetail("First sorted column after = "
+					+ formatToThreeDecimals(reader.firstColumnTime / BILLION) + " seconds.");
+			ColumnSortSelection.addDetail(describeLoad(elapsedTime, ", overlapped with step 1"));
 		}
 
-		elapsedTime = System.nanoTime() - startTime;
 		seconds = (elapsedTime / BILLION);
 
+		if (verify) {
+			ColumnSortSelection.verify(loaded);
+		}
+
+		ColumnSortSelection.addDetail(memory.describe());
 		ColumnSortSelection.printMessage(seconds);
+		memory.close();
 	}
 
-}
-
-/**
- * --------------------------------------------------------- Class: readFile
- *
- * Purpose: This class is responsible for reading integer data from a specified
- * file and processing that data to create a 2D array suitable for sorting
- * operations. It handles user input for the filename, reads the file content,
- * and manages the conversion of read values into an array format.
- *
- * The class includes methods for: - Reading integer values from a file while
- * handling non-integer values gracefully. - Calculating the number of rows and
- * columns for the 2D array based on the number of integers read. - Building a
- * 2D array from a list of integers.
- *
- * Fields: - int numItems: The total number of integers read from the file. -
- * int ROWS: The number of rows determined for the 2D array. - int COLS: The
- * number of columns determined for the 2D array. - Integer[][] sortCol: A 2D
- * array to store sorted integer values.
- *
- * Author: Chance Krueger Date: 10/26/2024
- * ---------------------------------------------------------
- */
-class readFile {
-
-	Integer[][] sortCol; // 2D array used for sorting columns of integers
-
-	int numItems; // Total number of items processed or read
-	int ROWS; // Number of rows in the 2D array
-	int COLS; // Number of columns in the 2D array
+	/*--------------------------------------------------- describeLoad -----
+	 |  Method describeLoad 
+	 |
+	 |  Purpose:  Builds the line giving the time from the start of 
+	 |      reading the input to the end of the sort, with the part spent 
+	 |      reading (loadTime). The elapsed time is the sort alone on some 
+	 |      paths and includes reading on others, so this is the figure to 
+	 |      compare between them.
+	 |
+	 |  Parameters:
+	 |      total (IN) -- nanoseconds from the start of reading to the end 
+	 |          of the sort
+	 |      note (IN) -- text added after the load time, or ""
+	 |
+	 |  Returns:  The line, such as 
+	 |      "Load + sort = 0.671 seconds (load 0.402 seconds)."
+	 *-------------------------------------------------------------------*/
+	private static String describeLoad(long total, String note) {
+		return "Load + sort = " + formatToThreeDecimals(total / BILLION) + " seconds (load "
+				+ formatToThreeDecimals(loadTime / BILLION) + " seconds" + note + ").";
+	}
 
-	/*--------------------------------------------------- readFile -----
-	 |  Constructor readFile
+	/*--------------------------------------------------- runOffHeap -----
+	 |  Method runOffHeap 
 	 |
-	 |  Purpose:  This constructor prompts the user to enter a file name 
-	 |      and attempts to read integers from the specified file. It 
-	 |      initializes instance variables for the number of items, 
-	 |      rows, and columns. After reading the integers, it calculates 
-	 |      the appropriate number of rows and columns and builds a 2D 
-	 |      array to store the data.
+	 |  Purpose:  Runs the sort on the off-heap backend. The integers are 
+	 |      loaded straight into native memory and sorted there by 
+	 |      OffHeapColumnSort, so n may exceed Integer.MAX_VALUE and the 
+	 |      sort adds no garbage collection load. Only the sort itself 
+	 |      is timed, as in main.
 	 |
-	 |  Pre-condition: The input file must exist and be accessible 
-	 |      for reading; otherwise, a FileNotFoundException will be thrown.
+	 |  Pre-condition: The user enters the name of a valid input file.
 	 |
-	 |  Post-condition: The instance variables `numItems`, `ROWS`, and 
-	 |      `COLS` are initialized, and a 2D array is constructed based 
-	 |      on the integers read from the file.
+	 |  Post-condition: The sorted values and matrix details are printed.
 	 |
-	 |  Parameters: 
-	 |      None
+	 |  Throws:  FileNotFoundException if the input file is not found.
 	 |
-	 |  Throws: FileNotFoundException if the specified file does not 
-	 |      exist or is not accessible.
+	 |  Returns:  This method does not return a value.
 	 *-------------------------------------------------------------------*/
-	public readFile() throws FileNotFoundException {
+	private static void runOffHeap() throws FileNotFoundException {
+
+		File input = new File(readFile.promptFileName());
+		MemoryGovernor.Reservation memory = reserve("off-heap",
+				MemoryGovernor.offHeapBytes(MemoryGovernor.estimateValues(input)), 0);
+		OffHeapMatrix loaded = OffHeapColumnSort.load(input);
+		OffHeapColumnSort offHeap = new OffHeapColumnSort(loaded);
+
+		startTime = System.nanoTime();
+
+		offHeap.sort();
+
+		elapsedTime = System.nanoTime() - startTime;
+		seconds = (elapsedTime / BILLION);
 
-		System.out.print("Enter File Name: ");
+		if (verify) {
+			offHeap.verify(loaded.checksum);
+		}
 
-		Scanner scanner = new Scanner(System.in);
+		offHeap.printMessage(seconds);
+		memory.close();
+	}
 
-		String fileName = scanner.nextLine();
+	/*--------------------------------------------------- runComposite -----
+	 |  Method runComposite 
+	 |
+	 |  Purpose:  Runs the sort on records of several integer fields. 
+	 |      CompositeKeySort packs each record into one order-preserving 
+	 |      long key, or falls back to sorting record indexes when the 
+	 |      fields are too wide, and runs the column sort steps on the 
+	 |      keys. Only the sort itself is timed, as in main.
+	 |
+	 |  Pre-condition: The user enters the name of a valid input file.
+	 |
+	 |  Post-condition: The sorted records and matrix details are printed.
+	 |
+	 |  Parameters:
+	 |      count (IN) -- the value of -keys=, the number of fields per line
+	 |
+	 |  Throws:  FileNotFoundException if the input file is not found.
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private static void runComposite(String count) throws FileNotFoundException {
+
+		int numFields = 0;
+		try {
+			numFields = Integer.parseInt(count);
+		} catch (NumberFormatException e) {
+			System.out.println("-keys needs the number of fields per line");
+			System.exit(0);
+		}
+		if (numFields < 1) {
+			System.out.println("-keys needs at least 1 field per line");
+			System.exit(0);
+		}
 
-		File file = new File(fileName);
+		File input = new File(readFile.promptFileName());
+		long records = Math.max(1, MemoryGovernor.estimateValues(input) / numFields);
+		int[] shape = readFile.calculateRowsCols((int) Math.min(records, Integer.MAX_VALUE - 8));
+		MemoryGovernor.Reservation memory = reserve("composite",
+				MemoryGovernor.compositeBytes(records, shape[0], shape[1], numFields), 0);
 
-		this.numItems = 0;
-		this.ROWS = 0;
-		this.COLS = 0;
+		CompositeKeySort composite = CompositeKeySort.load(input, numFields);
 
-		ArrayList<Integer> build2D = readAndBuild(file);
+		startTime = System.nanoTime();
 
-		calculateRowsCols();
+		composite.sort();
 
-		build2DArray(build2D);
+		elapsedTime = System.nanoTime() - startTime;
+		seconds = (elapsedTime / BILLION);
 
-		scanner.close();
+		if (verify) {
+			composite.verify();
+		}
 
+		composite.printMessage(seconds);
+		System.out.println(memory.describe());
+		memory.close();
 	}
 
-	/*--------------------------------------------------- calculateRowsCols -----
-	 |  Method calculateRowsCols 
+	/*--------------------------------------------------- runWindow -----
+	 |  Method runWindow 
 	 |
-	 |  Purpose:  This method calculates the number of rows and columns 
-	 |      for a 2D array based on the total number of items. It 
-	 |      attempts to find a suitable configuration that maximizes 
-	 |      the dimensions while ensuring that the total number of items 
-	 |      fits perfectly into the calculated rows and columns.
+	 |  Purpose:  Sorts a stream continuously over a sliding window of 
+	 |      its last N values (see SlidingWindowSort). The file may be a 
+	 |      named pipe that never ends. After every -every=<k> values 
+	 |      (default N) a line with the window's minimum, the 
+	 |      -percentiles=<list> (default 50,90,99) and the maximum is 
+	 |      printed, and flushed so it can be followed live. At the end of 
+	 |      the stream the last window is printed in sorted order.
 	 |
-	 |  Pre-condition: The `numItems` variable must be a positive integer 
-	 |      representing the total number of items to be organized into 
-	 |      rows and columns.
+	 |  Pre-condition: The user enters the name of a valid input file.
 	 |
-	 |  Post-condition: The calculated values for `ROWS` and `COLS` are 
-	 |      stored in the corresponding instance variables, allowing 
-	 |      for subsequent operations on the 2D array structure.
+	 |  Post-condition: The reports, the window details and the sorted 
+	 |      window are printed.
 	 |
-	 |  Parameters: 
-	 |      None
+	 |  Parameters:
+	 |      args (IN) -- the command-line arguments
+	 |
+	 |  Throws:  FileNotFoundException if the input file is not found.
 	 |
-	 |  Returns:  This method does not return a value; it updates 
-	 |      instance variables `ROWS` and `COLS` directly.
+	 |  Returns:  This method does not return a value.
 	 *-------------------------------------------------------------------*/
-	private void calculateRowsCols() {
+	private static void runWindow(String[] args) throws FileNotFoundException {
+
+		int window = 0;
+		long every = 0;
+		try {
+			window = Integer.parseInt(optionValue(args, "-window="));
+			String reportEvery = optionValue(args, "-every=");
+			every = reportEvery == null ? window : Long.parseLong(reportEvery);
+		} catch (NumberFormatException e) {
+			window = 0;
+		}
+		if (window < 1 || every < 1) {
+			System.out.println("-window and -every need a positive number of values");
+			System.exit(0);
+		}
 
-		// Start with the highest possible divisor less than numItems
-		int test = this.numItems - 1;
+		long reportEvery = every;
+		String list = optionValue(args, "-percentiles=");
+		double[] percents = SlidingWindowSort.parsePercentiles(list == null ? "50,90,99" : list);
 
-		while (true) {
+		File input = new File(readFile.promptFileName());
+		MemoryGovernor.Reservation memory = reserve("window", MemoryGovernor.windowBytes(window), 0);
 
-			// Handle special case when there's only one item
-			if (test == 1) {
-				this.COLS = 1;
-				this.ROWS = this.numItems;
-				break;
-			}
+		SlidingWindowSort sorted = new SlidingWindowSort(window);
+		IntReader reader = new IntReader(input);
 
-			// Check if test is a divisor of numItems
-			if (this.numItems % test == 0) {
-				int s = test;
-				int r = this.numItems / s;
-
-				// Ensure the calculated dimensions fit the total items
-				if (r * s == this.numItems) {
-					int calc = (s - 1);
-					calc = (int) Math.pow(calc, 2);
-					calc = calc * 2;
-
-					// Check if the calculated rows meet the criteria
-					if (r >= calc) {
-						this.COLS = s;
-						this.ROWS = r;
-						break;
+		startTime = System.nanoTime();
+
+		SortMonitor.beginJob("window", window, 0, 0, 1);
+		SortMonitor.step(1, "window", 0, window, () -> {
+			while (reader.hasNext()) {
+				sorted.add(reader.next());
+				if (sorted.getAdded() % reportEvery == 0) {
+					StringBuilder line = new StringBuilder("After " + sorted.getAdded() + ": min = " + sorted.min());
+					for (double percent : percents) {
+						line.append(", p").append(formatPercent(percent)).append(" = ")
+								.append(sorted.percentile(percent));
 					}
+					System.out.println(line.append(", max = ").append(sorted.max()));
+					System.out.flush();
 				}
 			}
-			// Decrement test to check the next potential column size
-			test--;
+		});
+		SortMonitor.endJob();
+
+		elapsedTime = System.nanoTime() - startTime;
+		seconds = (elapsedTime / BILLION);
+
+		if (sorted.size() == 0) {
+			System.out.println("File Contains no values");
+			System.exit(0);
+		}
+
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+		out.println("n = " + sorted.size());
+		out.println("Elapsed time = " + formatToThreeDecimals(seconds) + " seconds.");
+		out.println(sorted.describe());
+		out.println(memory.describe());
+
+		if (verify) {
+			SortChecksum kept = new SortChecksum();
+			SortChecksum output = new SortChecksum();
+			sorted.forEachArrival(kept::add);
+			sorted.forEachSorted(output::addInOrder);
+			kept.verify(output);
+			out.println("Verified = " + output.count + " values in order, checksums match");
 		}
+
+		sorted.forEachSorted(out::println);
+		out.flush();
+		memory.close();
 	}
 
-	/*--------------------------------------------------- build2DArray -----
-	 |  Method build2DArray 
+	/*--------------------------------------------------- runShared -----
+	 |  Method runShared 
 	 |
-	 |  Purpose:  This method constructs a 2D array from a given 
-	 |      ArrayList of integers. It populates the array with values 
-	 |      from the ArrayList in a row-wise manner, and fills any 
-	 |      remaining spaces in the array with `Integer.MAX_VALUE` 
-	 |      when the ArrayList does not contain enough elements.
+	 |  Purpose:  Sorts the int32 values a producer process wrote into a 
+	 |      memory-mapped file (see SharedMemorySort). The file is named 
+	 |      on the command line instead of at the prompt, its values are 
+	 |      sorted where they are, and the producer is told through the 
+	 |      file's header; nothing is parsed and no values are printed. 
+	 |      The memory is reserved before the sort claims the file, so a 
+	 |      rejection leaves it READY for another try.
 	 |
-	 |  Pre-condition: The `build2D` ArrayList must be initialized 
-	 |      and may contain zero or more integer values. The 
-	 |      `ROWS` and `COLS` instance variables must be set prior 
-	 |      to calling this method.
+	 |  Pre-condition: The producer has created the file.
 	 |
-	 |  Post-condition: The `sortCol` 2D array is populated with 
-	 |      integers from the `build2D` ArrayList, or filled with 
-	 |      `Integer.MAX_VALUE` where necessary.
+	 |  Post-condition: The values in the file are sorted and marked 
+	 |      SORTED, and the matrix details are printed.
 	 |
-	 |  Parameters: 
-	 |      build2D (IN) -- an ArrayList of integers used to 
-	 |      populate the 2D array.
+	 |  Parameters:
+	 |      file (IN) -- the shared file
 	 |
-	 |  Returns:  This method does not return a value; it updates 
-	 |      the instance variable `sortCol` directly.
+	 |  Returns:  This method does not return a value.
 	 *-------------------------------------------------------------------*/
-	private void build2DArray(ArrayList<Integer> build2D) {
-
-		this.sortCol = new Integer[this.ROWS][this.COLS];
+	private static void runShared(File file) {
+
+		try {
+			SharedMemorySort shared = new SharedMemorySort(file);
+			MemoryGovernor.Reservation memory = reserve("shared", MemoryGovernor.sharedBytes(shared.getNumItems()),
+					0);
+
+			PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+			shared.sort(verify, out);
+			out.println(memory.describe());
+			out.flush();
+			memory.close();
+
+		} catch (IOException e) {
+			System.out.println("Could not map " + file + ": " + e.getMessage());
+			System.exit(0);
+		}
+	}
 
-		int curIndex = 0;
+	/*--------------------------------------------------- runJoin -----
+	 |  Method runJoin 
+	 |
+	 |  Purpose:  Sorts the input and the file given with -join=<file> at 
+	 |      the same time and merges them (see MergeJoin). -op=<operation> 
+	 |      picks join (the default), intersect, difference or union, and 
+	 |      -kernel=<name> the column kernel of both sorts (default 
+	 |      library, as selection sort is too slow for large ID files). 
+	 |      The result is printed as the merge produces it, and the 
+	 |      summary after it.
+	 |
+	 |  Pre-condition: The user enters the name of a valid input file.
+	 |
+	 |  Post-condition: The result, both matrix shapes, the cardinality 
+	 |      and the throughput of the merge are printed.
+	 |
+	 |  Parameters:
+	 |      args (IN) -- the command-line arguments
+	 |
+	 |  Throws:  FileNotFoundException if the input file is not found.
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private static void runJoin(String[] args) throws FileNotFoundException {
 
-		// Fill the 2D array row-by-row
-		for (int row = 0; row < this.ROWS; row++) {
-			for (int col = 0; col < this.COLS; col++) {
+		String kernel = optionValue(args, "-kernel="); // Checked by main
+		if (kernel == null) {
+			kernel = LIBRARY_KERNEL;
+		}
 
-				// Check if the current index exceeds the ArrayList size
-				if (curIndex > build2D.size() - 1) {
-					this.sortCol[row][col] = Integer.MAX_VALUE; // Use marker value
-				} else {
-					this.sortCol[row][col] = build2D.get(curIndex); // Fill with ArrayList value
-				}
-				curIndex++;
-			}
+		String operation = optionValue(args, "-op=");
+		if (operation == null) {
+			operation = MergeJoin.JOIN;
+		} else if (!Arrays.asList(MergeJoin.OPERATIONS).contains(operation)) {
+			System.out.println("Unknown operation " + operation + "; expected one of "
+					+ String.join(", ", MergeJoin.OPERATIONS));
+			System.exit(0);
 		}
+
+		File right = new File(optionValue(args, "-join="));
+		MergeJoin join = new MergeJoin(new File(readFile.promptFileName()), right, operation, kernel, verify);
+
+		join.run();
+	}
+
+	/*--------------------------------------------------- formatPercent -----
+	 |  Method formatPercent 
+	 |
+	 |  Parameters:
+	 |      percent (IN) -- a percentile such as 50 or 99.9
+	 |
+	 |  Returns:  The percentile without a trailing ".0".
+	 *-------------------------------------------------------------------*/
+	private static String formatPercent(double percent) {
+		return percent == Math.rint(percent) ? Long.toString((long) percent) : Double.toString(percent);
 	}
 
-	/*--------------------------------------------------- readAndBuild -----
-	 |  Method readAndBuild 
+	/*--------------------------------------------------- runCompressed -----
+	 |  Method runCompressed 
 	 |
-	 |  Purpose:  This method reads integers from a specified file and 
-	 |      constructs an ArrayList containing these integers. It also 
-	 |      keeps track of the total number of integers read. If a 
-	 |      non-integer value is encountered in the file, the method 
-	 |      prints an error message and terminates the program.
+	 |  Purpose:  Runs the sort on compressed columns. Each column is 
+	 |      stored run-length encoded and bit-packed by CompressedColumnSort, 
+	 |      which suits inputs with few distinct or closely clustered 
+	 |      values. The raw and compressed footprints are printed with 
+	 |      the matrix details.
 	 |
-	 |  Pre-condition: The `file` parameter must refer to a valid file 
-	 |      that exists and is accessible for reading.
+	 |  Pre-condition: The user enters the name of a valid input file.
 	 |
-	 |  Post-condition: An ArrayList containing all valid integers read 
-	 |      from the file is returned. The instance variable `numItems` 
-	 |      is incremented for each integer read.
+	 |  Post-condition: The sorted values and matrix details are printed.
 	 |
-	 |  Parameters: 
-	 |      file (IN) -- a File object representing the input file 
-	 |      from which integers will be read.
+	 |  Throws:  FileNotFoundException if the input file is not found.
 	 |
-	 |  Returns: An ArrayList of Integer objects constructed from 
-	 |      the values read from the file.
+	 |  Returns:  This method does not return a value.
 	 *-------------------------------------------------------------------*/
-	private ArrayList<Integer> readAndBuild(File file) throws FileNotFoundException {
+	private static void runCompressed() throws FileNotFoundException {
 
-		ArrayList<Integer> buildArrayStart = new ArrayList<Integer>();
+		// Loading holds the values raw in native memory, so that is admitted first; the
+		// compressed columns are only measured once they are built
+		File input = new File(readFile.promptFileName());
+		MemoryGovernor.Reservation memory = reserve("compressed",
+				MemoryGovernor.offHeapBytes(MemoryGovernor.estimateValues(input)), 0);
+		CompressedColumnSort compressed = CompressedColumnSort.load(input);
+		memory.close();
+		memory = reserve("compressed", compressed.estimatePeakBytes(), 0);
 
-		Scanner scanner = new Scanner(file);
+		startTime = System.nanoTime();
 
-		// Reads each item in the file
-		while (scanner.hasNext()) {
-			String curNum = scanner.next();
-			this.numItems++;
+		compressed.sort();
 
-			try {
-				Integer newNum = Integer.parseInt(curNum); // Parse string to integer
-				buildArrayStart.add(newNum);
+		elapsedTime = System.nanoTime() - startTime;
+		seconds = (elapsedTime / BILLION);
 
+		if (verify) {
+			compressed.verify();
+		}
+
+		compressed.printMessage(seconds);
+		memory.close();
+	}
+
+	/*--------------------------------------------------- runExternal -----
+	 |  Method runExternal 
+	 |
+	 |  Purpose:  Runs the external sort for files larger than memory. 
+	 |      ExternalColumnSort sorts the file in chunks that fit the memory 
+	 |      budget, spills them to disk and merges them. The budget in 
+	 |      megabytes is given with -memory=<MB> and the directory for the 
+	 |      sorted runs with -tmpdir=<dir>. If less than that is free 
+	 |      under -budget, the sort is given what is free instead.
+	 |
+	 |  Pre-condition: The user enters the name of a valid input file.
+	 |
+	 |  Post-condition: The sorted values and sort details are printed.
+	 |
+	 |  Parameters:
+	 |      args (IN) -- the command-line arguments
+	 |
+	 |  Throws:  FileNotFoundException if the input file is not found.
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private static void runExternal(String[] args) throws FileNotFoundException {
+
+		long budget = ExternalColumnSort.DEFAULT_MEMORY_MB;
+		String memory = optionValue(args, "-memory=");
+		if (memory != null) {
+			try {
+				budget = Long.parseLong(memory);
+				if (budget < 1) {
+					throw new NumberFormatException();
+				}
 			} catch (NumberFormatException e) {
-				// Handle non-integer values
-				System.out.println("File Contains a non-Integer Value");
-				System.exit(0); // Terminate program if a non-integer is found
+				System.out.println("-memory needs a number of megabytes");
+				System.exit(0);
 			}
+		}
+
+		File input = new File(readFile.promptFileName());
+
+		// The external sort can run in less than -memory, so it takes whatever of it is free
+		MemoryGovernor.Reservation reservation = reserve("external", budget << 20, budget << 20);
+		if (reservation.outcome.equals(MemoryGovernor.DOWNGRADED)) {
+			System.out.println(reservation.describe());
+		}
+		runExternal(args, input, reservation);
+	}
+
+	/*--------------------------------------------------- runExternal -----
+	 |  Method runExternal 
+	 |
+	 |  Purpose:  Runs the external sort on an already chosen file, within 
+	 |      the bytes reserved for it. main comes here directly when the 
+	 |      governor downgrades a heap sort that does not fit the budget.
+	 |
+	 |  Parameters:
+	 |      args (IN) -- the command-line arguments, for -tmpdir and 
+	 |          -kernel (the chunks use the selection kernel by default, 
+	 |          as the heap sort does)
+	 |      input (IN) -- the file to sort
+	 |      memory (IN) -- the reservation; its bytes are the memory budget 
+	 |          of the sort, and it is released once the output is printed
+	 |
+	 |  Throws:  FileNotFoundException if the input file is not found.
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private static void runExternal(String[] args, File input, MemoryGovernor.Reservation memory)
+			throws FileNotFoundException {
+
+		String tmpDir = optionValue(args, "-tmpdir=");
+		File directory = new File(tmpDir != null ? tmpDir : System.getProperty("java.io.tmpdir"));
 
+		String kernel = optionValue(args, "-kernel=");
+
+		ExternalColumnSort external = new ExternalColumnSort(memory.bytes, directory,
+				kernel != null ? kernel : SELECTION_KERNEL, verify);
+
+		startTime = System.nanoTime();
+
+		external.createRuns(input);
+
+		elapsedTime = System.nanoTime() - startTime;
+		seconds = (elapsedTime / BILLION);
+
+		external.printMessage(seconds);
+		memory.close();
+	}
+
+	/*--------------------------------------------------- reserve -----
+	 |  Method reserve 
+	 |
+	 |  Purpose:  Asks the MemoryGovernor for a job's estimated peak 
+	 |      footprint before it sorts. If the governor rejects the job, 
+	 |      the reason is printed and the program terminates, as for other 
+	 |      input it cannot handle.
+	 |
+	 |  Parameters:
+	 |      job (IN) -- the engine, as named in the reservation list
+	 |      bytes (IN) -- the estimated peak footprint
+	 |      fallback (IN) -- the bytes of the external sort the job could 
+	 |          be downgraded to, or 0 if it cannot be
+	 |
+	 |  Returns:  The reservation, admitted, queued or downgraded.
+	 *-------------------------------------------------------------------*/
+	private static MemoryGovernor.Reservation reserve(String job, long bytes, long fallback) {
+
+		MemoryGovernor.Reservation memory = MemoryGovernor.admit(job, bytes, fallback);
+
+		if (memory.outcome.equals(MemoryGovernor.REJECTED)) {
+			System.out.println(memory.describe());
+			System.exit(0);
 		}
+		return memory;
+	}
 
-		scanner.close();
+	/*--------------------------------------------------- optionValue -----
+	 |  Method optionValue 
+	 |
+	 |  Purpose:  Finds the value of a command-line option written as 
+	 |      prefix followed by the value, such as -memory=512.
+	 |
+	 |  Parameters:
+	 |      args (IN) -- the command-line arguments
+	 |      prefix (IN) -- the option up to and including the "="
+	 |
+	 |  Returns:  The text after the prefix, or null if the option was 
+	 |      not given.
+	 *-------------------------------------------------------------------*/
+	static String optionValue(String[] args, String prefix) {
+		for (String arg : args) {
+			if (arg.startsWith(prefix)) {
+				return arg.substring(prefix.length());
+			}
+		}
+		return null;
+	}
 
-		return buildArrayStart;
+	/*--------------------------------------------------- hasOption -----
+	 |  Method hasOption 
+	 |
+	 |  Purpose:  Checks whether a flag was given on the command line.
+	 |
+	 |  Parameters:
+	 |      args (IN) -- the command-line arguments
+	 |      option (IN) -- the flag to look for, e.g. "-offheap"
+	 |
+	 |  Returns:  true if the flag is one of the arguments.
+	 *-------------------------------------------------------------------*/
+	static boolean hasOption(String[] args, String option) {
+		for (String arg : args) {
+			if (arg.equals(option)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 }
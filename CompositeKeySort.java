@@ -0,0 +1,710 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -keys=<k>
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Sorts records of k integer fields instead of single
+ |                  integers, ordered by the first field, then the second,
+ |                  and so on (like sort -k1,1n -k2,2n). Each record is
+ |                  turned into one long key that orders the same way, and
+ |                  the keys go through the same eight column sort steps as
+ |                  OffHeapColumnSort, on a long[] matrix in Column-Major
+ |                  Order.
+ |
+ |        Input:  A file with k whitespace separated integers per line.
+ |                  Blank lines are skipped.
+ |
+ |       Output:  Same console output as ColumnSortSelection: n, r, s, the
+ |                  elapsed time, how the keys were built and the records in
+ |                  sorted order, one per line.
+ |
+ |   Techniques:  The key is built the cheapest way that fits in 63 bits,
+ |                  so the key of a record is never negative:
+ |                    range    - each field minus its minimum, packed from
+ |                               the most significant field down in just
+ |                               enough bits for its range.
+ |                    rank     - each field replaced by its rank among the
+ |                               distinct values of that field, packed the
+ |                               same way. Costs a sort of each field, but
+ |                               wide, sparse fields then take only as many
+ |                               bits as they have distinct values.
+ |                    index    - the key is the record's index, and columns
+ |                               are sorted by comparing the fields of the
+ |                               records the indexes point to.
+ |                  Both packed keys decode back into the record, so the
+ |                  fields are dropped once the keys are built and the sort
+ |                  moves one long per record. The matrix gets the same
+ |                  virtual padding as readFile.calculateRowsCols, as
+ |                  Long.MAX_VALUE cells that sort last.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * --------------------------------------------------------- Class: CompositeKeySort
+ *
+ * Purpose: This class loads multi-field records, encodes each one as an
+ * order-preserving long key and sorts the keys with the column sort steps. The
+ * step methods keep the names of their OffHeapColumnSort counterparts.
+ *
+ * Fields: - int[][] fields: fields[f][i] is field f of record i; null once the
+ * keys are packed. - int numFields / numItems: k and n. - long[] matrix: the r
+ * x s keys in CMO. - String encoding: RANGE, RANK or INDEX. - int[] shifts /
+ * long[] offsets / int[][] ranks: how to decode a packed key.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class CompositeKeySort {
+
+	final static String RANGE = "range"; // Fields minus their minimum, packed
+	final static String RANK = "rank"; // Field ranks, packed
+	final static String INDEX = "index"; // Record indexes, compared field by field
+
+	final static int KEY_BITS = 63; // Bits a packed key may use, so keys stay non-negative
+	final static long PADDING = Long.MAX_VALUE; // Virtual padding cell; sorts after every key
+
+	private int[][] fields; // fields[f][i] is field f of record i, or null once packed
+	private int numFields; // Fields per record (k)
+	private int numItems; // Number of records (n)
+	private int ROWS; // Number of rows in the matrix (r)
+	private int COLS; // Number of columns in the matrix (s)
+	private int shift; // Rows the matrix is shifted down by between steps 6 and 8
+
+	private long[] matrix; // r x s keys in Column-Major Order
+	private long[] scratch; // Destination of the step 2 and step 4 permutations
+
+	private String encoding; // RANGE, RANK or INDEX
+	private int bits; // Bits of the packed key, 0 for INDEX
+	private int[] shifts; // Bit position of each field in a packed key
+	private long[] offsets; // Minimum of each field, for RANGE
+	private int[][] ranks; // Distinct values of each field in order, for RANK
+	private Comparator<Long> recordOrder; // Compares cells holding record indexes, for INDEX
+
+	private SortChecksum checksum = new SortChecksum(); // One hash per record read
+	private String verified; // Result of verify, or null if it was not run
+
+	/*--------------------------------------------------- CompositeKeySort -----
+	 |  Constructor CompositeKeySort
+	 |
+	 |  Purpose:  Wraps loaded records, picks the r x s shape for them and
+	 |      builds the keys.
+	 |
+	 |  Parameters:
+	 |      fields (IN) -- fields[f][i] is field f of record i.
+	 |      numItems (IN) -- the number of records, at least 1.
+	 *-------------------------------------------------------------------*/
+	CompositeKeySort(int[][] fields, int numItems) {
+		this.fields = fields;
+		this.numFields = fields.length;
+		this.numItems = numItems;
+
+		int[] shape = readFile.calculateRowsCols(numItems);
+		this.ROWS = shape[0];
+		this.COLS = shape[1];
+
+		for (int record = 0; record < numItems; record++) {
+			this.checksum.add(recordHash(record));
+		}
+		encode();
+	}
+
+	/*--------------------------------------------------- load -----
+	 |  Method load
+	 |
+	 |  Purpose:  Reads numFields integers from every non-blank line of
+	 |      the input file.
+	 |
+	 |  Post-condition: If a line has the wrong number of fields or a
+	 |      non-integer value, or the file is empty, a message is printed
+	 |      and the program terminates, as in readFile.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the input file.
+	 |      numFields (IN) -- the number of fields per line, at least 1.
+	 |
+	 |  Throws: FileNotFoundException if the file does not exist.
+	 |
+	 |  Returns:  The loaded records, ready to sort.
+	 *-------------------------------------------------------------------*/
+	static CompositeKeySort load(File file, int numFields) throws FileNotFoundException {
+		SortMonitor.LoadEvent event = SortMonitor.beginPhase(new SortMonitor.LoadEvent());
+
+		int[][] fields = new int[numFields][1 << 10];
+		int count = 0;
+		int lineNumber = 0;
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				String trimmed = line.trim();
+				if (trimmed.isEmpty()) {
+					continue;
+				}
+
+				String[] tokens = trimmed.split("\\s+");
+				if (tokens.length != numFields) {
+					fail("Line " + lineNumber + " has " + tokens.length + " fields, expected " + numFields);
+				}
+
+				if (count == fields[0].length) {
+					for (int field = 0; field < numFields; field++) {
+						fields[field] = Arrays.copyOf(fields[field], count * 2);
+					}
+				}
+				for (int field = 0; field < numFields; field++) {
+					try {
+						fields[field][count] = Integer.parseInt(tokens[field]);
+					} catch (NumberFormatException e) {
+						fail("File Contains a non-Integer Value");
+					}
+				}
+				count++;
+			}
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			fail("Could not read " + file + ": " + e.getMessage());
+		}
+
+		if (count == 0) {
+			fail("File Contains no records");
+		}
+
+		CompositeKeySort sort = new CompositeKeySort(fields, count);
+		SortMonitor.load(event, "composite", file, count, sort.ROWS, sort.COLS);
+		return sort;
+	}
+
+	/*--------------------------------------------------- estimatePeakBytes -----
+	 |  Method estimatePeakBytes
+	 |
+	 |  Returns:  The estimated peak footprint of the sort, for the
+	 |      MemoryGovernor.
+	 *-------------------------------------------------------------------*/
+	long estimatePeakBytes() {
+		return MemoryGovernor.compositeBytes(this.numItems, this.ROWS, this.COLS, this.numFields);
+	}
+
+	/*--------------------------------------------------- encode -----
+	 |  Method encode
+	 |
+	 |  Purpose:  Builds the key of every record, with the first
+	 |      encoding (RANGE, RANK, INDEX) whose keys fit, and lays the
+	 |      keys out in the matrix followed by the padding.
+	 |
+	 |  Post-condition: encoding is set; fields is null unless it is
+	 |      INDEX.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void encode() {
+
+		this.matrix = new long[this.ROWS * this.COLS];
+		Arrays.fill(this.matrix, this.numItems, this.matrix.length, PADDING);
+
+		int[] widths = new int[this.numFields];
+		this.offsets = new long[this.numFields];
+
+		for (int field = 0; field < this.numFields; field++) {
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			for (int record = 0; record < this.numItems; record++) {
+				min = Math.min(min, this.fields[field][record]);
+				max = Math.max(max, this.fields[field][record]);
+			}
+			this.offsets[field] = min;
+			widths[field] = bitsFor((long) max - min);
+		}
+
+		if (place(widths)) {
+			this.encoding = RANGE;
+			for (int record = 0; record < this.numItems; record++) {
+				long key = 0;
+				for (int field = 0; field < this.numFields; field++) {
+					key |= (this.fields[field][record] - this.offsets[field]) << this.shifts[field];
+				}
+				this.matrix[record] = key;
+			}
+			this.fields = null;
+			return;
+		}
+
+		this.ranks = new int[this.numFields][];
+		for (int field = 0; field < this.numFields; field++) {
+			this.ranks[field] = distinctValues(this.fields[field], this.numItems);
+			widths[field] = bitsFor(this.ranks[field].length - 1);
+		}
+
+		if (place(widths)) {
+			this.encoding = RANK;
+			for (int record = 0; record < this.numItems; record++) {
+				long key = 0;
+				for (int field = 0; field < this.numFields; field++) {
+					key |= (long) Arrays.binarySearch(this.ranks[field], this.fields[field][record]) << this.shifts[field];
+				}
+				this.matrix[record] = key;
+			}
+			this.fields = null;
+			return;
+		}
+
+		this.ranks = null;
+		this.encoding = INDEX;
+		this.bits = 0;
+		this.recordOrder = (a, b) -> a == PADDING || b == PADDING ? Long.compare(a, b)
+				: compareRecords((int) (long) a, (int) (long) b);
+		for (int record = 0; record < this.numItems; record++) {
+			this.matrix[record] = record;
+		}
+	}
+
+	/*--------------------------------------------------- place -----
+	 |  Method place
+	 |
+	 |  Purpose:  Gives each field its bit position in a packed key, the
+	 |      first field in the most significant bits, if they all fit in
+	 |      KEY_BITS.
+	 |
+	 |  Parameters:
+	 |      widths (IN) -- the bits each field needs.
+	 |
+	 |  Returns:  true, with shifts and bits set, if the fields fit.
+	 *-------------------------------------------------------------------*/
+	private boolean place(int[] widths) {
+
+		int total = 0;
+		for (int width : widths) {
+			total += width;
+		}
+		if (total > KEY_BITS) {
+			return false;
+		}
+
+		this.shifts = new int[this.numFields];
+		int position = total;
+		for (int field = 0; field < this.numFields; field++) {
+			position -= widths[field];
+			this.shifts[field] = position;
+		}
+		this.bits = total;
+		return true;
+	}
+
+	/*--------------------------------------------------- sort -----
+	 |  Method sort
+	 |
+	 |  Purpose:  Runs the column sort steps in the same order as
+	 |      OffHeapColumnSort.sort. A single column matrix is simply
+	 |      sorted as one column.
+	 |
+	 |  Post-condition: The matrix holds the keys in ascending CMO.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void sort() {
+
+		String kernel = this.encoding.equals(INDEX) ? "record compare" : "long sort";
+		long n = this.numItems;
+
+		if (this.COLS == 1) {
+
+			SortMonitor.beginJob("composite", n, this.ROWS, this.COLS, 1);
+			SortMonitor.step(1, kernel, this.COLS, n, this::sortColumns);
+
+		} else {
+
+			SortMonitor.beginJob("composite", n, this.ROWS, this.COLS, 8);
+			SortMonitor.step(1, kernel, this.COLS, n, this::sortColumns);
+			SortMonitor.step(2, "transpose", this.COLS, n, this::step2OfSort);
+			SortMonitor.step(3, kernel, this.COLS, n, this::sortColumns);
+			SortMonitor.step(4, "untranspose", this.COLS, n, this::step4Sort);
+			SortMonitor.step(5, kernel, this.COLS, n, this::sortColumns);
+			SortMonitor.step(6, "shift", this.COLS + 1, n, this::step6Sort);
+			SortMonitor.step(7, kernel, this.COLS + 1, n, this::step7Sort);
+			SortMonitor.step(8, "unshift", this.COLS, n, this::step8Sort);
+
+		}
+		SortMonitor.endJob();
+		this.scratch = null;
+	}
+
+	/*--------------------------------------------------- sortColumns -----
+	 |  Method sortColumns
+	 |
+	 |  Purpose:  Steps 1, 3 and 5. Sorts every column in place, in
+	 |      parallel.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void sortColumns() {
+		SortMonitor.Job job = SortMonitor.job();
+		IntStream.range(0, this.COLS).parallel().forEach(col -> {
+			sortRange(col * this.ROWS, (col + 1) * this.ROWS);
+			SortMonitor.columnDone(job);
+		});
+	}
+
+	/*--------------------------------------------------- step2OfSort -----
+	 |  Method step2OfSort
+	 |
+	 |  Purpose:  The "transpose" step: the k-th key in CMO moves to
+	 |      row k / s, column k % s, which is CMO index (k % s) * r + k / s.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step2OfSort() {
+		long[] to = scratchMatrix();
+		for (int k = 0; k < this.matrix.length; k++) {
+			to[(k % this.COLS) * this.ROWS + k / this.COLS] = this.matrix[k];
+		}
+		swapWithScratch();
+	}
+
+	/*--------------------------------------------------- step4Sort -----
+	 |  Method step4Sort
+	 |
+	 |  Purpose:  The inverse of step 2 ("untranspose").
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step4Sort() {
+		long[] to = scratchMatrix();
+		for (int k = 0; k < this.matrix.length; k++) {
+			to[k] = this.matrix[(k % this.COLS) * this.ROWS + k / this.COLS];
+		}
+		swapWithScratch();
+	}
+
+	/*--------------------------------------------------- step6Sort -----
+	 |  Method step6Sort
+	 |
+	 |  Purpose:  Shifts the matrix down by r / 2 rows. As in
+	 |      OffHeapColumnSort, only the shift is recorded; the shifted
+	 |      columns are windows of the CMO array.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step6Sort() {
+		this.shift = this.ROWS / 2;
+	}
+
+	/*--------------------------------------------------- step7Sort -----
+	 |  Method step7Sort
+	 |
+	 |  Purpose:  Sorts the s - 1 shifted columns that straddle two
+	 |      original columns; the first and last are already sorted.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step7Sort() {
+		IntStream.range(1, this.COLS).parallel()
+				.forEach(col -> sortRange(col * this.ROWS - this.shift, (col + 1) * this.ROWS - this.shift));
+	}
+
+	/*--------------------------------------------------- step8Sort -----
+	 |  Method step8Sort
+	 |
+	 |  Purpose:  Unshifts the matrix, which only clears the shift.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step8Sort() {
+		this.shift = 0;
+	}
+
+	/*--------------------------------------------------- sortRange -----
+	 |  Method sortRange
+	 |
+	 |  Purpose:  Sorts the keys in [from, to). Packed keys are plain
+	 |      longs; record indexes are boxed and sorted with recordOrder.
+	 |
+	 |  Parameters:
+	 |      from (IN) -- the first index of the range.
+	 |      to (IN) -- one past the last index of the range.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void sortRange(int from, int to) {
+
+		if (this.recordOrder == null) {
+			Arrays.sort(this.matrix, from, to);
+			return;
+		}
+
+		Long[] temp = new Long[to - from];
+		for (int index = from; index < to; index++) {
+			temp[index - from] = this.matrix[index];
+		}
+		Arrays.sort(temp, this.recordOrder);
+		for (int index = from; index < to; index++) {
+			this.matrix[index] = temp[index - from];
+		}
+	}
+
+	/*--------------------------------------------------- scratchMatrix -----
+	 |  Method scratchMatrix
+	 |
+	 |  Returns:  The scratch matrix, allocated on first use.
+	 *-------------------------------------------------------------------*/
+	private long[] scratchMatrix() {
+		if (this.scratch == null) {
+			this.scratch = new long[this.matrix.length];
+		}
+		return this.scratch;
+	}
+
+	/*--------------------------------------------------- swapWithScratch -----
+	 |  Method swapWithScratch
+	 |
+	 |  Purpose:  Makes the scratch matrix the current matrix.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void swapWithScratch() {
+		long[] temp = this.matrix;
+		this.matrix = this.scratch;
+		this.scratch = temp;
+	}
+
+	/*--------------------------------------------------- field -----
+	 |  Method field
+	 |
+	 |  Purpose:  Decodes one field of the record in a cell of the
+	 |      matrix.
+	 |
+	 |  Parameters:
+	 |      key (IN) -- the cell, a packed key or a record index.
+	 |      field (IN) -- the field wanted.
+	 |
+	 |  Returns:  The value of the field.
+	 *-------------------------------------------------------------------*/
+	private int field(long key, int field) {
+
+		if (this.encoding.equals(INDEX)) {
+			return this.fields[field][(int) key];
+		}
+
+		long part = key >>> this.shifts[field];
+		int width = (field == 0 ? this.bits : this.shifts[field - 1]) - this.shifts[field];
+		part &= (1L << width) - 1;
+
+		return this.encoding.equals(RANGE) ? (int) (part + this.offsets[field]) : this.ranks[field][(int) part];
+	}
+
+	/*--------------------------------------------------- compareRecords -----
+	 |  Method compareRecords
+	 |
+	 |  Purpose:  Compares two loaded records field by field.
+	 |
+	 |  Parameters:
+	 |      a (IN) -- the index of the first record.
+	 |      b (IN) -- the index of the second record.
+	 |
+	 |  Returns:  A negative number, zero or a positive number as record a
+	 |      orders before, with or after record b.
+	 *-------------------------------------------------------------------*/
+	private int compareRecords(int a, int b) {
+		for (int field = 0; field < this.numFields; field++) {
+			int order = Integer.compare(this.fields[field][a], this.fields[field][b]);
+			if (order != 0) {
+				return order;
+			}
+		}
+		return 0;
+	}
+
+	/*--------------------------------------------------- recordHash -----
+	 |  Method recordHash
+	 |
+	 |  Purpose:  Folds the fields of a loaded record into one int for the
+	 |      checksum, so a record whose fields are swapped or changed does
+	 |      not add up the same.
+	 |
+	 |  Parameters:
+	 |      record (IN) -- the index of the record.
+	 |
+	 |  Returns:  The hash.
+	 *-------------------------------------------------------------------*/
+	private int recordHash(int record) {
+		int hash = 0;
+		for (int field = 0; field < this.numFields; field++) {
+			hash = hash * 31 + this.fields[field][record];
+		}
+		return hash;
+	}
+
+	/*--------------------------------------------------- verify -----
+	 |  Method verify
+	 |
+	 |  Purpose:  Decodes the sorted records, checks that each one orders
+	 |      after the one before it and compares their checksum with the
+	 |      one taken while loading.
+	 |
+	 |  Post-condition: If the check fails the program exits with an
+	 |      error; otherwise the result is printed by printMessage.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void verify() {
+
+		long start = System.nanoTime();
+
+		SortChecksum output = new SortChecksum();
+		int[] previous = new int[this.numFields];
+		int[] current = new int[this.numFields];
+
+		for (int index = 0; index < this.numItems; index++) {
+			int hash = 0;
+			for (int field = 0; field < this.numFields; field++) {
+				current[field] = field(this.matrix[index], field);
+				hash = hash * 31 + current[field];
+			}
+			if (index > 0 && Arrays.compare(previous, current) > 0) {
+				System.out.flush();
+				System.err.println("Sort verification failed: output record " + index
+						+ " is smaller than the one before it");
+				System.exit(1);
+			}
+			output.add(hash);
+
+			int[] temp = previous;
+			previous = current;
+			current = temp;
+		}
+		this.checksum.verify(output);
+
+		this.verified = "Verified = " + output.count + " records in order, checksums match ("
+				+ ColumnSortSelection.formatToThreeDecimals((System.nanoTime() - start) / ColumnSortSelection.BILLION)
+				+ " seconds)";
+	}
+
+	/*--------------------------------------------------- describe -----
+	 |  Method describe
+	 |
+	 |  Returns:  A line such as "Keys = 3 fields, range packed into 41
+	 |      bits".
+	 *-------------------------------------------------------------------*/
+	String describe() {
+		return "Keys = " + this.numFields + (this.numFields == 1 ? " field, " : " fields, ")
+				+ (this.encoding.equals(INDEX) ? "too wide to pack, sorted by record index"
+						: this.encoding + " packed into " + this.bits + " bits");
+	}
+
+	/*--------------------------------------------------- printMessage -----
+	 |  Method printMessage
+	 |
+	 |  Purpose:  Prints n, r, s, the elapsed time, the key encoding and
+	 |      the sorted records, in the format of
+	 |      OffHeapColumnSort.printMessage.
+	 |
+	 |  Parameters:
+	 |      seconds (IN) -- the elapsed time in seconds to be printed
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void printMessage(double seconds) {
+
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+
+		out.println("n = " + this.numItems);
+
+		out.println("r = " + this.ROWS);
+
+		out.println("s = " + this.COLS);
+
+		String sec = ColumnSortSelection.formatToThreeDecimals(seconds);
+
+		out.print("Elapsed time = " + sec);
+		out.println(" seconds.");
+
+		out.println(describe());
+		if (this.verified != null) {
+			out.println(this.verified);
+		}
+
+		SortMonitor.OutputEvent event = SortMonitor.beginPhase(new SortMonitor.OutputEvent());
+		long bytes = 0; // Characters written, for the output event
+
+		StringBuilder line = new StringBuilder();
+		for (int index = 0; index < this.numItems; index++) {
+			line.setLength(0);
+			for (int field = 0; field < this.numFields; field++) {
+				if (field > 0) {
+					line.append(' ');
+				}
+				line.append(field(this.matrix[index], field));
+			}
+			out.println(line);
+			bytes += line.length() + 1;
+		}
+		out.flush();
+		SortMonitor.output(event, bytes);
+	}
+
+	/*--------------------------------------------------- bitsFor -----
+	 |  Method bitsFor
+	 |
+	 |  Parameters:
+	 |      range (IN) -- the largest value to hold, not negative.
+	 |
+	 |  Returns:  The number of bits needed to hold 0 .. range.
+	 *-------------------------------------------------------------------*/
+	private static int bitsFor(long range) {
+		return 64 - Long.numberOfLeadingZeros(range);
+	}
+
+	/*--------------------------------------------------- distinctValues -----
+	 |  Method distinctValues
+	 |
+	 |  Parameters:
+	 |      values (IN) -- the values of one field.
+	 |      count (IN) -- how many of them are used.
+	 |
+	 |  Returns:  The distinct values, in ascending order.
+	 *-------------------------------------------------------------------*/
+	private static int[] distinctValues(int[] values, int count) {
+
+		int[] sorted = Arrays.copyOf(values, count);
+		Arrays.sort(sorted);
+
+		int size = 0;
+		for (int index = 0; index < count; index++) {
+			if (size == 0 || sorted[size - 1] != sorted[index]) {
+				sorted[size++] = sorted[index];
+			}
+		}
+		return Arrays.copyOf(sorted, size);
+	}
+
+	/*--------------------------------------------------- fail -----
+	 |  Method fail
+	 |
+	 |  Purpose:  Prints a message and terminates the program.
+	 |
+	 |  Returns:  None; the program exits.
+	 *-------------------------------------------------------------------*/
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,909 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -compressed
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  A compressed storage backend for the column sort. Inputs
+ |                  with a small range of values or many duplicates (such as
+ |                  TestCase3.txt) waste almost all of the memory of an
+ |                  Integer[][], where each value is a boxed object. Here
+ |                  each column is kept compressed between the steps and is
+ |                  only decoded, one column or one block at a time, while a
+ |                  step works on it.
+ |
+ |        Input:  Same file format as ColumnSortSelection.
+ |
+ |       Output:  Same console output as ColumnSortSelection, plus the raw
+ |                  and compressed footprint of the matrix.
+ |
+ |   Techniques:  A column is a run-length encoded list of (value, length)
+ |                  runs, so a run of equal values costs the same as one
+ |                  value. Runs are grouped into blocks of up to 128. Each
+ |                  block stores the smallest value in the block (frame of
+ |                  reference) and then every value as its distance from
+ |                  that minimum, bit-packed with just enough bits for the
+ |                  largest distance; the run lengths are bit-packed the
+ |                  same way. Clustered values therefore need few bits, and
+ |                  sorted columns of duplicates collapse to a few runs.
+ |
+ |                  Steps 1, 3, 5 and 7 decode one column into an int[],
+ |                  sort it and encode it again. Steps 2, 4, 6 and 8 never
+ |                  decode more than one block per column at once: they read
+ |                  the columns as streams and append to new columns, as in
+ |                  OffHeapColumnSort's Column-Major Order formulation.
+ |                  The shape is padded with Integer.MAX_VALUE the same way,
+ |                  which the last column stores as a single run.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * --------------------------------------------------------- Class: CompressedColumnSort
+ *
+ * Purpose: This class runs the column sort steps over an array of
+ * CompressedColumns. The matrix is kept in Column-Major Order: read one column
+ * after another, the columns give the values in CMO.
+ *
+ * Fields: - CompressedColumn[] columns: the s columns of r values. - int
+ * numItems: the number of values. - int ROWS: r. - int COLS: s. - int shift:
+ * rows the matrix is shifted down by between steps 6 and 8. - long loadedBytes
+ * / peakBytes: compressed footprint after loading and at its largest.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+public class CompressedColumnSort {
+
+	final static int INTEGER_BYTES = 20; // Heap cost of one Integer in an Integer[][]: object + reference
+
+	private CompressedColumn[] columns; // The matrix, one compressed column per entry
+
+	private int numItems; // Total number of items read from the file
+	private int ROWS; // Number of rows in the matrix (also known as r)
+	private int COLS; // Number of columns in the matrix (also known as s)
+	private int shift; // Rows the matrix is shifted down by between steps 6 and 8
+
+	private long loadedBytes; // Compressed footprint right after loading
+	private long peakBytes; // Largest compressed footprint seen
+
+	private SortChecksum loaded; // Checksum of the values loaded
+	private String verified; // Result of verify, or null if it was not run
+
+	/*--------------------------------------------------- CompressedColumnSort -----
+	 |  Constructor CompressedColumnSort
+	 |
+	 |  Purpose:  Picks the shape for the loaded values and compresses
+	 |      them into s columns of r values, in load order, padded with
+	 |      Integer.MAX_VALUE up to r * s values.
+	 |
+	 |  Pre-condition: values holds at least one and at most
+	 |      Integer.MAX_VALUE - 8 values (a column is decoded into an
+	 |      int[] while it is sorted).
+	 |
+	 |  Post-condition: The columns hold the values; the native memory of
+	 |      values is no longer needed.
+	 |
+	 |  Parameters:
+	 |      values (IN) -- the values to sort, in load order.
+	 *-------------------------------------------------------------------*/
+	public CompressedColumnSort(OffHeapMatrix values) {
+
+		long[] shape = OffHeapColumnSort.calculateRowsCols(values.size());
+		this.numItems = (int) values.size();
+		this.ROWS = (int) shape[0];
+		this.COLS = (int) shape[1];
+		this.shift = 0;
+		this.loaded = values.checksum;
+
+		this.columns = new CompressedColumn[this.COLS];
+
+		IntStream.range(0, this.COLS).parallel().forEach(col -> {
+			CompressedColumn.Builder builder = new CompressedColumn.Builder();
+			for (long index = (long) col * this.ROWS; index < (long) (col + 1) * this.ROWS; index++) {
+				builder.add(index < this.numItems ? values.get(index) : Integer.MAX_VALUE);
+			}
+			this.columns[col] = builder.finish();
+		});
+
+		this.loadedBytes = footprint();
+		this.peakBytes = this.loadedBytes;
+	}
+
+	/*--------------------------------------------------- estimatePeakBytes -----
+	 |  Method estimatePeakBytes
+	 |
+	 |  Returns:  The estimated peak footprint of the sort, for the
+	 |      MemoryGovernor.
+	 *-------------------------------------------------------------------*/
+	long estimatePeakBytes() {
+		return MemoryGovernor.compressedBytes(this.loadedBytes, this.ROWS);
+	}
+
+	/*--------------------------------------------------- load -----
+	 |  Method load
+	 |
+	 |  Purpose:  Loads the input file. The values are parsed into native
+	 |      memory with OffHeapColumnSort.load, so the only uncompressed
+	 |      copy never touches the Java heap and is freed once the columns
+	 |      are built.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the input file.
+	 |
+	 |  Throws: FileNotFoundException if the input file is not found.
+	 |
+	 |  Returns:  The loaded sorter.
+	 *-------------------------------------------------------------------*/
+	public static CompressedColumnSort load(File file) throws FileNotFoundException {
+
+		OffHeapMatrix values = OffHeapColumnSort.load(file);
+
+		if (values.size() == 0 || values.size() > Integer.MAX_VALUE - 8) {
+			System.out.println("File must contain between 1 and " + (Integer.MAX_VALUE - 8) + " integers");
+			System.exit(0);
+		}
+		return new CompressedColumnSort(values);
+	}
+
+	/*--------------------------------------------------- sort -----
+	 |  Method sort
+	 |
+	 |  Purpose:  Runs the column sort steps in the same order as
+	 |      ColumnSortSelection.main.
+	 |
+	 |  Pre-condition: The columns have been loaded.
+	 |
+	 |  Post-condition: The columns hold the values in ascending CMO.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public void sort() {
+
+		int cols = this.COLS;
+		long n = this.numItems;
+
+		if (this.COLS == 1) {
+
+			SortMonitor.beginJob("compressed", n, this.ROWS, this.COLS, 1);
+			SortMonitor.step(1, "library", cols, n, this::sortColumns);
+
+		} else {
+
+			SortMonitor.beginJob("compressed", n, this.ROWS, this.COLS, 8);
+			SortMonitor.step(1, "library", cols, n, this::sortColumns);
+			SortMonitor.step(2, "transpose", cols, n, this::step2OfSort);
+			SortMonitor.step(3, "library", cols, n, this::sortColumns);
+			SortMonitor.step(4, "untranspose", cols, n, this::step4Sort);
+			SortMonitor.step(5, "library", cols, n, this::sortColumns);
+			SortMonitor.step(6, "shift", cols + 1, n, this::step6Sort);
+			SortMonitor.step(7, "library", cols + 1, n, this::step7Sort);
+			SortMonitor.step(8, "unshift", cols, n, this::step8Sort);
+
+		}
+		SortMonitor.endJob();
+	}
+
+	/*--------------------------------------------------- sortColumns -----
+	 |  Method sortColumns
+	 |
+	 |  Purpose:  Steps 1, 3, 5 and 7. Decodes each column into an int[],
+	 |      sorts it and encodes it again. Columns are sorted in parallel,
+	 |      so at most one decoded column per thread exists at a time.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void sortColumns() {
+
+		SortMonitor.Job job = SortMonitor.job();
+		IntStream.range(0, this.columns.length).parallel().forEach(col -> {
+			int[] values = this.columns[col].decode();
+			Arrays.sort(values);
+			this.columns[col] = CompressedColumn.encode(values);
+			SortMonitor.columnDone(job);
+		});
+		recordFootprint();
+	}
+
+	/*--------------------------------------------------- step2OfSort -----
+	 |  Method step2OfSort
+	 |
+	 |  Purpose:  The "transpose" step. The k-th value in CMO moves to row
+	 |      k / s, column k % s. Reading the columns in order, the values
+	 |      are dealt out to s new columns in turn, and since each new
+	 |      column receives its values in row order they can be appended
+	 |      straight to a Builder.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step2OfSort() {
+
+		CompressedColumn.Builder[] builders = newBuilders(this.COLS);
+
+		int to = 0;
+		for (CompressedColumn column : this.columns) {
+
+			CompressedColumn.Reader reader = column.reader();
+			for (int row = 0; row < this.ROWS; row++) {
+				builders[to].add(reader.next());
+				to = (to + 1 == this.COLS) ? 0 : to + 1;
+			}
+		}
+		this.columns = finish(builders);
+		recordFootprint();
+	}
+
+	/*--------------------------------------------------- step4Sort -----
+	 |  Method step4Sort
+	 |
+	 |  Purpose:  The inverse of step 2. The new k-th value in CMO is taken
+	 |      from column k % s, so the s columns are read side by side, one
+	 |      value from each in turn, and appended to the new columns in
+	 |      order.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step4Sort() {
+
+		CompressedColumn.Reader[] readers = new CompressedColumn.Reader[this.COLS];
+		for (int col = 0; col < this.COLS; col++) {
+			readers[col] = this.columns[col].reader();
+		}
+
+		CompressedColumn[] result = new CompressedColumn[this.COLS];
+
+		int from = 0;
+		for (int col = 0; col < this.COLS; col++) {
+
+			CompressedColumn.Builder builder = new CompressedColumn.Builder();
+			for (int row = 0; row < this.ROWS; row++) {
+				builder.add(readers[from].next());
+				from = (from + 1 == this.COLS) ? 0 : from + 1;
+			}
+			result[col] = builder.finish();
+		}
+		this.columns = result;
+		recordFootprint();
+	}
+
+	/*--------------------------------------------------- step6Sort -----
+	 |  Method step6Sort
+	 |
+	 |  Purpose:  Shifts the matrix down by r / 2 rows into s + 1 columns.
+	 |      The Integer.MIN_VALUE and Integer.MAX_VALUE markers of the heap
+	 |      pipeline are left out: the first shifted column holds just the
+	 |      top r - r / 2 values of column 0 and the last just the bottom
+	 |      r / 2 values of column s - 1. Every other shifted column is the
+	 |      bottom of one column followed by the top of the next, copied run
+	 |      by run.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step6Sort() {
+
+		this.shift = this.ROWS / 2;
+
+		CompressedColumn[] shifted = new CompressedColumn[this.COLS + 1];
+
+		IntStream.range(0, this.COLS + 1).parallel().forEach(col -> {
+			long from = Math.max(0, (long) col * this.ROWS - this.shift);
+			long to = Math.min((long) this.ROWS * this.COLS, (long) (col + 1) * this.ROWS - this.shift);
+			shifted[col] = copyRange(this.columns, from, (int) (to - from));
+		});
+		this.columns = shifted;
+		recordFootprint();
+	}
+
+	/*--------------------------------------------------- step7Sort -----
+	 |  Method step7Sort
+	 |
+	 |  Purpose:  Sorts the columns of the shifted matrix. The first and
+	 |      last shifted columns are already sorted, but they are only half
+	 |      columns and sorting them again does no harm.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step7Sort() {
+		sortColumns();
+	}
+
+	/*--------------------------------------------------- step8Sort -----
+	 |  Method step8Sort
+	 |
+	 |  Purpose:  Unshifts the matrix back into s columns of r values.
+	 |      Read one after another, the shifted columns already list the
+	 |      values in CMO, so each new column is simply the next r values.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step8Sort() {
+
+		CompressedColumn[] shifted = this.columns;
+		CompressedColumn[] result = new CompressedColumn[this.COLS];
+
+		IntStream.range(0, this.COLS).parallel()
+				.forEach(col -> result[col] = copyRange(shifted, (long) col * this.ROWS, this.ROWS));
+
+		this.columns = result;
+		this.shift = 0;
+		recordFootprint();
+	}
+
+	/*--------------------------------------------------- copyRange -----
+	 |  Method copyRange
+	 |
+	 |  Purpose:  Builds a new column from count values of the given
+	 |      columns, starting at a position in CMO, where the columns
+	 |      may have different lengths.
+	 |
+	 |  Parameters:
+	 |      parts (IN) -- the columns, read one after another.
+	 |      from (IN) -- the position, in CMO, of the first value.
+	 |      count (IN) -- the number of values to copy.
+	 |
+	 |  Returns:  The new column.
+	 *-------------------------------------------------------------------*/
+	private static CompressedColumn copyRange(CompressedColumn[] parts, long from, int count) {
+
+		CompressedColumn.Builder builder = new CompressedColumn.Builder();
+
+		int part = 0;
+		while (from >= parts[part].size()) {
+			from -= parts[part].size();
+			part++;
+		}
+		CompressedColumn.Reader reader = parts[part].reader();
+		reader.skip((int) from);
+
+		for (int copied = 0; copied < count; copied++) {
+			while (!reader.hasNext()) {
+				reader = parts[++part].reader();
+			}
+			builder.add(reader.next());
+		}
+		return builder.finish();
+	}
+
+	/*--------------------------------------------------- newBuilders -----
+	 |  Method newBuilders
+	 |
+	 |  Returns:  The given number of empty Builders.
+	 *-------------------------------------------------------------------*/
+	private static CompressedColumn.Builder[] newBuilders(int count) {
+		CompressedColumn.Builder[] builders = new CompressedColumn.Builder[count];
+		for (int index = 0; index < count; index++) {
+			builders[index] = new CompressedColumn.Builder();
+		}
+		return builders;
+	}
+
+	/*--------------------------------------------------- finish -----
+	 |  Method finish
+	 |
+	 |  Returns:  The columns built by the given Builders.
+	 *-------------------------------------------------------------------*/
+	private static CompressedColumn[] finish(CompressedColumn.Builder[] builders) {
+		CompressedColumn[] built = new CompressedColumn[builders.length];
+		for (int index = 0; index < builders.length; index++) {
+			built[index] = builders[index].finish();
+		}
+		return built;
+	}
+
+	/*--------------------------------------------------- footprint -----
+	 |  Method footprint
+	 |
+	 |  Returns:  The bytes currently taken by the compressed columns.
+	 *-------------------------------------------------------------------*/
+	long footprint() {
+		long bytes = 0;
+		for (CompressedColumn column : this.columns) {
+			bytes += column.bytes();
+		}
+		return bytes;
+	}
+
+	/*--------------------------------------------------- recordFootprint -----
+	 |  Method recordFootprint
+	 |
+	 |  Purpose:  Updates the peak footprint after a step.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void recordFootprint() {
+		this.peakBytes = Math.max(this.peakBytes, footprint());
+	}
+
+	/*--------------------------------------------------- verify -----
+	 |  Method verify
+	 |
+	 |  Purpose:  Checks the sorted matrix against the checksum taken
+	 |      while loading (see ColumnSortSelection.verify) with one pass
+	 |      over the columns, decoded one block at a time.
+	 |
+	 |  Post-condition: If the check fails the program exits with an
+	 |      error; otherwise the result is printed by printMessage.
+	 |
+	 |  Pre-condition: The values were loaded from a file (see load).
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public void verify() {
+
+		long start = System.nanoTime();
+
+		SortChecksum output = new SortChecksum();
+		long left = this.numItems; // Values still to check; the padding after them is not
+		for (CompressedColumn column : this.columns) {
+			CompressedColumn.Reader reader = column.reader();
+			for (; left > 0 && reader.hasNext(); left--) {
+				output.addInOrder(reader.next());
+			}
+		}
+		this.loaded.verify(output);
+
+		this.verified = "Verified = " + output.count + " values in order, checksums match ("
+				+ ColumnSortSelection.formatToThreeDecimals((System.nanoTime() - start) / ColumnSortSelection.BILLION)
+				+ " seconds)";
+	}
+
+	/*--------------------------------------------------- printMessage -----
+	 |  Method printMessage
+	 |
+	 |  Purpose:  Prints n, r, s and the elapsed time as
+	 |      ColumnSortSelection.printMessage does, then the footprint of the
+	 |      matrix stored raw and compressed, then the sorted values, decoded
+	 |      one block at a time.
+	 |
+	 |  Parameters:
+	 |      seconds (IN) -- the elapsed time in seconds to be printed
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public void printMessage(double seconds) {
+
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+
+		out.println("n = " + this.numItems);
+
+		out.println("r = " + this.ROWS);
+
+		out.println("s = " + this.COLS);
+
+		String sec = ColumnSortSelection.formatToThreeDecimals(seconds);
+
+		out.print("Elapsed time = " + sec);
+		out.println(" seconds.");
+
+		if (this.verified != null) {
+			out.println(this.verified);
+		}
+
+		long sortedBytes = footprint();
+		long boxedBytes = (long) this.numItems * INTEGER_BYTES;
+		long intBytes = (long) this.numItems * Integer.BYTES;
+
+		out.println("Raw footprint = " + boxedBytes + " bytes as Integer[][], " + intBytes + " bytes as int[]");
+		out.println("Compressed footprint = " + this.loadedBytes + " bytes loaded, " + sortedBytes
+				+ " bytes sorted, " + this.peakBytes + " bytes peak ("
+				+ ColumnSortSelection.formatToThreeDecimals((double) this.peakBytes / intBytes) + " of int[])");
+
+		SortMonitor.OutputEvent event = SortMonitor.beginPhase(new SortMonitor.OutputEvent());
+		long bytes = 0; // Characters written, for the output event
+
+		long left = this.numItems; // Values still to print; the padding after them is not
+		for (CompressedColumn column : this.columns) {
+			CompressedColumn.Reader reader = column.reader();
+			for (; left > 0 && reader.hasNext(); left--) {
+				String line = Integer.toString(reader.next());
+				out.println(line);
+				bytes += line.length() + 1;
+			}
+		}
+		out.flush();
+		SortMonitor.output(event, bytes);
+	}
+
+}
+
+/**
+ * --------------------------------------------------------- Class: CompressedColumn
+ *
+ * Purpose: An immutable, compressed list of ints. The values are stored as
+ * runs of equal values, in blocks of up to BLOCK_RUNS runs. Each block is one
+ * header word followed by the bit-packed values and the bit-packed run
+ * lengths:
+ *
+ * header: bits 0-31 the block's smallest value (frame of reference), bits
+ * 32-37 the bits per value, bits 38-43 the bits per run length, bits 44-51 the
+ * number of runs.
+ *
+ * A value is stored as its distance from the smallest value and a run length
+ * as length - 1, so a block of single values of one repeated number takes one
+ * word. Columns are written with a Builder and read with a Reader, both of
+ * which only ever hold one block decoded.
+ *
+ * Fields: - long[] words: the encoded blocks. - int size: the number of values.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class CompressedColumn {
+
+	final static int BLOCK_RUNS = 128; // Most runs in one block
+	final static int OBJECT_BYTES = 32; // Heap overhead of a column object and its long[]
+
+	private final long[] words; // Encoded blocks
+	private final int size; // Number of values
+
+	/*--------------------------------------------------- CompressedColumn -----
+	 |  Constructor CompressedColumn
+	 |
+	 |  Parameters:
+	 |      words (IN) -- the encoded blocks.
+	 |      size (IN) -- the number of values they hold.
+	 *-------------------------------------------------------------------*/
+	private CompressedColumn(long[] words, int size) {
+		this.words = words;
+		this.size = size;
+	}
+
+	/*--------------------------------------------------- size -----
+	 |  Method size
+	 |
+	 |  Returns:  The number of values in the column.
+	 *-------------------------------------------------------------------*/
+	int size() {
+		return this.size;
+	}
+
+	/*--------------------------------------------------- bytes -----
+	 |  Method bytes
+	 |
+	 |  Returns:  The approximate heap footprint of the column.
+	 *-------------------------------------------------------------------*/
+	long bytes() {
+		return OBJECT_BYTES + (long) this.words.length * Long.BYTES;
+	}
+
+	/*--------------------------------------------------- reader -----
+	 |  Method reader
+	 |
+	 |  Returns:  A Reader positioned at the first value.
+	 *-------------------------------------------------------------------*/
+	Reader reader() {
+		return new Reader(this);
+	}
+
+	/*--------------------------------------------------- decode -----
+	 |  Method decode
+	 |
+	 |  Returns:  All values of the column in a new int[].
+	 *-------------------------------------------------------------------*/
+	int[] decode() {
+		int[] values = new int[this.size];
+		Reader reader = reader();
+		for (int index = 0; index < this.size; index++) {
+			values[index] = reader.next();
+		}
+		return values;
+	}
+
+	/*--------------------------------------------------- encode -----
+	 |  Method encode
+	 |
+	 |  Parameters:
+	 |      values (IN) -- the values to compress.
+	 |
+	 |  Returns:  A column holding the given values.
+	 *-------------------------------------------------------------------*/
+	static CompressedColumn encode(int[] values) {
+		Builder builder = new Builder();
+		for (int value : values) {
+			builder.add(value);
+		}
+		return builder.finish();
+	}
+
+	/*--------------------------------------------------- pack -----
+	 |  Method pack
+	 |
+	 |  Purpose:  Writes the low bits of value at the given bit position,
+	 |      which may straddle two words.
+	 |
+	 |  Pre-condition: The bits being written are still zero.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private static void pack(long[] words, long bitAt, int bits, long value) {
+		if (bits == 0) {
+			return;
+		}
+		int word = (int) (bitAt >>> 6);
+		int offset = (int) (bitAt & 63);
+
+		words[word] |= value << offset;
+		if (offset + bits > 64) {
+			words[word + 1] |= value >>> (64 - offset);
+		}
+	}
+
+	/*--------------------------------------------------- unpack -----
+	 |  Method unpack
+	 |
+	 |  Returns:  The value of the given number of bits stored at the
+	 |      given bit position.
+	 *-------------------------------------------------------------------*/
+	private static long unpack(long[] words, long bitAt, int bits) {
+		if (bits == 0) {
+			return 0;
+		}
+		int word = (int) (bitAt >>> 6);
+		int offset = (int) (bitAt & 63);
+
+		long value = words[word] >>> offset;
+		if (offset + bits > 64) {
+			value |= words[word + 1] << (64 - offset);
+		}
+		return value & ((1L << bits) - 1);
+	}
+
+	/*--------------------------------------------------- wordsFor -----
+	 |  Method wordsFor
+	 |
+	 |  Returns:  The number of words holding count fields of bits each.
+	 *-------------------------------------------------------------------*/
+	private static int wordsFor(int count, int bits) {
+		return (int) (((long) count * bits + 63) >>> 6);
+	}
+
+	/**
+	 * --------------------------------------------------------- Class: Builder
+	 *
+	 * Purpose: Appends values to a new CompressedColumn. Equal neighbours are
+	 * merged into runs, and every BLOCK_RUNS runs are packed into a block.
+	 *
+	 * ---------------------------------------------------------
+	 */
+	static class Builder {
+
+		private long[] words = new long[16]; // Encoded blocks so far
+		private int wordCount; // Words of words in use
+		private int size; // Values added
+
+		private int[] runValues = new int[BLOCK_RUNS]; // Runs of the block being built
+		private int[] runLengths = new int[BLOCK_RUNS];
+		private int runs; // Runs in the block being built
+
+		private int value; // Value of the open run
+		private int length; // Length of the open run, 0 if there is none
+
+		/*--------------------------------------------------- add -----
+		 |  Method add
+		 |
+		 |  Parameters:
+		 |      next (IN) -- the value to append.
+		 |
+		 |  Returns:  None.
+		 *-------------------------------------------------------------------*/
+		void add(int next) {
+			if (this.length > 0 && next == this.value && this.length < Integer.MAX_VALUE) {
+				this.length++;
+			} else {
+				if (this.length > 0) {
+					endRun();
+				}
+				this.value = next;
+				this.length = 1;
+			}
+			this.size++;
+		}
+
+		/*--------------------------------------------------- finish -----
+		 |  Method finish
+		 |
+		 |  Returns:  The column holding every value added.
+		 *-------------------------------------------------------------------*/
+		CompressedColumn finish() {
+			if (this.length > 0) {
+				endRun();
+				this.length = 0;
+			}
+			if (this.runs > 0) {
+				writeBlock();
+			}
+			return new CompressedColumn(Arrays.copyOf(this.words, this.wordCount), this.size);
+		}
+
+		/*--------------------------------------------------- endRun -----
+		 |  Method endRun
+		 |
+		 |  Purpose:  Adds the open run to the block, packing the block
+		 |      when it is full.
+		 |
+		 |  Returns:  None.
+		 *-------------------------------------------------------------------*/
+		private void endRun() {
+			this.runValues[this.runs] = this.value;
+			this.runLengths[this.runs] = this.length;
+			this.runs++;
+			if (this.runs == BLOCK_RUNS) {
+				writeBlock();
+			}
+		}
+
+		/*--------------------------------------------------- writeBlock -----
+		 |  Method writeBlock
+		 |
+		 |  Purpose:  Packs the buffered runs into one block, using the
+		 |      smallest value as the frame of reference.
+		 |
+		 |  Returns:  None.
+		 *-------------------------------------------------------------------*/
+		private void writeBlock() {
+
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			int longest = 1;
+			for (int run = 0; run < this.runs; run++) {
+				min = Math.min(min, this.runValues[run]);
+				max = Math.max(max, this.runValues[run]);
+				longest = Math.max(longest, this.runLengths[run]);
+			}
+			int valueBits = 64 - Long.numberOfLeadingZeros((long) max - min);
+			int lengthBits = 32 - Integer.numberOfLeadingZeros(longest - 1);
+
+			int valueWords = wordsFor(this.runs, valueBits);
+			int blockWords = 1 + valueWords + wordsFor(this.runs, lengthBits);
+			if (this.wordCount + blockWords > this.words.length) {
+				this.words = Arrays.copyOf(this.words, Math.max(this.words.length * 2, this.wordCount + blockWords));
+			}
+
+			this.words[this.wordCount] = (min & 0xFFFFFFFFL) | ((long) valueBits << 32) | ((long) lengthBits << 38)
+					| ((long) this.runs << 44);
+
+			long valueAt = (long) (this.wordCount + 1) << 6;
+			long lengthAt = (long) (this.wordCount + 1 + valueWords) << 6;
+			for (int run = 0; run < this.runs; run++) {
+				pack(this.words, valueAt + (long) run * valueBits, valueBits, (long) this.runValues[run] - min);
+				pack(this.words, lengthAt + (long) run * lengthBits, lengthBits, this.runLengths[run] - 1);
+			}
+
+			this.wordCount += blockWords;
+			this.runs = 0;
+		}
+	}
+
+	/**
+	 * --------------------------------------------------------- Class: Reader
+	 *
+	 * Purpose: Reads the values of a CompressedColumn in order, decoding one
+	 * block at a time.
+	 *
+	 * ---------------------------------------------------------
+	 */
+	static class Reader {
+
+		private final CompressedColumn column; // Column being read
+		private int word; // Header word of the next block
+		private int left; // Values not yet read
+
+		private int[] runValues = new int[BLOCK_RUNS]; // Runs of the decoded block
+		private int[] runLengths = new int[BLOCK_RUNS];
+		private int runs; // Runs in the decoded block
+		private int runAt = -1; // Run being read
+		private int remaining; // Values left in that run
+
+		/*--------------------------------------------------- Reader -----
+		 |  Constructor Reader
+		 |
+		 |  Parameters:
+		 |      column (IN) -- the column to read.
+		 *-------------------------------------------------------------------*/
+		Reader(CompressedColumn column) {
+			this.column = column;
+			this.left = column.size;
+		}
+
+		/*--------------------------------------------------- hasNext -----
+		 |  Method hasNext
+		 |
+		 |  Returns:  true if there are values left.
+		 *-------------------------------------------------------------------*/
+		boolean hasNext() {
+			return this.left > 0;
+		}
+
+		/*--------------------------------------------------- next -----
+		 |  Method next
+		 |
+		 |  Pre-condition: hasNext() is true.
+		 |
+		 |  Returns:  The next value.
+		 *-------------------------------------------------------------------*/
+		int next() {
+			nextRun();
+			this.remaining--;
+			this.left--;
+			return this.runValues[this.runAt];
+		}
+
+		/*--------------------------------------------------- skip -----
+		 |  Method skip
+		 |
+		 |  Purpose:  Skips values a whole run at a time.
+		 |
+		 |  Parameters:
+		 |      count (IN) -- values to skip, at most the values left.
+		 |
+		 |  Returns:  None.
+		 *-------------------------------------------------------------------*/
+		void skip(int count) {
+			while (count > 0) {
+				nextRun();
+				int skipped = Math.min(count, this.remaining);
+				this.remaining -= skipped;
+				this.left -= skipped;
+				count -= skipped;
+			}
+		}
+
+		/*--------------------------------------------------- nextRun -----
+		 |  Method nextRun
+		 |
+		 |  Purpose:  Moves to the next run, and the next block, if the
+		 |      current run has been used up.
+		 |
+		 |  Returns:  None.
+		 *-------------------------------------------------------------------*/
+		private void nextRun() {
+			while (this.remaining == 0) {
+				if (this.runAt + 1 >= this.runs) {
+					readBlock();
+				}
+				this.runAt++;
+				this.remaining = this.runLengths[this.runAt];
+			}
+		}
+
+		/*--------------------------------------------------- readBlock -----
+		 |  Method readBlock
+		 |
+		 |  Purpose:  Decodes the next block into runValues and runLengths.
+		 |
+		 |  Returns:  None.
+		 *-------------------------------------------------------------------*/
+		private void readBlock() {
+			long[] words = this.column.words;
+			long header = words[this.word];
+
+			int min = (int) header;
+			int valueBits = (int) (header >>> 32) & 63;
+			int lengthBits = (int) (header >>> 38) & 63;
+			this.runs = (int) (header >>> 44) & 0xFF;
+
+			int valueWords = wordsFor(this.runs, valueBits);
+			long valueAt = (long) (this.word + 1) << 6;
+			long lengthAt = (long) (this.word + 1 + valueWords) << 6;
+			for (int run = 0; run < this.runs; run++) {
+				this.runValues[run] = (int) (min + unpack(words, valueAt + (long) run * valueBits, valueBits));
+				this.runLengths[run] = 1 + (int) unpack(words, lengthAt + (long) run * lengthBits, lengthBits);
+			}
+
+			this.word += 1 + valueWords + wordsFor(this.runs, lengthBits);
+			this.runAt = -1;
+		}
+	}
+
+}
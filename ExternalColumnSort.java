@@ -0,0 +1,594 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -external
+ |                                  [-memory=<MB>] [-tmpdir=<dir>]
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  An external sort for files far bigger than the heap. The
+ |                  input is read in chunks sized to a memory budget; each
+ |                  chunk is sorted in memory by the usual eight column sort
+ |                  steps of ColumnSortSelection and written to a temporary
+ |                  file as a sorted run. The runs are then merged into the
+ |                  final output.
+ |
+ |        Input:  Same file format as ColumnSortSelection.
+ |
+ |       Output:  Same console output as ColumnSortSelection, where r and s
+ |                  are the shape of a full chunk, plus the number of runs,
+ |                  the bytes spilled to disk and the merge fan-in.
+ |
+ |   Techniques:  Runs are stored as raw 32-bit integers. They are merged
+ |                  k at a time with a loser tree, which finds the next
+ |                  smallest value with one comparison per tree level, and
+ |                  each run is read through a buffer that gets an equal
+ |                  share of the memory budget, so the disk sees large
+ |                  sequential reads. If there are more runs than the fan-in
+ |                  (MAX_FAN_IN, or fewer when the budget cannot give each
+ |                  run MIN_BUFFER), groups of them are first merged into
+ |                  longer runs. The file and run buffers are sized from the
+ |                  budget too, so chunk, buffers and merge all stay within
+ |                  it; a budget below MIN_CHUNK values plus the smallest
+ |                  buffers cannot, and the summary says so.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * --------------------------------------------------------- Class: ExternalColumnSort
+ *
+ * Purpose: This class splits an input file into memory-sized chunks, sorts
+ * each one with ColumnSortSelection, spills it to disk and merges the sorted
+ * runs.
+ *
+ * Fields: - long memoryBudget: bytes the sort may use. - File directory: where
+ * runs are written. - List<Run> runs: the sorted runs not yet merged. - long
+ * numItems: values read. - int ROWS / COLS: shape of a full chunk. - long
+ * spillBytes: bytes written to runs, including intermediate merges. - int
+ * mergePasses: intermediate merges done before the final one. - String
+ * kernel: the column kernel chunks are sorted with.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+public class ExternalColumnSort {
+
+	final static long DEFAULT_MEMORY_MB = 256; // Memory budget when -memory is not given
+	final static int BYTES_PER_VALUE = 64; // Heap used per value by the eight step sort of one chunk
+	final static int MAX_FAN_IN = 256; // Most runs merged at once
+	final static int MIN_BUFFER = 1 << 16; // Smallest read buffer of a run
+	final static int MAX_BUFFER = 1 << 26; // Largest read buffer of a run
+	final static int MIN_CHUNK = 1024; // Fewest values sorted per chunk
+
+	private long memoryBudget; // Bytes the sort may use
+	private int fanIn; // Most runs merged at once within the budget
+	private int ioBuffer; // Buffer of the input file and of each run written
+	private String warning; // Why the budget is exceeded, or null
+	private File directory; // Where sorted runs are written
+
+	private List<Run> runs = new ArrayList<Run>(); // Sorted runs waiting to be merged
+
+	private long numItems; // Total number of items read from the file
+	private int ROWS; // Rows of a full chunk
+	private int COLS; // Columns of a full chunk
+	private long spillBytes; // Bytes written to runs
+	private int mergePasses; // Intermediate merges before the final one
+
+	private String kernel; // Column kernel of the chunk sorts (see ColumnSortSelection.sortValues)
+	private boolean verify; // Check the merged output against the input
+	private SortChecksum loaded; // Checksum of the values read
+
+	/*--------------------------------------------------- ExternalColumnSort -----
+	 |  Constructor ExternalColumnSort
+	 |
+	 |  Parameters:
+	 |      memoryBudget (IN) -- bytes the sort may use.
+	 |      directory (IN) -- the directory to write sorted runs to.
+	 |      kernel (IN) -- one of ColumnSortSelection.KERNELS.
+	 |      verify (IN) -- true to check the merged output against the
+	 |          input as it is printed.
+	 *-------------------------------------------------------------------*/
+	public ExternalColumnSort(long memoryBudget, File directory, String kernel, boolean verify) {
+		this.memoryBudget = memoryBudget;
+		this.directory = directory;
+		this.kernel = kernel;
+		this.verify = verify;
+
+		this.ioBuffer = (int) Math.max(MIN_BUFFER, Math.min(MIN_BUFFER * 16, memoryBudget / 16));
+		this.fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN, memoryBudget / MIN_BUFFER - 1));
+
+		long minimum = minimumBytes();
+		if (memoryBudget < minimum) {
+			this.warning = "Memory warning = budget of " + memoryBudget + " bytes is below the " + minimum
+					+ " bytes of the smallest chunk and buffers; using those";
+		}
+	}
+
+	/*--------------------------------------------------- minimumBytes -----
+	 |  Method minimumBytes
+	 |
+	 |  Purpose:  The least memory the sort can run in: a chunk of
+	 |      MIN_CHUNK values with the file and run buffers while runs are
+	 |      made, or a merge of two runs with MIN_BUFFER each plus the
+	 |      output buffer, whichever is larger.
+	 |
+	 |  Returns:  The bytes.
+	 *-------------------------------------------------------------------*/
+	static long minimumBytes() {
+		return Math.max((long) MIN_CHUNK * BYTES_PER_VALUE + 2L * MIN_BUFFER, 3L * MIN_BUFFER);
+	}
+
+	/*--------------------------------------------------- createRuns -----
+	 |  Method createRuns
+	 |
+	 |  Purpose:  Reads the file a chunk at a time, sorts each chunk with
+	 |      ColumnSortSelection and spills it as a sorted run. A chunk is
+	 |      as many values as fit the memory budget. Since the column sort
+	 |      needs a valid r x s shape, a chunk is sorted as a run of
+	 |      readFile.fittingShape values, and whatever does not fit that
+	 |      shape (fewer than s * s values) as one or more smaller runs.
+	 |      The file and run buffers come out of the budget first. When 
+	 |      there are more runs than the fan-in, groups of them are merged 
+	 |      first so the final merge has at most fanIn inputs.
+	 |
+	 |  Pre-condition: The directory exists and is writable.
+	 |
+	 |  Post-condition: runs holds at most fanIn sorted runs.
+	 |
+	 |  Parameters:
+	 |      input (IN) -- the file to sort.
+	 |
+	 |  Throws: FileNotFoundException if the file does not exist.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public void createRuns(File input) throws FileNotFoundException {
+
+		long chunkBytes = this.memoryBudget - 2L * this.ioBuffer; // Less the file and run buffers
+		int capacity = (int) Math.max(MIN_CHUNK, Math.min(Integer.MAX_VALUE - 8, chunkBytes / BYTES_PER_VALUE));
+		int[] chunk = new int[capacity];
+
+		IntReader reader = new IntReader(input, this.ioBuffer);
+		this.loaded = reader.checksum;
+
+		while (reader.hasNext()) {
+
+			int filled = 0;
+			while (filled < capacity && reader.hasNext()) {
+				chunk[filled++] = reader.next();
+			}
+			this.numItems += filled;
+
+			int from = 0;
+			while (from < filled) {
+				int[] shape = readFile.fittingShape(filled - from);
+				sortRun(chunk, from, shape[0], shape[1]);
+				from += shape[0] * shape[1];
+			}
+		}
+
+		// Merge groups of runs until one merge can take them all
+		while (this.runs.size() > this.fanIn) {
+			List<Run> group = new ArrayList<Run>(this.runs.subList(0, this.fanIn));
+			this.runs.subList(0, this.fanIn).clear();
+			this.runs.add(mergeToRun(group));
+			this.mergePasses++;
+		}
+	}
+
+	/*--------------------------------------------------- sortRun -----
+	 |  Method sortRun
+	 |
+	 |  Purpose:  Sorts r * s values of the chunk with the eight column
+	 |      sort steps and writes them to a new run.
+	 |
+	 |  Parameters:
+	 |      chunk (IN) -- the values read.
+	 |      from (IN) -- index of the first value to sort.
+	 |      r (IN) -- rows of the shape.
+	 |      s (IN) -- columns of the shape.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void sortRun(int[] chunk, int from, int r, int s) {
+
+		if (this.runs.isEmpty()) {
+			this.ROWS = r;
+			this.COLS = s;
+		}
+
+		Integer[][] matrix = new Integer[r][s];
+		int index = from;
+		for (int row = 0; row < r; row++) {
+			for (int col = 0; col < s; col++) {
+				matrix[row][col] = chunk[index++];
+			}
+		}
+
+		ColumnSortSelection sorter = new ColumnSortSelection(matrix, r * s, r, s);
+		sorter.configure(this.kernel, 1, null);
+		sorter.sort(false);
+		Integer[][] sorted = sorter.getArray2D();
+
+		Run run = newRun();
+		try (DataOutputStream out = openRun(run)) {
+			for (int col = 0; col < s; col++) {
+				for (int row = 0; row < r; row++) {
+					out.writeInt(sorted[row][col]);
+				}
+			}
+		} catch (IOException e) {
+			fail("Could not write a sorted run: " + e.getMessage());
+		}
+		run.count = (long) r * s;
+		this.spillBytes += run.count * Integer.BYTES;
+		this.runs.add(run);
+	}
+
+	/*--------------------------------------------------- mergeToRun -----
+	 |  Method mergeToRun
+	 |
+	 |  Purpose:  Merges a group of runs into one new, longer run and
+	 |      deletes the old ones.
+	 |
+	 |  Parameters:
+	 |      group (IN) -- the runs to merge.
+	 |
+	 |  Returns:  The merged run.
+	 *-------------------------------------------------------------------*/
+	private Run mergeToRun(List<Run> group) {
+
+		Run merged = newRun();
+		try (DataOutputStream out = openRun(merged)) {
+			merge(group, value -> out.writeInt(value));
+		} catch (IOException e) {
+			fail("Could not write a sorted run: " + e.getMessage());
+		}
+		for (Run run : group) {
+			merged.count += run.count;
+		}
+		this.spillBytes += merged.count * Integer.BYTES;
+		return merged;
+	}
+
+	/*--------------------------------------------------- merge -----
+	 |  Method merge
+	 |
+	 |  Purpose:  Merges sorted runs with a loser tree and passes every
+	 |      value, in ascending order, to the output. Each run is read
+	 |      through a buffer of an equal share of the memory budget. The
+	 |      runs are deleted afterwards.
+	 |
+	 |  Parameters:
+	 |      group (IN) -- the runs to merge.
+	 |      output (IN) -- what to do with each value.
+	 |
+	 |  Throws: IOException if writing the output fails.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void merge(List<Run> group, ValueSink output) throws IOException {
+
+		int buffer = (int) Math.max(MIN_BUFFER, Math.min(MAX_BUFFER, this.memoryBudget / (group.size() + 1)));
+
+		RunReader[] readers = new RunReader[group.size()];
+		for (int index = 0; index < readers.length; index++) {
+			readers[index] = new RunReader(group.get(index), buffer);
+		}
+
+		LoserTree tree = new LoserTree(readers);
+		while (tree.hasNext()) {
+			output.accept(tree.next());
+		}
+
+		for (RunReader reader : readers) {
+			reader.close();
+		}
+		for (Run run : group) {
+			run.file.delete();
+		}
+	}
+
+	/**
+	 * Receives the merged values.
+	 */
+	interface ValueSink {
+		void accept(int value) throws IOException;
+	}
+
+	/*--------------------------------------------------- newRun -----
+	 |  Method newRun
+	 |
+	 |  Purpose:  Creates an empty temporary file for a run, deleted when
+	 |      the program exits if it is still around.
+	 |
+	 |  Returns:  The new run.
+	 *-------------------------------------------------------------------*/
+	private Run newRun() {
+		Run run = new Run();
+		try {
+			run.file = File.createTempFile("run", ".bin", this.directory);
+			run.file.deleteOnExit();
+		} catch (IOException e) {
+			fail("Could not create a sorted run in " + this.directory + ": " + e.getMessage());
+		}
+		return run;
+	}
+
+	/*--------------------------------------------------- openRun -----
+	 |  Method openRun
+	 |
+	 |  Parameters:
+	 |      run (IN) -- the run to write.
+	 |
+	 |  Throws: FileNotFoundException if the file cannot be opened.
+	 |
+	 |  Returns:  A buffered stream writing to the run's file.
+	 *-------------------------------------------------------------------*/
+	private DataOutputStream openRun(Run run) throws FileNotFoundException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run.file), this.ioBuffer));
+	}
+
+	/*--------------------------------------------------- printMessage -----
+	 |  Method printMessage
+	 |
+	 |  Purpose:  Prints n, r, s and the elapsed time in the format of
+	 |      ColumnSortSelection.printMessage, then the runs, the bytes
+	 |      spilled and the merge fan-in, and then the sorted values, which
+	 |      come straight out of the final merge. Since the values are
+	 |      never all in memory, verification is fused into that merge:
+	 |      each value printed is added to the output checksum, which is
+	 |      compared with the input after the last one. A failure is
+	 |      reported on the error stream and exits with status 1.
+	 |
+	 |  Parameters:
+	 |      seconds (IN) -- the elapsed time in seconds to be printed
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public void printMessage(double seconds) {
+
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+
+		out.println("n = " + this.numItems);
+
+		out.println("r = " + this.ROWS);
+
+		out.println("s = " + this.COLS);
+
+		String sec = ColumnSortSelection.formatToThreeDecimals(seconds);
+
+		out.print("Elapsed time = " + sec);
+		out.println(" seconds.");
+
+		out.println("Spilled = " + this.spillBytes + " bytes to " + this.directory);
+		out.println("Merge fan-in = " + this.runs.size() + " (after " + this.mergePasses + " earlier merges)");
+		if (this.warning != null) {
+			out.println(this.warning);
+		}
+
+		SortChecksum output = new SortChecksum();
+
+		try {
+			if (this.verify) {
+				merge(this.runs, value -> {
+					output.addInOrder(value);
+					out.println(value);
+				});
+			} else {
+				merge(this.runs, value -> out.println(value));
+			}
+		} catch (IOException e) {
+			fail("Could not read a sorted run: " + e.getMessage());
+		}
+		this.runs.clear();
+		out.flush();
+
+		if (this.verify) {
+			this.loaded.verify(output);
+		}
+	}
+
+	/*--------------------------------------------------- fail -----
+	 |  Method fail
+	 |
+	 |  Purpose:  Prints a message and terminates the program.
+	 |
+	 |  Returns:  None; the program exits.
+	 *-------------------------------------------------------------------*/
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(0);
+	}
+
+	/**
+	 * --------------------------------------------------------- Class: Run
+	 *
+	 * Purpose: A sorted run on disk: a file of count raw 32-bit integers.
+	 *
+	 * ---------------------------------------------------------
+	 */
+	static class Run {
+		File file; // The run's temporary file
+		long count; // Number of values in the run
+	}
+
+	/**
+	 * --------------------------------------------------------- Class: RunReader
+	 *
+	 * Purpose: Reads a run one value at a time through a large buffer. The
+	 * current value is held as a long key, with Long.MAX_VALUE once the run
+	 * is used up, so an exhausted run loses every comparison even against
+	 * Integer.MAX_VALUE.
+	 *
+	 * ---------------------------------------------------------
+	 */
+	static class RunReader {
+
+		final static long EXHAUSTED = Long.MAX_VALUE; // Key of a used up run
+
+		private DataInputStream in; // The run's file
+		private long left; // Values not yet read
+		long key; // The current value, or EXHAUSTED
+
+		/*--------------------------------------------------- RunReader -----
+		 |  Constructor RunReader
+		 |
+		 |  Parameters:
+		 |      run (IN) -- the run to read.
+		 |      buffer (IN) -- bytes to read at a time.
+		 |
+		 |  Throws: IOException if the run cannot be read.
+		 *-------------------------------------------------------------------*/
+		RunReader(Run run, int buffer) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file), buffer));
+			this.left = run.count;
+			advance();
+		}
+
+		/*--------------------------------------------------- advance -----
+		 |  Method advance
+		 |
+		 |  Purpose:  Moves key to the next value of the run.
+		 |
+		 |  Throws: IOException if the run cannot be read.
+		 |
+		 |  Returns:  None.
+		 *-------------------------------------------------------------------*/
+		void advance() throws IOException {
+			if (this.left == 0) {
+				this.key = EXHAUSTED;
+			} else {
+				this.key = this.in.readInt();
+				this.left--;
+			}
+		}
+
+		/*--------------------------------------------------- close -----
+		 |  Method close
+		 |
+		 |  Throws: IOException if the file cannot be closed.
+		 |
+		 |  Returns:  None.
+		 *-------------------------------------------------------------------*/
+		void close() throws IOException {
+			this.in.close();
+		}
+	}
+
+	/**
+	 * --------------------------------------------------------- Class: LoserTree
+	 *
+	 * Purpose: A tournament tree over k run readers. Leaf i (run i) sits at
+	 * position k + i; every internal node 1 .. k - 1 keeps the loser of the
+	 * match played there and node 0 keeps the overall winner, the run with
+	 * the smallest current value. After the winner advances, only the matches
+	 * on its path to the root are replayed, which takes log2(k) comparisons.
+	 * Ties go to the lower run index.
+	 *
+	 * ---------------------------------------------------------
+	 */
+	static class LoserTree {
+
+		private RunReader[] readers; // The runs being merged
+		private int[] tree; // Loser of each match; tree[0] is the winner
+
+		/*--------------------------------------------------- LoserTree -----
+		 |  Constructor LoserTree
+		 |
+		 |  Purpose:  Plays the whole tournament once, bottom up.
+		 |
+		 |  Parameters:
+		 |      readers (IN) -- the runs to merge, each at its first value.
+		 *-------------------------------------------------------------------*/
+		LoserTree(RunReader[] readers) {
+			int k = readers.length;
+			this.readers = readers;
+			this.tree = new int[Math.max(1, k)];
+
+			int[] winners = new int[2 * k];
+			for (int run = 0; run < k; run++) {
+				winners[k + run] = run;
+			}
+			for (int node = k - 1; node >= 1; node--) {
+				int left = winners[2 * node];
+				int right = winners[2 * node + 1];
+				if (beats(left, right)) {
+					winners[node] = left;
+					this.tree[node] = right;
+				} else {
+					winners[node] = right;
+					this.tree[node] = left;
+				}
+			}
+			this.tree[0] = k > 1 ? winners[1] : 0;
+		}
+
+		/*--------------------------------------------------- hasNext -----
+		 |  Method hasNext
+		 |
+		 |  Returns:  true if any run has values left.
+		 *-------------------------------------------------------------------*/
+		boolean hasNext() {
+			return this.readers.length > 0 && this.readers[this.tree[0]].key != RunReader.EXHAUSTED;
+		}
+
+		/*--------------------------------------------------- next -----
+		 |  Method next
+		 |
+		 |  Purpose:  Takes the smallest current value, advances its run and
+		 |      replays that run's path to the root.
+		 |
+		 |  Pre-condition: hasNext() is true.
+		 |
+		 |  Throws: IOException if a run cannot be read.
+		 |
+		 |  Returns:  The smallest value left in any run.
+		 *-------------------------------------------------------------------*/
+		int next() throws IOException {
+			int winner = this.tree[0];
+			int value = (int) this.readers[winner].key;
+			this.readers[winner].advance();
+
+			for (int node = (this.readers.length + winner) / 2; node >= 1; node /= 2) {
+				if (beats(this.tree[node], winner)) {
+					int loser = winner;
+					winner = this.tree[node];
+					this.tree[node] = loser;
+				}
+			}
+			this.tree[0] = winner;
+			return value;
+		}
+
+		/*--------------------------------------------------- beats -----
+		 |  Method beats
+		 |
+		 |  Returns:  true if run first's current value comes before run
+		 |      second's.
+		 *-------------------------------------------------------------------*/
+		private boolean beats(int first, int second) {
+			long firstKey = this.readers[first].key;
+			long secondKey = this.readers[second].key;
+			return firstKey < secondKey || (firstKey == secondKey && first < second);
+		}
+	}
+
+}
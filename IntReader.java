@@ -0,0 +1,173 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  A fast reader for the program's input format: integers
+ |                  separated by whitespace, normally one per line. Values
+ |                  are parsed straight from the file's bytes, one at a time,
+ |                  so loaders that do not want an ArrayList<Integer> of the
+ |                  whole file (the off-heap and external sorts) can stream
+ |                  them.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * --------------------------------------------------------- Class: IntReader
+ *
+ * Purpose: Reads the integers of a text file one at a time. As in
+ * readFile.readAndBuild, a token that is not an integer prints "File Contains
+ * a non-Integer Value" and terminates the program.
+ *
+ * Fields: - InputStream in: the buffered file. - int pending: the next value.
+ * - boolean hasPending: whether pending holds a value. - SortChecksum
+ * checksum: checksum of the values returned so far, to verify the sort.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class IntReader {
+
+	final static int BUFFER_SIZE = 1 << 16; // Bytes read from the file at a time
+
+	private InputStream in; // The buffered file, or null once it is used up
+	private int pending; // The next value, read ahead by hasNext
+	private boolean hasPending; // true if pending holds a value
+
+	SortChecksum checksum = new SortChecksum(); // Checksum of the values returned by next
+
+	/*--------------------------------------------------- IntReader -----
+	 |  Constructor IntReader
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the file to read.
+	 |      bufferSize (IN) -- bytes read from the file at a time.
+	 |
+	 |  Throws: FileNotFoundException if the file does not exist.
+	 *-------------------------------------------------------------------*/
+	IntReader(File file, int bufferSize) throws FileNotFoundException {
+		this.in = new BufferedInputStream(new FileInputStream(file), bufferSize);
+	}
+
+	/*--------------------------------------------------- IntReader -----
+	 |  Constructor IntReader
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the file to read, with a BUFFER_SIZE buffer.
+	 |
+	 |  Throws: FileNotFoundException if the file does not exist.
+	 *-------------------------------------------------------------------*/
+	IntReader(File file) throws FileNotFoundException {
+		this(file, BUFFER_SIZE);
+	}
+
+	/*--------------------------------------------------- hasNext -----
+	 |  Method hasNext
+	 |
+	 |  Purpose:  Checks for another value, parsing it ahead of next().
+	 |      The file is closed when it runs out.
+	 |
+	 |  Returns:  true if there is another value.
+	 *-------------------------------------------------------------------*/
+	boolean hasNext() {
+		if (!this.hasPending && this.in != null) {
+			this.hasPending = parse();
+		}
+		return this.hasPending;
+	}
+
+	/*--------------------------------------------------- next -----
+	 |  Method next
+	 |
+	 |  Pre-condition: hasNext() is true.
+	 |
+	 |  Returns:  The next value.
+	 *-------------------------------------------------------------------*/
+	int next() {
+		hasNext();
+		this.hasPending = false;
+		this.checksum.add(this.pending);
+		return this.pending;
+	}
+
+	/*--------------------------------------------------- parse -----
+	 |  Method parse
+	 |
+	 |  Purpose:  Skips whitespace and parses the next token into pending.
+	 |      A token may start with a sign and must fit in an int.
+	 |
+	 |  Returns:  true if a value was parsed, false at the end of the file.
+	 *-------------------------------------------------------------------*/
+	private boolean parse() {
+
+		try {
+			int ch = this.in.read();
+			while (ch != -1 && Character.isWhitespace(ch)) {
+				ch = this.in.read();
+			}
+			if (ch == -1) {
+				this.in.close();
+				this.in = null;
+				return false;
+			}
+
+			boolean negative = ch == '-';
+			if (ch == '-' || ch == '+') {
+				ch = this.in.read();
+			}
+
+			long value = 0; // Magnitude of the token
+			boolean digits = false;
+			long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+			while (ch != -1 && !Character.isWhitespace(ch)) {
+				if (ch < '0' || ch > '9') {
+					nonInteger();
+				}
+				value = value * 10 + (ch - '0');
+				digits = true;
+				if (value > limit) {
+					nonInteger();
+				}
+				ch = this.in.read();
+			}
+			if (!digits) {
+				nonInteger();
+			}
+
+			this.pending = (int) (negative ? -value : value);
+			return true;
+
+		} catch (IOException e) {
+			System.out.println("Could not read the file: " + e.getMessage());
+			System.exit(0);
+		}
+		return false;
+	}
+
+	/*--------------------------------------------------- nonInteger -----
+	 |  Method nonInteger
+	 |
+	 |  Purpose:  Reports a non-integer value and terminates the program,
+	 |      with the same message readFile.readAndBuild prints.
+	 |
+	 |  Returns:  None; the program exits.
+	 *-------------------------------------------------------------------*/
+	private static void nonInteger() {
+		System.out.println("File Contains a non-Integer Value");
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,404 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac LoadTest.java
+ |                             Run: java LoadTest [-sizes=1000,4000,...]
+ |                                       [-distributions=uniform,zipf,...]
+ |                                       [-engines=column,counting,...]
+ |                                       [-kernels=selection,library,...]
+ |                                       [-trials=3] [-warmup=1] [-seed=1]
+ |                                       [-out=loadtest.csv]
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  A load-test harness. For every size, distribution and
+ |                  engine it writes a seeded workload (see
+ |                  WorkloadGenerator) to a temporary file, loads it the way
+ |                  the program does, sorts it and checks the result, a few
+ |                  times over. The column engine runs once per column
+ |                  kernel. Every timed trial becomes one CSV row, and a
+ |                  latency summary is printed per configuration, followed
+ |                  by each kernel's speedup over the first one.
+ |
+ |        Input:  Options only; the workloads are generated.
+ |
+ |       Output:  A CSV file with the columns
+ |                  engine,kernel,distribution,n,r,s,seed,trial,load_ms,
+ |                  sort_ms,values_per_second,verified
+ |                  where kernel is empty for engines other than column,
+ |                  and values_per_second is n / sort time, and on the
+ |                  console one line per configuration with the min, median
+ |                  and max sort latency.
+ |
+ |   Techniques:  The engines are called in-process rather than through
+ |                  main, so the sort time excludes the JVM start and the
+ |                  output. Untimed warm-up trials run first so that the
+ |                  timed ones measure JIT-compiled code. The counting sort
+ |                  is skipped for workloads it would not be chosen for.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * --------------------------------------------------------- Class: LoadTest
+ *
+ * Purpose: Runs the size sweep and writes the CSV.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+public class LoadTest {
+
+	final static String DEFAULT_SIZES = "1000,4000,16000,64000"; // n values of the sweep
+	final static String DEFAULT_ENGINES = "column,counting,sample,offheap"; // Engines that are run
+	final static String DEFAULT_KERNELS = String.join(",", ColumnSortSelection.KERNELS); // Kernels of the column engine
+	final static int DEFAULT_TRIALS = 3; // Timed trials per configuration
+	final static int DEFAULT_WARMUP = 1; // Untimed trials per configuration
+	final static String DEFAULT_OUT = "loadtest.csv"; // Where the CSV is written
+
+	final static String CSV_HEADER = "engine,kernel,distribution,n,r,s,seed,trial,load_ms,sort_ms,values_per_second,verified";
+
+	/**
+	 * The outcome of one trial.
+	 */
+	static class Trial {
+		int rows; // r of the engine's shape, or 0 if it has none
+		int cols; // s of the engine's shape, or 0 if it has none
+		long loadNanos; // Time to read the file
+		long sortNanos; // Time to sort
+		boolean verified; // true if the output matched the input
+		boolean skipped; // true if the engine does not apply to the workload
+	}
+
+	/*--------------------------------------------------- main -----
+	 |  Method main
+	 |
+	 |  Purpose:  Parses the options, runs every configuration and writes
+	 |      the CSV.
+	 |
+	 |  Parameters:
+	 |      args (IN) -- the options listed in the header.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public static void main(String[] args) {
+
+		int[] sizes = null;
+		int trials = DEFAULT_TRIALS;
+		int warmup = DEFAULT_WARMUP;
+		long seed = WorkloadGenerator.DEFAULT_SEED;
+
+		try {
+			sizes = Arrays.stream(option(args, "-sizes=", DEFAULT_SIZES).split(",")).mapToInt(Integer::parseInt)
+					.toArray();
+			trials = Integer.parseInt(option(args, "-trials=", "" + DEFAULT_TRIALS));
+			warmup = Integer.parseInt(option(args, "-warmup=", "" + DEFAULT_WARMUP));
+			seed = Long.parseLong(option(args, "-seed=", "" + WorkloadGenerator.DEFAULT_SEED));
+		} catch (NumberFormatException e) {
+			fail("Sizes, trials, warm-up and seed must be integers");
+		}
+
+		String[] distributions = option(args, "-distributions=", String.join(",", WorkloadGenerator.DISTRIBUTIONS))
+				.split(",");
+		String[] engines = option(args, "-engines=", DEFAULT_ENGINES).split(",");
+		String[] kernels = option(args, "-kernels=", DEFAULT_KERNELS).split(",");
+		File out = new File(option(args, "-out=", DEFAULT_OUT));
+
+		for (String engine : engines) {
+			if (!Arrays.asList(DEFAULT_ENGINES.split(",")).contains(engine)) {
+				fail("Unknown engine " + engine + "; expected one of " + DEFAULT_ENGINES);
+			}
+		}
+		for (String kernel : kernels) {
+			if (!Arrays.asList(ColumnSortSelection.KERNELS).contains(kernel)) {
+				fail("Unknown kernel " + kernel + "; expected one of " + DEFAULT_KERNELS);
+			}
+		}
+
+		File workload = null;
+		try (PrintStream csv = new PrintStream(out)) {
+
+			workload = File.createTempFile("workload", ".txt");
+			csv.println(CSV_HEADER);
+
+			for (int n : sizes) {
+				for (String distribution : distributions) {
+
+					WorkloadGenerator.write(WorkloadGenerator.generate(distribution, n, seed), workload, false,
+							false);
+
+					for (String engine : engines) {
+						if (engine.equals("column")) {
+							compareKernels(csv, kernels, distribution, n, seed, workload, trials, warmup);
+						} else {
+							sweep(csv, engine, "", distribution, n, seed, workload, trials, warmup);
+						}
+					}
+				}
+			}
+
+		} catch (IOException e) {
+			fail("Could not write " + e.getMessage());
+		} finally {
+			if (workload != null) {
+				workload.delete();
+			}
+		}
+
+		System.out.println("Wrote " + out);
+	}
+
+	/*--------------------------------------------------- compareKernels -----
+	 |  Method compareKernels
+	 |
+	 |  Purpose:  Runs the column engine with each kernel and prints the
+	 |      speedup of each over the first, by median sort latency.
+	 |
+	 |  Parameters:
+	 |      csv (IN) -- the CSV being written.
+	 |      kernels (IN) -- the kernels, the first being the baseline.
+	 |      distribution (IN) -- the workload's distribution.
+	 |      n (IN) -- the workload's size.
+	 |      seed (IN) -- the workload's seed.
+	 |      workload (IN) -- the file holding the workload.
+	 |      trials (IN) -- the number of timed trials.
+	 |      warmup (IN) -- the number of untimed trials.
+	 |
+	 |  Throws: FileNotFoundException if the workload file is missing.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private static void compareKernels(PrintStream csv, String[] kernels, String distribution, int n, long seed,
+			File workload, int trials, int warmup) throws FileNotFoundException {
+
+		long[] medians = new long[kernels.length];
+		for (int index = 0; index < kernels.length; index++) {
+			medians[index] = sweep(csv, "column", kernels[index], distribution, n, seed, workload, trials, warmup);
+		}
+
+		if (kernels.length < 2 || medians[0] <= 0) {
+			return;
+		}
+		StringBuilder line = new StringBuilder(String.format("%-19s %-9s n = %-9d speedup over %s:", "column",
+				distribution, n, kernels[0]));
+		for (int index = 1; index < kernels.length; index++) {
+			line.append(String.format(Locale.ROOT, "  %s %.2fx", kernels[index],
+					(double) medians[0] / Math.max(1, medians[index])));
+		}
+		System.out.println(line);
+	}
+
+	/*--------------------------------------------------- sweep -----
+	 |  Method sweep
+	 |
+	 |  Purpose:  Runs the warm-up and timed trials of one configuration,
+	 |      writes a CSV row per timed trial and prints the latency
+	 |      summary.
+	 |
+	 |  Parameters:
+	 |      csv (IN) -- the CSV being written.
+	 |      engine (IN) -- the engine to run.
+	 |      kernel (IN) -- the column engine's kernel, or "".
+	 |      distribution (IN) -- the workload's distribution.
+	 |      n (IN) -- the workload's size.
+	 |      seed (IN) -- the workload's seed.
+	 |      workload (IN) -- the file holding the workload.
+	 |      trials (IN) -- the number of timed trials.
+	 |      warmup (IN) -- the number of untimed trials.
+	 |
+	 |  Throws: FileNotFoundException if the workload file is missing.
+	 |
+	 |  Returns:  The median sort latency in nanoseconds, or -1 if the
+	 |      engine does not apply to the workload.
+	 *-------------------------------------------------------------------*/
+	private static long sweep(PrintStream csv, String engine, String kernel, String distribution, int n, long seed,
+			File workload, int trials, int warmup) throws FileNotFoundException {
+
+		for (int trial = 0; trial < warmup; trial++) {
+			if (run(engine, kernel, workload).skipped) {
+				return -1;
+			}
+		}
+
+		List<Long> latencies = new ArrayList<Long>();
+		boolean allVerified = true;
+
+		for (int trial = 1; trial <= trials; trial++) {
+
+			Trial result = run(engine, kernel, workload);
+			if (result.skipped) {
+				return -1;
+			}
+
+			csv.println(engine + "," + kernel + "," + distribution + "," + n + "," + result.rows + "," + result.cols + "," + seed
+					+ "," + trial + "," + millis(result.loadNanos) + "," + millis(result.sortNanos) + ","
+					+ Math.round(n / Math.max(1e-9, result.sortNanos / ColumnSortSelection.BILLION)) + ","
+					+ result.verified);
+
+			latencies.add(result.sortNanos);
+			allVerified &= result.verified;
+		}
+
+		if (latencies.isEmpty()) {
+			return -1;
+		}
+		latencies.sort(null);
+		long median = median(latencies);
+		System.out.println(String.format("%-19s %-9s n = %-9d sort ms min %s  median %s  max %s%s",
+				kernel.isEmpty() ? engine : engine + " " + kernel, distribution, n, millis(latencies.get(0)),
+				millis(median), millis(latencies.get(latencies.size() - 1)), allVerified ? "" : "  NOT VERIFIED"));
+		return median;
+	}
+
+	/*--------------------------------------------------- median -----
+	 |  Method median
+	 |
+	 |  Purpose:  The middle latency, or the mean of the two middle ones
+	 |      when there is an even number of them.
+	 |
+	 |  Parameters:
+	 |      sorted (IN) -- the latencies in ascending order, at least one.
+	 |
+	 |  Returns:  The median in nanoseconds.
+	 *-------------------------------------------------------------------*/
+	private static long median(List<Long> sorted) {
+		int middle = sorted.size() / 2;
+		if (sorted.size() % 2 == 1) {
+			return sorted.get(middle);
+		}
+		return (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+	}
+
+	/*--------------------------------------------------- run -----
+	 |  Method run
+	 |
+	 |  Purpose:  Loads and sorts the workload once with the given engine
+	 |      and checks the result against the loader's checksum.
+	 |
+	 |  Parameters:
+	 |      engine (IN) -- column, counting, sample or offheap.
+	 |      kernel (IN) -- the column engine's kernel.
+	 |      workload (IN) -- the file holding the workload.
+	 |
+	 |  Throws: FileNotFoundException if the workload file is missing.
+	 |
+	 |  Returns:  The timings and outcome.
+	 *-------------------------------------------------------------------*/
+	private static Trial run(String engine, String kernel, File workload) throws FileNotFoundException {
+
+		Trial trial = new Trial();
+		long start = System.nanoTime();
+
+		if (engine.equals("offheap")) {
+
+			OffHeapMatrix loaded = OffHeapColumnSort.load(workload);
+			OffHeapColumnSort offHeap = new OffHeapColumnSort(loaded);
+			trial.loadNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			offHeap.sort();
+			trial.sortNanos = System.nanoTime() - start;
+
+			trial.rows = (int) offHeap.getRows();
+			trial.cols = (int) offHeap.getCols();
+
+			SortChecksum output = new SortChecksum();
+			for (long index = 0; index < offHeap.getNumItems(); index++) {
+				output.addInOrder(offHeap.getMatrix().get(index));
+			}
+			trial.verified = loaded.checksum.compare(output) == null;
+			return trial;
+		}
+
+		readFile file = new readFile(workload);
+		trial.loadNanos = System.nanoTime() - start;
+
+		if (engine.equals("counting") && !ColumnSortSelection.countingSortReason(file).startsWith("range")) {
+			trial.skipped = true;
+			return trial;
+		}
+
+		ColumnSortSelection sorter = new ColumnSortSelection(file.sortCol, file.numItems, file.ROWS, file.COLS);
+
+		start = System.nanoTime();
+		if (engine.equals("counting")) {
+			sorter.countingSort(file.min, file.max);
+		} else if (engine.equals("sample")) {
+			sorter.sampleSort();
+		} else {
+			sorter.configure(kernel, 1, null);
+			sorter.sort(false);
+		}
+		trial.sortNanos = System.nanoTime() - start;
+
+		// The counting and sample sorts do not use the r x s shape
+		if (engine.equals("column")) {
+			trial.rows = file.ROWS;
+			trial.cols = file.COLS;
+		}
+
+		SortChecksum output = new SortChecksum();
+		Integer[][] sorted = sorter.getArray2D();
+		for (int col = 0; col < file.COLS; col++) {
+			for (int row = 0; row < file.ROWS; row++) {
+				if (sorted[row][col] != null) { // Skip the virtual padding
+					output.addInOrder(sorted[row][col]);
+				}
+			}
+		}
+		trial.verified = file.checksum.compare(output) == null;
+		return trial;
+	}
+
+	/*--------------------------------------------------- millis -----
+	 |  Method millis
+	 |
+	 |  Parameters:
+	 |      nanos (IN) -- a time in nanoseconds.
+	 |
+	 |  Returns:  The time in milliseconds, to three decimals, with a 
+	 |      decimal point whatever the locale so the CSV stays valid.
+	 *-------------------------------------------------------------------*/
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	/*--------------------------------------------------- option -----
+	 |  Method option
+	 |
+	 |  Parameters:
+	 |      args (IN) -- the command-line arguments.
+	 |      prefix (IN) -- the option, such as "-sizes=".
+	 |      fallback (IN) -- the value when the option is not given.
+	 |
+	 |  Returns:  The option's value, or the fallback.
+	 *-------------------------------------------------------------------*/
+	private static String option(String[] args, String prefix, String fallback) {
+		String value = ColumnSortSelection.optionValue(args, prefix);
+		return value == null ? fallback : value;
+	}
+
+	/*--------------------------------------------------- fail -----
+	 |  Method fail
+	 |
+	 |  Purpose:  Prints a message and terminates the program.
+	 |
+	 |  Returns:  None; the program exits.
+	 *-------------------------------------------------------------------*/
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(0);
+	}
+
+}
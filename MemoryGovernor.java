@@ -0,0 +1,467 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -budget=<MB>
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Keeps the sort jobs of one JVM within a shared memory
+ |                  budget. Before a job sorts, it estimates its peak
+ |                  footprint from n, r, s and its storage backend and asks
+ |                  for a reservation of that many bytes. The governor then
+ |                  admits the job, queues it until earlier jobs release
+ |                  enough, downgrades it to a smaller fallback (the
+ |                  external sort, for the heap engines) or rejects it.
+ |
+ |        Input:  Reservation requests from the engines.
+ |
+ |       Output:  The heap engines print a "Memory = ..." line with their
+ |                  reservation among the sort details, a downgraded or
+ |                  rejected job says so, and the current reservations are
+ |                  part of the -metrics endpoint (see SortMonitor).
+ |
+ |   Techniques:  Jobs are admitted before they load anything, so n comes
+ |                  from a header or from the file itself: the values in
+ |                  its first SAMPLE_BYTES, scaled up by its length. The
+ |                  estimates count what each backend holds at its peak,
+ |                  not what it holds on average: for the heap column sort
+ |                  that is the boxed values plus the reference arrays of
+ |                  the loaded, copied and shifted matrices plus the list
+ |                  the loader builds. Requests that could never fit go
+ |                  straight to the fallback; the others wait on the
+ |                  governor's monitor, which every release wakes, for at
+ |                  most QUEUE_WAIT_MS. The budget defaults to the maximum
+ |                  heap and covers native memory too, so the off-heap
+ |                  engines are held to it as well.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * --------------------------------------------------------- Class: MemoryGovernor
+ *
+ * Purpose: Hands out memory reservations from one budget shared by every sort
+ * job of the process, and estimates how much each backend needs.
+ *
+ * Fields: - long budget: the bytes all reservations together may hold. - long
+ * reserved: the bytes held now. - List<Reservation> active: the reservations
+ * held now. - the number of jobs admitted, queued, downgraded and rejected.
+ * All static and guarded by the class, since one run is one process.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class MemoryGovernor {
+
+	final static String ADMITTED = "admitted"; // Fit the budget at once
+	final static String QUEUED = "queued"; // Fit once earlier jobs released memory
+	final static String DOWNGRADED = "downgraded"; // Given the smaller fallback instead
+	final static String REJECTED = "rejected"; // Neither the request nor the fallback fit
+
+	final static long QUEUE_WAIT_MS = 30_000; // Longest a job waits for memory before downgrading or failing
+	final static long MIN_FALLBACK = 1L << 20; // Smallest fallback reservation worth granting
+	final static int SAMPLE_BYTES = 1 << 16; // Bytes read from a text file to estimate its n before loading
+	final static int BOX_BYTES = 16; // Heap size of one Integer object
+	final static int HEAP_MATRICES = 3; // Loaded, copied and shifted (r x (s + 1)) reference matrices alive at once
+	final static int REFERENCE_BYTES = Runtime.getRuntime().maxMemory() < (32L << 30) ? 4 : 8; // Compressed references below 32 GB heaps
+
+	private static long budget = Runtime.getRuntime().maxMemory(); // Bytes all reservations may hold
+	private static long reserved; // Bytes held now
+	private static final List<Reservation> active = new ArrayList<Reservation>(); // Reservations held now
+	private static int nextId = 1; // Id of the next reservation
+	private static long admitted, queued, downgraded, rejected; // Jobs by outcome
+
+	/**
+	 * One job's share of the budget. Closing it returns the bytes and wakes the
+	 * jobs waiting for memory.
+	 */
+	static class Reservation implements AutoCloseable {
+
+		final int id; // Number of the reservation within the run
+		final String job; // Engine that asked
+		final long requested; // Bytes asked for
+		final long bytes; // Bytes held: requested, the fallback, or 0 if rejected
+		final String outcome; // ADMITTED, QUEUED, DOWNGRADED or REJECTED
+		private boolean released; // true once close has returned the bytes
+
+		Reservation(int id, String job, long requested, long bytes, String outcome) {
+			this.id = id;
+			this.job = job;
+			this.requested = requested;
+			this.bytes = bytes;
+			this.outcome = outcome;
+		}
+
+		/*--------------------------------------------------- describe -----
+		 |  Method describe
+		 |
+		 |  Returns:  A summary line such as "Memory = 41.2 MB reserved of
+		 |      3934.0 MB budget (admitted)".
+		 *-------------------------------------------------------------------*/
+		String describe() {
+			if (this.outcome.equals(REJECTED) || this.outcome.equals(DOWNGRADED)) {
+				return "Memory = " + this.job + " needs " + megabytes(this.requested) + ", over the "
+						+ megabytes(getBudget()) + " budget ("
+						+ (this.bytes > 0 ? "downgraded to " + megabytes(this.bytes) : "rejected") + ")";
+			}
+			return "Memory = " + megabytes(this.bytes) + " reserved of " + megabytes(getBudget()) + " budget ("
+					+ this.outcome + ")";
+		}
+
+		/*--------------------------------------------------- close -----
+		 |  Method close
+		 |
+		 |  Purpose:  Returns the reserved bytes to the budget. Closing a
+		 |      reservation twice, or a rejected one, does nothing.
+		 |
+		 |  Returns:  None.
+		 *-------------------------------------------------------------------*/
+		@Override
+		public void close() {
+			synchronized (MemoryGovernor.class) {
+				if (!this.released && this.bytes > 0) {
+					reserved -= this.bytes;
+					active.remove(this);
+					MemoryGovernor.class.notifyAll();
+				}
+				this.released = true;
+			}
+		}
+	}
+
+	/*--------------------------------------------------- setBudget -----
+	 |  Method setBudget
+	 |
+	 |  Purpose:  Sets the bytes all reservations together may hold.
+	 |      Jobs waiting for memory are woken, since a larger budget may
+	 |      now fit them.
+	 |
+	 |  Parameters:
+	 |      bytes (IN) -- the budget, at least 1.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static synchronized void setBudget(long bytes) {
+		budget = bytes;
+		MemoryGovernor.class.notifyAll();
+	}
+
+	/*--------------------------------------------------- getBudget -----
+	 |  Method getBudget
+	 |
+	 |  Returns:  The bytes all reservations together may hold.
+	 *-------------------------------------------------------------------*/
+	static synchronized long getBudget() {
+		return budget;
+	}
+
+	/*--------------------------------------------------- admit -----
+	 |  Method admit
+	 |
+	 |  Purpose:  Reserves memory for a job. A request that fits the
+	 |      budget waits up to QUEUE_WAIT_MS for earlier jobs to release
+	 |      enough. A request that never could fit, or is still waiting
+	 |      when the time is up, gets the fallback instead: whatever of
+	 |      fallback is free once at least MIN_FALLBACK of it is, waiting
+	 |      for that within the same time.
+	 |
+	 |  Parameters:
+	 |      job (IN) -- the engine asking, for the reservation list.
+	 |      bytes (IN) -- the job's estimated peak footprint.
+	 |      fallback (IN) -- the bytes the job could make do with on a
+	 |          smaller path, or 0 if it has none.
+	 |
+	 |  Returns:  The reservation; its outcome says which was granted. A
+	 |      REJECTED reservation holds nothing.
+	 *-------------------------------------------------------------------*/
+	static synchronized Reservation admit(String job, long bytes, long fallback) {
+
+		long deadline = System.currentTimeMillis() + QUEUE_WAIT_MS;
+		boolean waited = false;
+
+		while (bytes <= budget && reserved + bytes > budget && System.currentTimeMillis() < deadline) {
+			waited = true;
+			waitUntil(deadline);
+		}
+
+		if (reserved + bytes <= budget) {
+			return grant(job, bytes, bytes, waited ? QUEUED : ADMITTED);
+		}
+
+		if (fallback > 0) {
+			long least = Math.min(fallback, MIN_FALLBACK);
+			while (budget - reserved < least && System.currentTimeMillis() < deadline) {
+				waitUntil(deadline);
+			}
+			if (budget - reserved >= least) {
+				return grant(job, bytes, Math.min(fallback, budget - reserved), DOWNGRADED);
+			}
+		}
+
+		rejected++;
+		return new Reservation(nextId++, job, bytes, 0, REJECTED);
+	}
+
+	/*--------------------------------------------------- grant -----
+	 |  Method grant
+	 |
+	 |  Purpose:  Records a reservation as held. Callers hold the lock.
+	 |
+	 |  Returns:  The new reservation.
+	 *-------------------------------------------------------------------*/
+	private static Reservation grant(String job, long requested, long bytes, String outcome) {
+
+		Reservation reservation = new Reservation(nextId++, job, requested, bytes, outcome);
+		reserved += bytes;
+		active.add(reservation);
+
+		if (outcome.equals(ADMITTED)) {
+			admitted++;
+		} else if (outcome.equals(QUEUED)) {
+			queued++;
+		} else {
+			downgraded++;
+		}
+		return reservation;
+	}
+
+	/*--------------------------------------------------- waitUntil -----
+	 |  Method waitUntil
+	 |
+	 |  Purpose:  Waits on the governor's monitor until a release, a
+	 |      budget change or the deadline. Callers hold the lock.
+	 |
+	 |  Parameters:
+	 |      deadline (IN) -- the latest time to wake, in milliseconds.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private static void waitUntil(long deadline) {
+		try {
+			MemoryGovernor.class.wait(Math.max(1, deadline - System.currentTimeMillis()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*--------------------------------------------------- estimateValues -----
+	 |  Method estimateValues
+	 |
+	 |  Purpose:  Estimates how many whitespace separated values a text
+	 |      file holds without loading it: the values in its first
+	 |      SAMPLE_BYTES, scaled up by its length. Exact for files no
+	 |      longer than that; for longer ones it assumes the rest of the
+	 |      file looks like its start.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the input file.
+	 |
+	 |  Returns:  The estimate, at least 1. A file that cannot be read
+	 |      counts as 1; its loader reports the problem.
+	 *-------------------------------------------------------------------*/
+	static long estimateValues(File file) {
+
+		byte[] sample = new byte[SAMPLE_BYTES];
+		int read = 0;
+		try (InputStream in = new FileInputStream(file)) {
+			for (int got; read < sample.length && (got = in.read(sample, read, sample.length - read)) > 0;) {
+				read += got;
+			}
+		} catch (IOException e) {
+			return 1;
+		}
+
+		long values = 0;
+		boolean inValue = false;
+		for (int index = 0; index < read; index++) {
+			boolean space = Character.isWhitespace(sample[index]);
+			if (!space && !inValue) {
+				values++;
+			}
+			inValue = !space;
+		}
+
+		long length = file.length();
+		if (read == 0 || length <= read) {
+			return Math.max(1, values); // All of it was read, or it is a pipe
+		}
+		return Math.max(1, (long) Math.ceil((double) values * length / read));
+	}
+
+	/*--------------------------------------------------- heapBytes -----
+	 |  Method heapBytes
+	 |
+	 |  Purpose:  heapBytes for a text file that is not loaded yet, with
+	 |      estimateValues for n and the shape readFile would pick.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the input file.
+	 |
+	 |  Returns:  The estimate in bytes.
+	 *-------------------------------------------------------------------*/
+	static long heapBytes(File file) {
+		long n = estimateValues(file);
+		int[] shape = readFile.calculateRowsCols((int) Math.min(n, Integer.MAX_VALUE - 8));
+		return heapBytes(n, shape[0], shape[1]);
+	}
+
+	/*--------------------------------------------------- heapBytes -----
+	 |  Method heapBytes
+	 |
+	 |  Purpose:  Estimates the peak of the Integer[][] engines (column,
+	 |      counting and sample sort): every value boxed, HEAP_MATRICES
+	 |      reference matrices of r x (s + 1) cells, and the list of
+	 |      references readFile loads into, which grows by half at a time.
+	 |      The column sort's copies dominate the counting and sample sort
+	 |      arrays, so one estimate covers all three.
+	 |
+	 |  Parameters:
+	 |      n (IN) -- the number of values.
+	 |      r (IN) -- the number of rows.
+	 |      s (IN) -- the number of columns.
+	 |
+	 |  Returns:  The estimate in bytes.
+	 *-------------------------------------------------------------------*/
+	static long heapBytes(long n, long r, long s) {
+		return n * BOX_BYTES + HEAP_MATRICES * r * (s + 1) * REFERENCE_BYTES + n * REFERENCE_BYTES * 3 / 2;
+	}
+
+	/*--------------------------------------------------- offHeapBytes -----
+	 |  Method offHeapBytes
+	 |
+	 |  Purpose:  Estimates the peak of OffHeapColumnSort: the loaded
+	 |      OffHeapMatrix, whose capacity may be up to twice n since it
+	 |      doubles as it grows, plus a scratch matrix of n ints.
+	 |
+	 |  Parameters:
+	 |      n (IN) -- the number of values.
+	 |
+	 |  Returns:  The estimate in bytes.
+	 *-------------------------------------------------------------------*/
+	static long offHeapBytes(long n) {
+		return 3 * n * Integer.BYTES;
+	}
+
+	/*--------------------------------------------------- sharedBytes -----
+	 |  Method sharedBytes
+	 |
+	 |  Purpose:  Estimates the peak of SharedMemorySort. The values stay
+	 |      in the producer's mapping, so only the scratch matrix of the
+	 |      permutation steps, of r * s values with the padding, is new
+	 |      memory.
+	 |
+	 |  Parameters:
+	 |      n (IN) -- the number of values.
+	 |
+	 |  Returns:  The estimate in bytes.
+	 *-------------------------------------------------------------------*/
+	static long sharedBytes(long n) {
+		long[] shape = OffHeapColumnSort.calculateRowsCols(n);
+		return shape[0] * shape[1] * Integer.BYTES;
+	}
+
+	/*--------------------------------------------------- compressedBytes -----
+	 |  Method compressedBytes
+	 |
+	 |  Purpose:  Estimates the peak of CompressedColumnSort once it has
+	 |      loaded: the columns before and after a step, at the footprint
+	 |      measured after loading (sorted columns usually pack tighter),
+	 |      plus one column decompressed and one being rebuilt per thread.
+	 |
+	 |  Parameters:
+	 |      loaded (IN) -- the compressed footprint after loading.
+	 |      r (IN) -- the number of rows.
+	 |
+	 |  Returns:  The estimate in bytes.
+	 *-------------------------------------------------------------------*/
+	static long compressedBytes(long loaded, long r) {
+		return 2 * loaded + 2 * r * Integer.BYTES * Runtime.getRuntime().availableProcessors();
+	}
+
+	/*--------------------------------------------------- compositeBytes -----
+	 |  Method compositeBytes
+	 |
+	 |  Purpose:  Estimates the peak of CompositeKeySort: the fields of
+	 |      every record, in arrays that double as they grow, and the
+	 |      long[] matrix with its scratch copy.
+	 |
+	 |  Parameters:
+	 |      n (IN) -- the number of records.
+	 |      r (IN) -- the number of rows.
+	 |      s (IN) -- the number of columns.
+	 |      fields (IN) -- the number of fields per record.
+	 |
+	 |  Returns:  The estimate in bytes.
+	 *-------------------------------------------------------------------*/
+	static long compositeBytes(long n, long r, long s, int fields) {
+		return 2 * n * fields * Integer.BYTES + 2 * r * s * Long.BYTES;
+	}
+
+	/*--------------------------------------------------- windowBytes -----
+	 |  Method windowBytes
+	 |
+	 |  Purpose:  Estimates the peak of SlidingWindowSort: the window in
+	 |      arrival order, columns of up to 2r + 1 values holding at most
+	 |      about twice the window, and the sorted copy a rebalance makes.
+	 |
+	 |  Parameters:
+	 |      window (IN) -- the number of values kept.
+	 |
+	 |  Returns:  The estimate in bytes.
+	 *-------------------------------------------------------------------*/
+	static long windowBytes(long window) {
+		return 6 * window * Integer.BYTES;
+	}
+
+	/*--------------------------------------------------- metrics -----
+	 |  Method metrics
+	 |
+	 |  Purpose:  Describes the budget, every reservation held and the
+	 |      outcomes so far, in the format of SortMonitor.metrics.
+	 |
+	 |  Returns:  The text.
+	 *-------------------------------------------------------------------*/
+	static synchronized String metrics() {
+
+		StringBuilder text = new StringBuilder();
+
+		text.append("# Memory reservations\n");
+		text.append("columnsort_memory_budget_bytes ").append(budget).append('\n');
+		text.append("columnsort_memory_reserved_bytes ").append(reserved).append('\n');
+		for (Reservation reservation : active) {
+			text.append("columnsort_memory_reservation_bytes{id=\"").append(reservation.id).append("\",job=\"")
+					.append(reservation.job).append("\",outcome=\"").append(reservation.outcome).append("\"} ")
+					.append(reservation.bytes).append('\n');
+		}
+		text.append("columnsort_memory_admitted_total ").append(admitted).append('\n');
+		text.append("columnsort_memory_queued_total ").append(queued).append('\n');
+		text.append("columnsort_memory_downgraded_total ").append(downgraded).append('\n');
+		text.append("columnsort_memory_rejected_total ").append(rejected).append('\n');
+
+		return text.toString();
+	}
+
+	/*--------------------------------------------------- megabytes -----
+	 |  Method megabytes
+	 |
+	 |  Parameters:
+	 |      bytes (IN) -- a number of bytes.
+	 |
+	 |  Returns:  The bytes as "<MB> MB" with one decimal.
+	 *-------------------------------------------------------------------*/
+	static String megabytes(long bytes) {
+		return String.format(Locale.ROOT, "%.1f MB", bytes / (double) (1L << 20));
+	}
+
+}
@@ -0,0 +1,376 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -join=<file>
+ |                                       [-op=join|intersect|difference|union]
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Joins two files of integers, or combines them as sets,
+ |                  in one run instead of sorting each and comparing the
+ |                  printed outputs. Both files are sorted with the column
+ |                  sort at the same time, one thread each, and the two
+ |                  sorted matrices are then merged in a single pass.
+ |
+ |        Input:  The left file, whose name is typed at the prompt, and the
+ |                  right file given with -join=, both in the format
+ |                  readFile reads.
+ |
+ |       Output:  The result, one value per line in ascending order, then
+ |                  the details of both sorts, the elapsed time and how many
+ |                  values went in and came out of the merge, and how fast.
+ |                  Duplicates count as a multiset: a value that occurs a
+ |                  times on the left and b times on the right comes out
+ |                    join        - a * b times, once per matching pair
+ |                    intersect   - min(a, b) times
+ |                    difference  - max(a - b, 0) times (left minus right)
+ |                    union       - max(a, b) times
+ |
+ |   Techniques:  Each sorted matrix is read in Column-Major Order, where
+ |                  the virtual padding sorts after the last value, so the
+ |                  first n cells are the values. The merge takes the
+ |                  smaller head of the two, counts its run on both sides
+ |                  and prints it as many times as the operation says: one
+ |                  comparison per run rather than per value, and O(1)
+ |                  memory beyond the two matrices. The output goes through
+ |                  its own buffer, so the merge is not slowed by a flush
+ |                  per line.
+ |
+ |   Known Bugs:  While both files sort at once, the -metrics endpoint
+ |                  shows the job in progress of the side begun last; each
+ |                  side's steps and events are its own.
+ |
+ *===========================================================================*/
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * --------------------------------------------------------- Class: MergeJoin
+ *
+ * Purpose: Sorts two files side by side and merges them with a join or a set
+ * operation.
+ *
+ * Fields: - File leftFile, rightFile: the inputs. - String operation: JOIN,
+ * INTERSECT, DIFFERENCE or UNION. - String kernel: the column kernel. -
+ * boolean verify: check both sorts. - Side left, right: the sorted inputs. -
+ * long output, keys, bytes: values, distinct values and characters printed.
+ * - double mergeSeconds: the time of the merge.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class MergeJoin {
+
+	final static String JOIN = "join"; // Every matching pair: a * b
+	final static String INTERSECT = "intersect"; // min(a, b)
+	final static String DIFFERENCE = "difference"; // max(a - b, 0), left minus right
+	final static String UNION = "union"; // max(a, b)
+	final static String[] OPERATIONS = { JOIN, INTERSECT, DIFFERENCE, UNION }; // Every operation, -op=
+	final static int BUFFER_BYTES = 1 << 16; // Output buffer of the merge
+
+	/**
+	 * One input: its loader, its column sort and the time the sort took.
+	 */
+	private static class Side {
+		File file; // The input file
+		ColumnSortSelection sorter; // The sort, holding the sorted matrix
+		MemoryGovernor.Reservation memory; // The memory it reserved
+		double seconds; // Time of the sort alone
+		int numItems; // n
+		int rows; // r
+	}
+
+	private File leftFile; // Left input, typed at the prompt
+	private File rightFile; // Right input, -join=
+	private String operation; // JOIN, INTERSECT, DIFFERENCE or UNION
+	private String kernel; // Column kernel of both sorts
+	private boolean verify; // Check both sorts against their input
+
+	private Side left; // The sorted left input
+	private Side right; // The sorted right input
+	private long output; // Values printed
+	private long keys; // Distinct values printed
+	private long bytes; // Characters printed
+	private double mergeSeconds; // Time of the merge, printing included
+
+	/*--------------------------------------------------- MergeJoin -----
+	 |  Constructor MergeJoin
+	 |
+	 |  Parameters:
+	 |      leftFile (IN) -- the left input.
+	 |      rightFile (IN) -- the right input.
+	 |      operation (IN) -- one of OPERATIONS.
+	 |      kernel (IN) -- the column kernel, see ColumnSortSelection.sortValues.
+	 |      verify (IN) -- true to check both sorts.
+	 *-------------------------------------------------------------------*/
+	MergeJoin(File leftFile, File rightFile, String operation, String kernel, boolean verify) {
+		this.leftFile = leftFile;
+		this.rightFile = rightFile;
+		this.operation = operation;
+		this.kernel = kernel;
+		this.verify = verify;
+	}
+
+	/*--------------------------------------------------- sortBoth -----
+	 |  Method sortBoth
+	 |
+	 |  Purpose:  Loads and sorts both files at once: the right one on a
+	 |      new thread, the left one on this thread. Each side reserves
+	 |      its memory once it is loaded, as main does.
+	 |
+	 |  Post-condition: Both sides are sorted and, if verify is on,
+	 |      checked; a failed check exits with status 1.
+	 |
+	 |  Throws: FileNotFoundException if the left file is not found.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void sortBoth() throws FileNotFoundException {
+
+		Side[] sorted = new Side[1];
+		Thread worker = new Thread(() -> {
+			try {
+				sorted[0] = sort(this.rightFile, "join-right");
+			} catch (FileNotFoundException e) {
+				fail("File not found: " + this.rightFile);
+			}
+		}, "join-right");
+		worker.setDaemon(true);
+		worker.start();
+
+		this.left = sort(this.leftFile, "join-left");
+
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail("Interrupted while sorting " + this.rightFile);
+		}
+		this.right = sorted[0];
+	}
+
+	/*--------------------------------------------------- sort -----
+	 |  Method sort
+	 |
+	 |  Purpose:  Reserves memory for one file, estimated from its size,
+	 |      then loads it and runs the column sort on it, with the kernel
+	 |      asked for and one thread.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the file.
+	 |      job (IN) -- the name of its memory reservation.
+	 |
+	 |  Throws: FileNotFoundException if the file is not found.
+	 |
+	 |  Returns:  The sorted side.
+	 *-------------------------------------------------------------------*/
+	private Side sort(File file, String job) throws FileNotFoundException {
+
+		Side side = new Side();
+		side.file = file;
+
+		side.memory = MemoryGovernor.admit(job, MemoryGovernor.heapBytes(file), 0);
+		if (side.memory.outcome.equals(MemoryGovernor.REJECTED)) {
+			fail(side.memory.describe());
+		}
+
+		readFile loaded = new readFile(file);
+		side.numItems = loaded.numItems;
+		side.rows = loaded.ROWS;
+
+		side.sorter = new ColumnSortSelection(loaded.sortCol, loaded.numItems, loaded.ROWS, loaded.COLS);
+		side.sorter.configure(this.kernel, 1, null);
+
+		long start = System.nanoTime();
+		side.sorter.sort(false);
+		side.seconds = (System.nanoTime() - start) / ColumnSortSelection.BILLION;
+
+		if (this.verify) {
+			side.sorter.verify(loaded.checksum);
+		}
+		return side;
+	}
+
+	/*--------------------------------------------------- merge -----
+	 |  Method merge
+	 |
+	 |  Purpose:  Merges the two sorted sides run by run and prints each
+	 |      value as many times as the operation gives for its counts.
+	 |
+	 |  Pre-condition: sortBoth has returned.
+	 |
+	 |  Post-condition: The result is printed and flushed; output, keys
+	 |      and bytes hold its size.
+	 |
+	 |  Parameters:
+	 |      out (IN) -- where to print the result.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void merge(PrintStream out) {
+
+		long start = System.nanoTime();
+
+		Integer[][] a = this.left.sorter.getArray2D();
+		Integer[][] b = this.right.sorter.getArray2D();
+		int na = this.left.numItems;
+		int nb = this.right.numItems;
+		int ra = this.left.rows;
+		int rb = this.right.rows;
+
+		int i = 0; // Next value of the left side, in CMO
+		int j = 0; // Next value of the right side, in CMO
+
+		while (i < na || j < nb) {
+
+			int value;
+			if (j == nb || (i < na && a[i % ra][i / ra] <= b[j % rb][j / rb])) {
+				value = a[i % ra][i / ra];
+			} else {
+				value = b[j % rb][j / rb];
+			}
+
+			long countA = 0;
+			while (i < na && a[i % ra][i / ra] == value) {
+				countA++;
+				i++;
+			}
+			long countB = 0;
+			while (j < nb && b[j % rb][j / rb] == value) {
+				countB++;
+				j++;
+			}
+
+			long times = times(countA, countB);
+			if (times > 0) {
+				String line = Integer.toString(value);
+				for (long copy = 0; copy < times; copy++) {
+					out.println(line);
+				}
+				this.output += times;
+				this.keys++;
+				this.bytes += times * (line.length() + 1);
+			}
+		}
+		out.flush();
+
+		this.mergeSeconds = (System.nanoTime() - start) / ColumnSortSelection.BILLION;
+	}
+
+	/*--------------------------------------------------- times -----
+	 |  Method times
+	 |
+	 |  Purpose:  Applies the operation to the counts of one value.
+	 |
+	 |  Parameters:
+	 |      countA (IN) -- occurrences on the left.
+	 |      countB (IN) -- occurrences on the right.
+	 |
+	 |  Returns:  How many times the value is printed.
+	 *-------------------------------------------------------------------*/
+	private long times(long countA, long countB) {
+		switch (this.operation) {
+		case JOIN:
+			return countA * countB;
+		case INTERSECT:
+			return Math.min(countA, countB);
+		case DIFFERENCE:
+			return Math.max(countA - countB, 0);
+		default: // UNION
+			return Math.max(countA, countB);
+		}
+	}
+
+	/*--------------------------------------------------- run -----
+	 |  Method run
+	 |
+	 |  Purpose:  Sorts both files, streams the merge to standard output
+	 |      and prints the summary after the result, as -emit does.
+	 |
+	 |  Throws: FileNotFoundException if the left file is not found.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void run() throws FileNotFoundException {
+
+		long start = System.nanoTime();
+
+		sortBoth();
+
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, BUFFER_BYTES), false);
+		SortMonitor.OutputEvent event = SortMonitor.beginPhase(new SortMonitor.OutputEvent());
+		merge(out);
+		SortMonitor.output(event, this.bytes);
+
+		double seconds = (System.nanoTime() - start) / ColumnSortSelection.BILLION;
+
+		for (String line : describe(seconds)) {
+			System.out.println(line);
+		}
+
+		this.left.memory.close();
+		this.right.memory.close();
+	}
+
+	/*--------------------------------------------------- describe -----
+	 |  Method describe
+	 |
+	 |  Purpose:  Builds the summary: each side's shape and sort time, the
+	 |      elapsed time, the cardinality of the result and the throughput
+	 |      of the merge.
+	 |
+	 |  Parameters:
+	 |      seconds (IN) -- the elapsed time of the whole job.
+	 |
+	 |  Returns:  The lines.
+	 *-------------------------------------------------------------------*/
+	private ArrayList<String> describe(double seconds) {
+
+		ArrayList<String> lines = new ArrayList<String>();
+
+		for (Side side : new Side[] { this.left, this.right }) {
+			lines.add((side == this.left ? "Left" : "Right") + " = " + side.file + ": n = " + side.numItems + ", r = "
+					+ side.sorter.getRows() + ", s = " + side.sorter.getCols() + ", sorted in "
+					+ ColumnSortSelection.formatToThreeDecimals(side.seconds) + " seconds.");
+		}
+
+		lines.add("Elapsed time = " + ColumnSortSelection.formatToThreeDecimals(seconds) + " seconds.");
+
+		long in = (long) this.left.numItems + this.right.numItems;
+		lines.add("Join = " + this.operation + ", " + this.output + " values out (" + this.keys + " distinct) from "
+				+ this.left.numItems + " left and " + this.right.numItems + " right");
+
+		double merge = Math.max(this.mergeSeconds, 1e-9);
+		lines.add("Merge = " + ColumnSortSelection.formatToThreeDecimals(this.mergeSeconds) + " seconds, "
+				+ ColumnSortSelection.formatToThreeDecimals(in / merge / 1e6) + " M values in and "
+				+ ColumnSortSelection.formatToThreeDecimals(this.output / merge / 1e6) + " M values out per second");
+
+		lines.add("Engine = column sort, " + this.kernel + " kernel, both inputs at once");
+		lines.add(this.left.memory.describe());
+		lines.add(this.right.memory.describe());
+
+		if (this.verify) {
+			lines.add("Verified = both inputs in order, checksums match");
+		}
+		return lines;
+	}
+
+	/*--------------------------------------------------- fail -----
+	 |  Method fail
+	 |
+	 |  Purpose:  Prints a message and terminates the program.
+	 |
+	 |  Returns:  None; the program exits.
+	 *-------------------------------------------------------------------*/
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,589 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -offheap
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  An off-heap storage backend for the column sort. The
+ |                  ColumnSortSelection matrix is an Integer[][] on the Java
+ |                  heap, which caps n at what one JVM heap can hold and
+ |                  makes every value a boxed object the garbage collector
+ |                  has to trace. This backend keeps the r x s matrix in
+ |                  direct (native) memory, indexed with longs, so n may
+ |                  exceed Integer.MAX_VALUE and the sort itself adds no
+ |                  GC load.
+ |
+ |        Input:  Same file format as ColumnSortSelection: one integer per
+ |                  line (any whitespace separates values).
+ |
+ |       Output:  Same console output as ColumnSortSelection: n, r, s, the
+ |                  elapsed time and the values in sorted order.
+ |
+ |   Techniques:  The matrix is stored flat in Column-Major Order (CMO), so
+ |                  element (row, col) lives at index col * r + row. In this
+ |                  layout every step of Leighton's column sort becomes either
+ |                  a sort of a contiguous index range or a fixed permutation:
+ |
+ |                  Steps 1, 3, 5:  sort each column, i.e. each range
+ |                                  [col * r, (col + 1) * r).
+ |                  Step 2:         "transpose"; the value at CMO index k is
+ |                                  moved to row k / s, column k % s.
+ |                  Step 4:         the inverse of step 2.
+ |                  Steps 6 - 8:    shift by r / 2, sort, unshift. In CMO the
+ |                                  shifted columns are the windows
+ |                                  [col * r - r / 2, (col + 1) * r - r / 2),
+ |                                  so the shift needs neither a new matrix
+ |                                  nor the MIN_VALUE / MAX_VALUE markers.
+ |
+ |                  When no s divides n, the matrix is padded with
+ |                  Integer.MAX_VALUE up to r * s values. The padding sorts
+ |                  after every other value (or among equal ones), so the
+ |                  first n values in CMO are the sorted input and only
+ |                  those are checked and printed.
+ |
+ |                  The Foreign Memory API (MemorySegment) is still an
+ |                  incubator module on the JDKs this program targets, so the
+ |                  storage uses the direct ByteBuffer fallback: a list of
+ |                  chunks of 2^28 ints (1 GiB) each, addressed by a long
+ |                  index. Column ranges are sorted in place with an
+ |                  introsort that works directly on those chunks.
+ |
+ |   Required Features Not Included:  All required features are included.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.stream.LongStream;
+
+/**
+ * --------------------------------------------------------- Class: OffHeapColumnSort
+ *
+ * Purpose: This class runs the same eight column sort steps as
+ * ColumnSortSelection, but over an OffHeapMatrix instead of an Integer[][].
+ * The step methods keep the names of their ColumnSortSelection counterparts so
+ * the two pipelines can be read side by side.
+ *
+ * Fields: - OffHeapMatrix matrix: the r x s matrix in CMO. - OffHeapMatrix
+ * scratch: a second matrix of the same size used by the permutation steps. -
+ * long numItems: the number of values read. - long cells: r * s, numItems
+ * plus the padding. - long ROWS: the number of rows (r). - long COLS: the
+ * number of columns (s). - long shift: the number of rows the matrix is
+ * currently shifted down by (step 6).
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+public class OffHeapColumnSort {
+
+	final static int PERMUTE_BLOCK = 1 << 16; // Values moved per parallel task in steps 2 and 4
+
+	private OffHeapMatrix matrix; // r x s matrix in Column-Major Order
+	private OffHeapMatrix scratch; // Destination of the step 2 and step 4 permutations
+
+	private long numItems; // Total number of items read from the file
+	private long cells; // r * s: numItems plus the Integer.MAX_VALUE padding
+	private long ROWS; // Number of rows in the matrix (also known as r)
+	private long COLS; // Number of columns in the matrix (also known as s)
+	private long shift; // Rows the matrix is shifted down by between steps 6 and 8
+	private String verified; // Result of verify, or null if it was not run
+
+	/*--------------------------------------------------- OffHeapColumnSort -----
+	 |  Constructor OffHeapColumnSort
+	 |
+	 |  Purpose:  Wraps a loaded OffHeapMatrix, picks the r x s shape
+	 |      for it with calculateRowsCols and pads it to r * s values.
+	 |
+	 |  Pre-condition: The matrix holds at least one value and can grow.
+	 |
+	 |  Post-condition: numItems, cells, ROWS and COLS describe the
+	 |      matrix.
+	 |
+	 |  Parameters:
+	 |      matrix (IN) -- the values to sort, in load order.
+	 *-------------------------------------------------------------------*/
+	public OffHeapColumnSort(OffHeapMatrix matrix) {
+		this(matrix, matrix.size());
+	}
+
+	/*--------------------------------------------------- OffHeapColumnSort -----
+	 |  Constructor OffHeapColumnSort
+	 |
+	 |  Purpose:  As above, for a matrix that may already have room for
+	 |      the padding after its first numItems values, as a mapping
+	 |      that cannot grow does (see SharedMemorySort.sortClaimed).
+	 |
+	 |  Pre-condition: numItems is positive and at most matrix.size().
+	 |      A matrix that cannot grow holds r * s values.
+	 |
+	 |  Post-condition: numItems, cells, ROWS and COLS describe the
+	 |      matrix, and every cell past numItems is padding.
+	 |
+	 |  Parameters:
+	 |      matrix (IN) -- the values to sort, in load order.
+	 |      numItems (IN) -- how many of its values are real.
+	 *-------------------------------------------------------------------*/
+	OffHeapColumnSort(OffHeapMatrix matrix, long numItems) {
+		this.matrix = matrix;
+		this.numItems = numItems;
+
+		long[] shape = calculateRowsCols(this.numItems);
+		this.ROWS = shape[0];
+		this.COLS = shape[1];
+		this.cells = this.ROWS * this.COLS;
+		this.shift = 0;
+
+		for (long index = numItems; index < Math.min(matrix.size(), this.cells); index++) {
+			matrix.set(index, Integer.MAX_VALUE);
+		}
+		while (matrix.size() < this.cells) {
+			matrix.add(Integer.MAX_VALUE);
+		}
+	}
+
+	/*--------------------------------------------------- getNumItems -----
+	 |  Method: getNumItems
+	 |
+	 |  Purpose:  Returns the number of values being sorted.
+	 |
+	 |  Returns:
+	 |      long - the total number of items in the matrix.
+	 *-------------------------------------------------------------------*/
+	public long getNumItems() {
+		return this.numItems;
+	}
+
+	/*--------------------------------------------------- getRows -----
+	 |  Method: getRows
+	 |
+	 |  Purpose:  Returns the number of rows (r) of the matrix.
+	 |
+	 |  Returns:
+	 |      long - the number of rows.
+	 *-------------------------------------------------------------------*/
+	public long getRows() {
+		return this.ROWS;
+	}
+
+	/*--------------------------------------------------- getCols -----
+	 |  Method: getCols
+	 |
+	 |  Purpose:  Returns the number of columns (s) of the matrix.
+	 |
+	 |  Returns:
+	 |      long - the number of columns.
+	 *-------------------------------------------------------------------*/
+	public long getCols() {
+		return this.COLS;
+	}
+
+	/*--------------------------------------------------- getMatrix -----
+	 |  Method: getMatrix
+	 |
+	 |  Purpose:  Returns the backing matrix. After sort() its first
+	 |      numItems values are the input in ascending order, read in CMO,
+	 |      and any padding follows them.
+	 |
+	 |  Returns:
+	 |      OffHeapMatrix - the backing matrix.
+	 *-------------------------------------------------------------------*/
+	public OffHeapMatrix getMatrix() {
+		return this.matrix;
+	}
+
+	/*--------------------------------------------------- calculateRowsCols -----
+	 |  Method calculateRowsCols
+	 |
+	 |  Purpose:  The long counterpart of readFile.calculateRowsCols. It
+	 |      takes the largest s for which the smallest multiple of s with
+	 |      r * s >= n also satisfies r >= 2(s - 1)^2, as readFile.paddedRows
+	 |      does, without its int limit on r * s. s does not have to divide
+	 |      n: the r * s - n cells left over are padded with
+	 |      Integer.MAX_VALUE (see OffHeapColumnSort), so a prime n is no
+	 |      longer sorted as one column. Since n > 2(s - 1)^3, the search
+	 |      starts just above the cube root of n / 2 instead of at n - 1,
+	 |      which keeps it cheap for n in the billions.
+	 |
+	 |  Pre-condition: n is positive.
+	 |
+	 |  Post-condition: None.
+	 |
+	 |  Parameters:
+	 |      n (IN) -- the number of values to sort.
+	 |
+	 |  Returns:  A two element array { r, s } with r * s >= n. If no
+	 |      s > 1 qualifies, { n, 1 } is returned.
+	 *-------------------------------------------------------------------*/
+	static long[] calculateRowsCols(long n) {
+
+		// Start at the largest s that could possibly satisfy r >= 2(s - 1)^2
+		for (long s = (long) Math.cbrt(n / 2.0) + 2; s > 1; s--) {
+
+			long perColumn = (n + s - 1) / s; // Values per column, rounded up
+			long r = (perColumn + s - 1) / s * s; // Rounded up to a multiple of s
+
+			if (r >= 2 * (s - 1) * (s - 1)) {
+				return new long[] { r, s };
+			}
+		}
+		return new long[] { n, 1 };
+	}
+
+	/*--------------------------------------------------- sort -----
+	 |  Method sort
+	 |
+	 |  Purpose:  Runs the column sort steps in the same order as
+	 |      ColumnSortSelection.main. A single column matrix is simply
+	 |      sorted as one column.
+	 |
+	 |  Pre-condition: The matrix has been loaded.
+	 |
+	 |  Post-condition: The matrix holds the values in ascending CMO.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public void sort() {
+
+		int cols = (int) this.COLS;
+		long n = this.numItems;
+
+		if (this.COLS == 1) {
+
+			SortMonitor.beginJob("off-heap", n, this.ROWS, this.COLS, 1);
+			SortMonitor.step(1, "introsort", cols, n, this::sortColumns);
+
+		} else {
+
+			SortMonitor.beginJob("off-heap", n, this.ROWS, this.COLS, 8);
+			SortMonitor.step(1, "introsort", cols, n, this::sortColumns);
+			SortMonitor.step(2, "transpose", cols, n, this::step2OfSort);
+			SortMonitor.step(3, "introsort", cols, n, this::sortColumns);
+			SortMonitor.step(4, "untranspose", cols, n, this::step4Sort);
+			SortMonitor.step(5, "introsort", cols, n, this::sortColumns);
+			SortMonitor.step(6, "shift", cols + 1, n, this::step6Sort);
+			SortMonitor.step(7, "introsort", cols + 1, n, this::step7Sort);
+			SortMonitor.step(8, "unshift", cols, n, this::step8Sort);
+
+		}
+		SortMonitor.endJob();
+		this.scratch = null; // Release the native memory held by the scratch matrix
+	}
+
+	/*--------------------------------------------------- sortColumns -----
+	 |  Method sortColumns
+	 |
+	 |  Purpose:  Steps 1, 3 and 5. Sorts every column in place. Columns
+	 |      are independent, so they are sorted in parallel.
+	 |
+	 |  Pre-condition: shift is 0.
+	 |
+	 |  Post-condition: Every column of the matrix is in ascending order.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void sortColumns() {
+		SortMonitor.Job job = SortMonitor.job();
+		LongStream.range(0, this.COLS).parallel().forEach(col -> {
+			this.matrix.sortRange(col * this.ROWS, (col + 1) * this.ROWS);
+			SortMonitor.columnDone(job);
+		});
+	}
+
+	/*--------------------------------------------------- step2OfSort -----
+	 |  Method step2OfSort
+	 |
+	 |  Purpose:  The "transpose" step. Reading the matrix in CMO, the k-th
+	 |      value is written to row k / s, column k % s, which in CMO is
+	 |      index (k % s) * r + k / s. The values are moved into the
+	 |      scratch matrix, which then becomes the matrix.
+	 |
+	 |  Pre-condition: Columns are sorted (step 1).
+	 |
+	 |  Post-condition: The matrix holds the permuted values.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step2OfSort() {
+		OffHeapMatrix to = scratchMatrix();
+
+		permuteBlocks((from, end) -> {
+			for (long k = from; k < end; k++) {
+				to.set((k % this.COLS) * this.ROWS + k / this.COLS, this.matrix.get(k));
+			}
+		});
+		swapWithScratch();
+	}
+
+	/*--------------------------------------------------- step4Sort -----
+	 |  Method step4Sort
+	 |
+	 |  Purpose:  The inverse of step 2 ("untranspose"). The matrix is read
+	 |      in row-major order and written back in CMO, so the value at
+	 |      CMO index (k % s) * r + k / s moves to index k.
+	 |
+	 |  Pre-condition: Columns are sorted (step 3).
+	 |
+	 |  Post-condition: The matrix holds the permuted values.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step4Sort() {
+		OffHeapMatrix to = scratchMatrix();
+
+		permuteBlocks((from, end) -> {
+			for (long k = from; k < end; k++) {
+				to.set(k, this.matrix.get((k % this.COLS) * this.ROWS + k / this.COLS));
+			}
+		});
+		swapWithScratch();
+	}
+
+	/*--------------------------------------------------- step6Sort -----
+	 |  Method step6Sort
+	 |
+	 |  Purpose:  Shifts the matrix down by r / 2 rows. In the heap
+	 |      pipeline this builds an r x (s + 1) matrix padded with
+	 |      Integer.MIN_VALUE and Integer.MAX_VALUE. In CMO the shifted
+	 |      columns are just the windows that start r / 2 values earlier,
+	 |      so only the shift amount is recorded and nothing is copied.
+	 |
+	 |  Pre-condition: Columns are sorted (step 5).
+	 |
+	 |  Post-condition: shift is r / 2.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step6Sort() {
+		this.shift = this.ROWS / 2;
+	}
+
+	/*--------------------------------------------------- step7Sort -----
+	 |  Method step7Sort
+	 |
+	 |  Purpose:  Sorts the columns of the shifted matrix. The first
+	 |      shifted column holds the top of column 0 under r / 2
+	 |      Integer.MIN_VALUE markers and the last holds the bottom of
+	 |      column s - 1 above the Integer.MAX_VALUE markers; both are
+	 |      already sorted, so only the s - 1 windows that straddle two
+	 |      original columns are sorted, in parallel.
+	 |
+	 |  Pre-condition: step6Sort has set shift.
+	 |
+	 |  Post-condition: Every shifted column is in ascending order.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step7Sort() {
+		LongStream.range(1, this.COLS).parallel().forEach(col -> this.matrix
+				.sortRange(col * this.ROWS - this.shift, (col + 1) * this.ROWS - this.shift));
+	}
+
+	/*--------------------------------------------------- step8Sort -----
+	 |  Method step8Sort
+	 |
+	 |  Purpose:  Unshifts the matrix. Because step 6 never moved any
+	 |      values and never wrote markers, this only clears the shift;
+	 |      unlike the heap pipeline nothing has to be filtered out.
+	 |
+	 |  Pre-condition: step7Sort has run.
+	 |
+	 |  Post-condition: shift is 0 and the matrix is sorted in CMO.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void step8Sort() {
+		this.shift = 0;
+	}
+
+	/*--------------------------------------------------- scratchMatrix -----
+	 |  Method scratchMatrix
+	 |
+	 |  Purpose:  Returns the scratch matrix, allocating it on first use.
+	 |      Steps 2 and 4 reuse the same native memory.
+	 |
+	 |  Returns:  An OffHeapMatrix of r * s values.
+	 *-------------------------------------------------------------------*/
+	private OffHeapMatrix scratchMatrix() {
+		if (this.scratch == null) {
+			this.scratch = new OffHeapMatrix(this.cells);
+		}
+		this.scratch.setSize(this.cells);
+		return this.scratch;
+	}
+
+	/*--------------------------------------------------- swapWithScratch -----
+	 |  Method swapWithScratch
+	 |
+	 |  Purpose:  Makes the scratch matrix, which holds the result of a
+	 |      permutation step, the current matrix.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void swapWithScratch() {
+		OffHeapMatrix temp = this.matrix;
+		this.matrix = this.scratch;
+		this.scratch = temp;
+	}
+
+	/*--------------------------------------------------- permuteBlocks -----
+	 |  Method permuteBlocks
+	 |
+	 |  Purpose:  Splits the index range [0, r * s) into blocks of
+	 |      PERMUTE_BLOCK values and runs the given permutation on each
+	 |      block in parallel. Every block writes disjoint destination
+	 |      indexes, so no locking is needed.
+	 |
+	 |  Parameters:
+	 |      range (IN) -- the permutation to apply to [from, end).
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void permuteBlocks(RangeTask range) {
+		long blocks = (this.cells + PERMUTE_BLOCK - 1) / PERMUTE_BLOCK;
+
+		LongStream.range(0, blocks).parallel().forEach(block -> range.run(block * PERMUTE_BLOCK,
+				Math.min(this.cells, (block + 1) * PERMUTE_BLOCK)));
+	}
+
+	/**
+	 * A piece of work over the index range [from, end).
+	 */
+	interface RangeTask {
+		void run(long from, long end);
+	}
+
+	/*--------------------------------------------------- verify -----
+	 |  Method verify
+	 |
+	 |  Purpose:  Checks the sorted matrix against the checksum taken
+	 |      while loading (see ColumnSortSelection.verify) with one pass
+	 |      over the matrix.
+	 |
+	 |  Post-condition: If the check fails the program exits with an
+	 |      error; otherwise the result is printed by printMessage.
+	 |
+	 |  Parameters:
+	 |      input (IN) -- the checksum of the values loaded
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public void verify(SortChecksum input) {
+
+		long start = System.nanoTime();
+
+		SortChecksum output = new SortChecksum();
+		for (long index = 0; index < this.numItems; index++) {
+			output.addInOrder(this.matrix.get(index));
+		}
+		input.verify(output);
+
+		this.verified = "Verified = " + output.count + " values in order, checksums match ("
+				+ ColumnSortSelection.formatToThreeDecimals((System.nanoTime() - start) / ColumnSortSelection.BILLION)
+				+ " seconds)";
+	}
+
+	/*--------------------------------------------------- printMessage -----
+	 |  Method printMessage
+	 |
+	 |  Purpose:  Prints n, r, s, the elapsed time and the sorted values,
+	 |      in the same format as ColumnSortSelection.printMessage. The
+	 |      values go through a buffered stream since there may be
+	 |      billions of them.
+	 |
+	 |  Parameters:
+	 |      seconds (IN) -- the elapsed time in seconds to be printed
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public void printMessage(double seconds) {
+
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+
+		out.println("n = " + this.numItems);
+
+		out.println("r = " + this.ROWS);
+
+		out.println("s = " + this.COLS);
+
+		String sec = ColumnSortSelection.formatToThreeDecimals(seconds);
+
+		out.print("Elapsed time = " + sec);
+		out.println(" seconds.");
+
+		if (this.verified != null) {
+			out.println(this.verified);
+		}
+
+		SortMonitor.OutputEvent event = SortMonitor.beginPhase(new SortMonitor.OutputEvent());
+		long bytes = 0; // Characters written, for the output event
+
+		for (long index = 0; index < this.numItems; index++) {
+			String line = Integer.toString(this.matrix.get(index));
+			out.println(line);
+			bytes += line.length() + 1;
+		}
+		out.flush();
+		SortMonitor.output(event, bytes);
+	}
+
+	/*--------------------------------------------------- load -----
+	 |  Method load
+	 |
+	 |  Purpose:  Prompts for a file name like readFile does and streams
+	 |      its integers straight into an OffHeapMatrix. Values are parsed
+	 |      from raw bytes by IntReader instead of through Scanner and
+	 |      ArrayList<Integer>, so loading creates no per-value objects
+	 |      either. The values are
+	 |      kept in load order; the column sort does not care how the
+	 |      matrix starts out.
+	 |
+	 |  Pre-condition: The input file exists.
+	 |
+	 |  Post-condition: If a non-integer value is found, a message is
+	 |      printed and the program terminates, as in readFile.
+	 |
+	 |  Throws: FileNotFoundException if the specified file does not
+	 |      exist or is not accessible.
+	 |
+	 |  Returns:  The loaded matrix.
+	 *-------------------------------------------------------------------*/
+	public static OffHeapMatrix load() throws FileNotFoundException {
+		return load(new File(readFile.promptFileName()));
+	}
+
+	/*--------------------------------------------------- load -----
+	 |  Method load
+	 |
+	 |  Purpose:  Reads every whitespace separated integer of the given
+	 |      file into a new OffHeapMatrix.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the input file.
+	 |
+	 |  Throws: FileNotFoundException if the file does not exist.
+	 |
+	 |  Returns:  The loaded matrix.
+	 *-------------------------------------------------------------------*/
+	public static OffHeapMatrix load(File file) throws FileNotFoundException {
+
+		SortMonitor.LoadEvent event = SortMonitor.beginPhase(new SortMonitor.LoadEvent());
+		OffHeapMatrix loaded = new OffHeapMatrix(1 << 16);
+
+		IntReader reader = new IntReader(file);
+		while (reader.hasNext()) {
+			loaded.add(reader.next());
+		}
+		loaded.checksum = reader.checksum;
+
+		SortMonitor.load(event, "off-heap", file, loaded.size(), 0, 0);
+		return loaded;
+	}
+
+}
@@ -0,0 +1,406 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -offheap
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  The native-memory int array behind OffHeapColumnSort,
+ |                  CompressedColumnSort and SharedMemorySort: values in
+ |                  direct or mapped ByteBuffers of CHUNK_SIZE ints, indexed
+ |                  with longs, with an introsort over any index range.
+ |
+ |        Input:  Values added one at a time, or a mapped file region.
+ |
+ |       Output:  The values, read and written by index.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * --------------------------------------------------------- Class: OffHeapMatrix
+ *
+ * Purpose: A growable array of ints held outside the Java heap and indexed
+ * with longs. The values live in direct ByteBuffers of CHUNK_SIZE ints each;
+ * only the last chunk may be smaller, and it is doubled in size as values are
+ * added until it is full, after which a new chunk is started. Because every
+ * chunk but the last is full, index i is always found in chunk
+ * i >>> CHUNK_SHIFT.
+ *
+ * The class also provides an in-place introsort over any index range, so
+ * columns can be sorted without copying them onto the heap.
+ *
+ * Fields: - ByteBuffer[] chunks: the native memory. - long size: the number of
+ * values stored. - long capacity: the number of values that fit without
+ * growing.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class OffHeapMatrix {
+
+	final static int CHUNK_SHIFT = 28; // log2 of the number of ints per chunk
+	final static long CHUNK_SIZE = 1L << CHUNK_SHIFT; // 2^28 ints (1 GiB) per chunk
+	final static long CHUNK_MASK = CHUNK_SIZE - 1; // Offset of an index within its chunk
+
+	final static int INSERTION_SORT_THRESHOLD = 32; // Ranges this small are insertion sorted
+
+	private ByteBuffer[] chunks; // Direct buffers holding the values
+	private long size; // Number of values stored
+	private long capacity; // Number of values the chunks can hold
+
+	SortChecksum checksum; // Checksum of the values loaded, or null if not loaded from a file
+
+	/*--------------------------------------------------- OffHeapMatrix -----
+	 |  Constructor OffHeapMatrix
+	 |
+	 |  Purpose:  Allocates native memory for at least the given number of
+	 |      values. The matrix starts out empty.
+	 |
+	 |  Parameters:
+	 |      capacity (IN) -- the number of values to make room for.
+	 *-------------------------------------------------------------------*/
+	OffHeapMatrix(long capacity) {
+		capacity = Math.max(1, capacity);
+
+		int numChunks = (int) ((capacity + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+		this.chunks = new ByteBuffer[numChunks];
+
+		for (int chunk = 0; chunk < numChunks; chunk++) {
+			long chunkSize = Math.min(CHUNK_SIZE, capacity - ((long) chunk << CHUNK_SHIFT));
+			this.chunks[chunk] = allocate(chunkSize);
+		}
+		this.capacity = capacity;
+		this.size = 0;
+	}
+
+	/*--------------------------------------------------- map -----
+	 |  Method map
+	 |
+	 |  Purpose:  Wraps part of a file as a full matrix, without copying:
+	 |      the chunks are mappings of the file, so reads and writes go
+	 |      straight to the shared pages (see SharedMemorySort). The
+	 |      mappings stay valid after the channel is closed.
+	 |
+	 |  Pre-condition: The file holds at least offset + 4 * size bytes.
+	 |
+	 |  Parameters:
+	 |      channel (IN) -- the file, open for reading and writing.
+	 |      offset (IN) -- the byte offset of the first value.
+	 |      size (IN) -- the number of values.
+	 |
+	 |  Throws: IOException if the file cannot be mapped.
+	 |
+	 |  Returns:  A matrix of size values that cannot grow.
+	 *-------------------------------------------------------------------*/
+	static OffHeapMatrix map(FileChannel channel, long offset, long size) throws IOException {
+
+		OffHeapMatrix mapped = new OffHeapMatrix(0);
+		int numChunks = (int) Math.max(1, (size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+		mapped.chunks = new ByteBuffer[numChunks];
+
+		for (int chunk = 0; chunk < numChunks; chunk++) {
+			long first = (long) chunk << CHUNK_SHIFT;
+			long ints = Math.min(CHUNK_SIZE, size - first);
+			mapped.chunks[chunk] = channel.map(FileChannel.MapMode.READ_WRITE, offset + first * Integer.BYTES,
+					ints * Integer.BYTES).order(ByteOrder.nativeOrder());
+		}
+		mapped.capacity = size;
+		mapped.size = size;
+		return mapped;
+	}
+
+	/*--------------------------------------------------- size -----
+	 |  Method size
+	 |
+	 |  Returns:  The number of values stored.
+	 *-------------------------------------------------------------------*/
+	long size() {
+		return this.size;
+	}
+
+	/*--------------------------------------------------- setSize -----
+	 |  Method setSize
+	 |
+	 |  Purpose:  Sets the number of values stored, growing the native
+	 |      memory if needed. Values past the old size are unspecified
+	 |      until they are set.
+	 |
+	 |  Parameters:
+	 |      size (IN) -- the new number of values.
+	 *-------------------------------------------------------------------*/
+	void setSize(long size) {
+		while (this.capacity < size) {
+			grow();
+		}
+		this.size = size;
+	}
+
+	/*--------------------------------------------------- get -----
+	 |  Method get
+	 |
+	 |  Parameters:
+	 |      index (IN) -- a long index below the capacity.
+	 |
+	 |  Returns:  The value at the given index.
+	 *-------------------------------------------------------------------*/
+	int get(long index) {
+		return this.chunks[(int) (index >>> CHUNK_SHIFT)].getInt((int) (index & CHUNK_MASK) << 2);
+	}
+
+	/*--------------------------------------------------- set -----
+	 |  Method set
+	 |
+	 |  Parameters:
+	 |      index (IN) -- a long index below the capacity.
+	 |      value (IN) -- the value to store.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void set(long index, int value) {
+		this.chunks[(int) (index >>> CHUNK_SHIFT)].putInt((int) (index & CHUNK_MASK) << 2, value);
+	}
+
+	/*--------------------------------------------------- add -----
+	 |  Method add
+	 |
+	 |  Purpose:  Appends a value, growing the native memory if needed.
+	 |
+	 |  Parameters:
+	 |      value (IN) -- the value to append.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void add(int value) {
+		if (this.size == this.capacity) {
+			grow();
+		}
+		set(this.size, value);
+		this.size++;
+	}
+
+	/*--------------------------------------------------- grow -----
+	 |  Method grow
+	 |
+	 |  Purpose:  Doubles the last chunk, copying its values, or starts a
+	 |      new chunk when the last one is already full.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void grow() {
+		int last = this.chunks.length - 1;
+		long lastSize = this.chunks[last].capacity() >>> 2;
+
+		if (lastSize < CHUNK_SIZE) {
+
+			ByteBuffer bigger = allocate(Math.min(CHUNK_SIZE, lastSize * 2));
+			ByteBuffer old = this.chunks[last].duplicate();
+			old.clear();
+			bigger.put(old);
+			bigger.clear();
+			this.chunks[last] = bigger;
+			this.capacity += (bigger.capacity() >>> 2) - lastSize;
+
+		} else {
+
+			ByteBuffer[] more = new ByteBuffer[this.chunks.length + 1];
+			System.arraycopy(this.chunks, 0, more, 0, this.chunks.length);
+			more[this.chunks.length] = allocate(1 << 16);
+			this.chunks = more;
+			this.capacity += 1 << 16;
+		}
+	}
+
+	/*--------------------------------------------------- allocate -----
+	 |  Method allocate
+	 |
+	 |  Purpose:  Allocates a direct buffer for the given number of ints,
+	 |      in the platform's byte order so reads and writes need no
+	 |      byte swapping.
+	 |
+	 |  Parameters:
+	 |      ints (IN) -- the number of ints, at most CHUNK_SIZE.
+	 |
+	 |  Returns:  The new buffer.
+	 *-------------------------------------------------------------------*/
+	private static ByteBuffer allocate(long ints) {
+		return ByteBuffer.allocateDirect((int) (ints << 2)).order(ByteOrder.nativeOrder());
+	}
+
+	/*--------------------------------------------------- sortRange -----
+	 |  Method sortRange
+	 |
+	 |  Purpose:  Sorts the values in [from, to) into ascending order in
+	 |      place. Uses quicksort with a median-of-three pivot, insertion
+	 |      sort for short ranges and heapsort once the recursion gets
+	 |      too deep, so the worst case stays O(m log m) for m values.
+	 |
+	 |  Pre-condition: 0 <= from <= to <= size.
+	 |
+	 |  Post-condition: The range is sorted; values outside it are
+	 |      untouched.
+	 |
+	 |  Parameters:
+	 |      from (IN) -- first index of the range.
+	 |      to (IN) -- one past the last index of the range.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void sortRange(long from, long to) {
+		int depthLimit = 2 * (64 - Long.numberOfLeadingZeros(Math.max(1, to - from)));
+		introSort(from, to - 1, depthLimit);
+	}
+
+	/*--------------------------------------------------- introSort -----
+	 |  Method introSort
+	 |
+	 |  Purpose:  Sorts [low, high] (inclusive). Recurses into the smaller
+	 |      partition and loops on the larger one, so the stack depth is
+	 |      O(log m).
+	 |
+	 |  Parameters:
+	 |      low (IN) -- first index.
+	 |      high (IN) -- last index.
+	 |      depthLimit (IN) -- partitions left before falling back to
+	 |          heapsort.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void introSort(long low, long high, int depthLimit) {
+
+		while (high - low + 1 > INSERTION_SORT_THRESHOLD) {
+
+			if (depthLimit-- == 0) {
+				heapSort(low, high);
+				return;
+			}
+
+			// Median of three pivot, left at high - 1
+			long mid = low + (high - low) / 2;
+			if (get(mid) < get(low)) {
+				swap(mid, low);
+			}
+			if (get(high) < get(low)) {
+				swap(high, low);
+			}
+			if (get(high) < get(mid)) {
+				swap(high, mid);
+			}
+			swap(mid, high - 1);
+			int pivot = get(high - 1);
+
+			// get(low) <= pivot <= get(high) act as sentinels
+			long left = low;
+			long right = high - 1;
+			while (true) {
+				while (get(++left) < pivot) {
+				}
+				while (get(--right) > pivot) {
+				}
+				if (left >= right) {
+					break;
+				}
+				swap(left, right);
+			}
+			swap(left, high - 1); // Put the pivot in its final place
+
+			if (left - low < high - left) {
+				introSort(low, left - 1, depthLimit);
+				low = left + 1;
+			} else {
+				introSort(left + 1, high, depthLimit);
+				high = left - 1;
+			}
+		}
+		insertionSort(low, high);
+	}
+
+	/*--------------------------------------------------- insertionSort -----
+	 |  Method insertionSort
+	 |
+	 |  Purpose:  Sorts the short range [low, high] (inclusive).
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void insertionSort(long low, long high) {
+		for (long index = low + 1; index <= high; index++) {
+			int value = get(index);
+			long at = index - 1;
+			while (at >= low && get(at) > value) {
+				set(at + 1, get(at));
+				at--;
+			}
+			set(at + 1, value);
+		}
+	}
+
+	/*--------------------------------------------------- heapSort -----
+	 |  Method heapSort
+	 |
+	 |  Purpose:  Sorts [low, high] (inclusive) with a binary max-heap.
+	 |      Only used when quicksort partitions badly.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void heapSort(long low, long high) {
+		long count = high - low + 1;
+
+		for (long parent = count / 2 - 1; parent >= 0; parent--) {
+			siftDown(low, parent, count);
+		}
+		for (long end = count - 1; end > 0; end--) {
+			swap(low, low + end);
+			siftDown(low, 0, end);
+		}
+	}
+
+	/*--------------------------------------------------- siftDown -----
+	 |  Method siftDown
+	 |
+	 |  Purpose:  Restores the max-heap property below the given node of
+	 |      the heap stored at [base, base + count).
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void siftDown(long base, long node, long count) {
+		int value = get(base + node);
+
+		while (true) {
+			long child = 2 * node + 1;
+			if (child >= count) {
+				break;
+			}
+			if (child + 1 < count && get(base + child + 1) > get(base + child)) {
+				child++;
+			}
+			if (get(base + child) <= value) {
+				break;
+			}
+			set(base + node, get(base + child));
+			node = child;
+		}
+		set(base + node, value);
+	}
+
+	/*--------------------------------------------------- swap -----
+	 |  Method swap
+	 |
+	 |  Purpose:  Exchanges the values at two indexes.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void swap(long first, long second) {
+		int temp = get(first);
+		set(first, get(second));
+		set(second, temp);
+	}
+
+}
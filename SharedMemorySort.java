@@ -0,0 +1,387 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -shared=<file>
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Sorts values another process already holds in memory,
+ |                  without a text file in between. The producer writes
+ |                  the values as int32 into a memory-mapped file behind a
+ |                  small header and marks it ready; this program maps the
+ |                  same file, sorts the values where they are and marks it
+ |                  sorted, and the producer reads the result from its own
+ |                  mapping.
+ |
+ |        Input:  A file laid out as below, every field in the platform's
+ |                  byte order (both sides run on the same machine):
+ |                    offset 0   int   MAGIC
+ |                    offset 4   int   state: WRITING, READY, SORTING,
+ |                                     SORTED or FAILED
+ |                    offset 8   long  n
+ |                    offset 16  int[n] the values
+ |                  The producer writes n and the values first and sets the
+ |                  state to READY last.
+ |
+ |       Output:  The values, sorted in place, with the state set to
+ |                  SORTED (or FAILED if the self-check fails or the sort
+ |                  stops with an error); on the console n, r, s, the
+ |                  elapsed time and the check.
+ |
+ |   Techniques:  The mapping is cut into chunks of OffHeapMatrix.CHUNK_SIZE
+ |                  ints and handed to OffHeapColumnSort as the matrix
+ |                  itself, so the values are never parsed or copied into
+ |                  the JVM; only the permutation steps 2 and 4 use a native
+ |                  scratch matrix, and they swap back, so the sorted
+ |                  values end up in the mapping. When n has no exact
+ |                  shape, the mapping is extended to r * s values, which
+ |                  grows the file, and the padding is sorted in place with
+ |                  the values; the file is cut back to its length before
+ |                  SORTED is set. The file is claimed (READY to SORTING)
+ |                  only after the memory is reserved, and every failure
+ |                  after the claim sets FAILED and exits with status 1,
+ |                  so the producer is never left waiting. The state
+ |                  is read with acquire and written with release
+ |                  semantics through a VarHandle, so the producer's values
+ |                  are visible before READY is and the sorted values
+ |                  before SORTED is.
+ |
+ |   Known Bugs:  While the padding is sorted the file is up to r * s - n
+ |                  values longer than its header says; a sort that dies
+ |                  (is killed) before SORTED or FAILED leaves it so, and
+ |                  in state SORTING.
+ |
+ *===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * --------------------------------------------------------- Class: SharedMemorySort
+ *
+ * Purpose: The consumer side of the handoff, plus publish for producers
+ * written in Java.
+ *
+ * Fields: - File file: the shared file. - MappedByteBuffer header: its first
+ * HEADER_BYTES. - OffHeapMatrix matrix: the values, mapped. - long numItems: n.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class SharedMemorySort {
+
+	final static int MAGIC = 0x43534F52; // "CSOR"; marks a shared input file
+	final static int WRITING = 0; // The producer is still writing
+	final static int READY = 1; // n and the values are written
+	final static int SORTING = 2; // This program is sorting
+	final static int SORTED = 3; // The values are sorted in place
+	final static int FAILED = 4; // The self-check failed; the values are not to be trusted
+
+	final static int STATE_OFFSET = 4; // Byte offset of the state
+	final static int COUNT_OFFSET = 8; // Byte offset of n
+	final static int HEADER_BYTES = 16; // Byte offset of the first value
+	final static long POLL_MS = 10; // Pause between looks at the state while waiting for READY
+
+	private final static VarHandle STATE = MethodHandles.byteBufferViewVarHandle(int[].class,
+			ByteOrder.nativeOrder()); // Acquire / release access to the state
+
+	private File file; // The shared file
+	private MappedByteBuffer header; // The header of the mapping
+	private OffHeapMatrix matrix; // The values and any padding, in the mapping
+	private long numItems; // n
+
+	/*--------------------------------------------------- SharedMemorySort -----
+	 |  Constructor SharedMemorySort
+	 |
+	 |  Purpose:  Maps the file's header, waits until the producer marks
+	 |      it READY and reads n. The file is not claimed yet (see sort),
+	 |      so the caller can reserve memory for it first.
+	 |
+	 |  Post-condition: If the file is not a shared input file or is
+	 |      shorter than its header says, a message is printed and the
+	 |      program terminates.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the shared file.
+	 |
+	 |  Throws: IOException if the file cannot be mapped.
+	 *-------------------------------------------------------------------*/
+	SharedMemorySort(File file) throws IOException {
+		this.file = file;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+
+			if (channel.size() < HEADER_BYTES) {
+				fail(file + " is too short to be a shared input file");
+			}
+			this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+			this.header.order(ByteOrder.nativeOrder());
+
+			if (this.header.getInt(0) != MAGIC) {
+				fail(file + " is not a shared input file");
+			}
+
+			if (state() == WRITING) {
+				System.out.println("Waiting for " + file + " to be ready");
+				while (state() == WRITING) {
+					pause();
+				}
+			}
+			if (state() != READY) {
+				fail(file + " is not ready to sort (state " + state() + ")");
+			}
+
+			this.numItems = this.header.getLong(COUNT_OFFSET);
+			if (this.numItems < 1 || channel.size() < HEADER_BYTES + this.numItems * Integer.BYTES) {
+				fail(file + " holds fewer than the " + this.numItems + " values its header gives");
+			}
+		}
+	}
+
+	/*--------------------------------------------------- getNumItems -----
+	 |  Method getNumItems
+	 |
+	 |  Returns:  The number of values shared.
+	 *-------------------------------------------------------------------*/
+	long getNumItems() {
+		return this.numItems;
+	}
+
+	/*--------------------------------------------------- sort -----
+	 |  Method sort
+	 |
+	 |  Purpose:  Claims the file, moving it from READY to SORTING with
+	 |      one compare-and-set so two sorters started on the same file
+	 |      cannot both sort it, then sorts it (see sortClaimed).
+	 |
+	 |  Post-condition: If another sorter claimed the file first, a
+	 |      message is printed and the program terminates. If the sort
+	 |      fails after the claim, the file is marked FAILED, the problem
+	 |      is printed to the error stream and the program exits with
+	 |      status 1, as for a failed check.
+	 |
+	 |  Parameters:
+	 |      verify (IN) -- true to check the result.
+	 |      out (IN) -- where to print n, r, s and the check.
+	 |
+	 |  Returns:  The seconds the sort took.
+	 *-------------------------------------------------------------------*/
+	double sort(boolean verify, PrintStream out) {
+
+		if (!STATE.compareAndSet(this.header, STATE_OFFSET, READY, SORTING)) {
+			fail(this.file + " was claimed by another sorter (state " + state() + ")");
+		}
+
+		try {
+			return sortClaimed(verify, out);
+		} catch (IOException | RuntimeException | OutOfMemoryError e) {
+			abandon(out, "Sort of " + this.file + " failed: " + e);
+			return 0;
+		}
+	}
+
+	/*--------------------------------------------------- sortClaimed -----
+	 |  Method sortClaimed
+	 |
+	 |  Purpose:  Maps the values, extended with the padding cells when
+	 |      n has no exact shape, sorts them in place with
+	 |      OffHeapColumnSort, cuts the file back to its length, checks
+	 |      the values when verify is on, and marks the file SORTED.
+	 |
+	 |  Pre-condition: The state is SORTING.
+	 |
+	 |  Parameters:
+	 |      verify (IN) -- true to check the result.
+	 |      out (IN) -- where to print n, r, s and the check.
+	 |
+	 |  Throws: IOException if the file cannot be mapped or restored.
+	 |
+	 |  Returns:  The seconds the sort took.
+	 *-------------------------------------------------------------------*/
+	private double sortClaimed(boolean verify, PrintStream out) throws IOException {
+
+		long[] shape = OffHeapColumnSort.calculateRowsCols(this.numItems);
+		long cells = shape[0] * shape[1];
+		long valuesEnd = HEADER_BYTES + this.numItems * Integer.BYTES; // Where the padding starts
+		long length; // The file's length before the padding
+		ByteBuffer overwritten; // Bytes the producer left after the values, which the padding covers
+
+		try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			length = channel.size();
+			overwritten = ByteBuffer.allocate((int) Math.max(0,
+					Math.min(length, HEADER_BYTES + cells * Integer.BYTES) - valuesEnd));
+			channel.read(overwritten, valuesEnd);
+			this.matrix = OffHeapMatrix.map(channel, HEADER_BYTES, cells); // Grows the file to r * s values
+		}
+
+		SortChecksum input = new SortChecksum();
+		if (verify) {
+			for (long index = 0; index < this.numItems; index++) {
+				input.add(this.matrix.get(index));
+			}
+		}
+
+		OffHeapColumnSort sorter = new OffHeapColumnSort(this.matrix, this.numItems);
+
+		long start = System.nanoTime();
+		sorter.sort();
+		double seconds = (System.nanoTime() - start) / ColumnSortSelection.BILLION;
+
+		if (sorter.getMatrix() != this.matrix) {
+			// An odd number of permutation steps would leave the result in the scratch matrix
+			for (long index = 0; index < this.numItems; index++) {
+				this.matrix.set(index, sorter.getMatrix().get(index));
+			}
+		}
+
+		if (cells > this.numItems) {
+			try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE)) {
+				overwritten.flip();
+				channel.write(overwritten, valuesEnd);
+				channel.truncate(length);
+			}
+		}
+
+		out.println("n = " + this.numItems);
+		out.println("r = " + sorter.getRows());
+		out.println("s = " + sorter.getCols());
+		out.println("Elapsed time = " + ColumnSortSelection.formatToThreeDecimals(seconds) + " seconds.");
+		out.println("Shared = " + this.file + ", sorted in place"
+				+ (cells > this.numItems ? " with " + (cells - this.numItems) + " values of padding" : ""));
+
+		if (verify) {
+			SortChecksum output = new SortChecksum();
+			for (long index = 0; index < this.numItems; index++) {
+				output.addInOrder(this.matrix.get(index));
+			}
+			String problem = input.compare(output);
+			if (problem != null) {
+				abandon(out, "Sort verification failed: " + problem);
+			}
+			out.println("Verified = " + output.count + " values in order, checksums match");
+		}
+
+		setState(SORTED);
+		return seconds;
+	}
+
+	/*--------------------------------------------------- abandon -----
+	 |  Method abandon
+	 |
+	 |  Purpose:  Marks a claimed file FAILED, so the producer stops
+	 |      waiting, prints the problem to the error stream and exits with
+	 |      status 1.
+	 |
+	 |  Parameters:
+	 |      out (IN) -- the console output, flushed first.
+	 |      message (IN) -- the problem.
+	 |
+	 |  Returns:  None; the program exits.
+	 *-------------------------------------------------------------------*/
+	private void abandon(PrintStream out, String message) {
+		setState(FAILED);
+		out.flush();
+		System.err.println(message);
+		System.exit(1);
+	}
+
+	/*--------------------------------------------------- publish -----
+	 |  Method publish
+	 |
+	 |  Purpose:  The producer side, for producers written in Java: creates
+	 |      the shared file, writes the values straight into its mapping
+	 |      and marks it READY.
+	 |
+	 |  Parameters:
+	 |      values (IN) -- the values.
+	 |      file (IN) -- the file to create or replace.
+	 |
+	 |  Throws: IOException if the file cannot be written.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void publish(int[] values, File file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES)
+					.order(ByteOrder.nativeOrder());
+			header.putInt(0, MAGIC);
+			STATE.setRelease(header, STATE_OFFSET, WRITING);
+			header.putLong(COUNT_OFFSET, values.length);
+
+			OffHeapMatrix matrix = OffHeapMatrix.map(channel, HEADER_BYTES, values.length);
+			for (int index = 0; index < values.length; index++) {
+				matrix.set(index, values[index]);
+			}
+
+			STATE.setRelease(header, STATE_OFFSET, READY);
+		}
+	}
+
+	/*--------------------------------------------------- state -----
+	 |  Method state
+	 |
+	 |  Returns:  The state in the header, read with acquire semantics.
+	 *-------------------------------------------------------------------*/
+	private int state() {
+		return (int) STATE.getAcquire(this.header, STATE_OFFSET);
+	}
+
+	/*--------------------------------------------------- setState -----
+	 |  Method setState
+	 |
+	 |  Purpose:  Writes the state with release semantics, so everything
+	 |      written to the mapping before is visible once it is.
+	 |
+	 |  Parameters:
+	 |      state (IN) -- the new state.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void setState(int state) {
+		STATE.setRelease(this.header, STATE_OFFSET, state);
+	}
+
+	/*--------------------------------------------------- pause -----
+	 |  Method pause
+	 |
+	 |  Purpose:  Waits POLL_MS before the next look at the state.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private static void pause() {
+		try {
+			Thread.sleep(POLL_MS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail("Interrupted while waiting for the producer");
+		}
+	}
+
+	/*--------------------------------------------------- fail -----
+	 |  Method fail
+	 |
+	 |  Purpose:  Prints a message and terminates the program.
+	 |
+	 |  Returns:  None; the program exits.
+	 *-------------------------------------------------------------------*/
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(0);
+	}
+
+}
@@ -0,0 +1,558 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -window=<N>
+ |                                       [-every=<k>] [-percentiles=50,90,99]
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Keeps the last N values of an endless stream in sorted
+ |                  order, so the minimum, maximum and any percentile of the
+ |                  window can be asked for at any time without sorting the
+ |                  window again.
+ |
+ |        Input:  The values, one at a time; each one past the first N
+ |                  pushes the oldest value out of the window.
+ |
+ |       Output:  Answers to min, max, select and percentile queries, and
+ |                  the window in sorted order.
+ |
+ |   Techniques:  The window is held the way the column sort leaves its
+ |                  matrix: sorted columns in CMO, every value of a column
+ |                  no larger than any value of the next. N picks the r x s
+ |                  shape with readFile.calculateRowsCols. A value entering
+ |                  or leaving the window is found by a binary search over
+ |                  the column maxima and then within its column, and is
+ |                  inserted or deleted by moving the rest of that column
+ |                  only: O(log N + r) per value.
+ |
+ |                  Columns drift in size as values come and go. A column
+ |                  that grows past 2r is split in two; one that shrinks
+ |                  below r / 2 is merged with its smaller neighbour and the
+ |                  pair re-dealt evenly, which is the shift of steps 6 - 8
+ |                  (sorting the window that straddles two columns) done on
+ |                  just those two. Every N updates all columns are re-dealt
+ |                  to r values each, back to the r x s shape. Columns thus
+ |                  stay between r / 2 and 2r, so there are at most about
+ |                  2s + 1 of them and memory is bounded by a small multiple
+ |                  of N.
+ |
+ |                  starts[c] is the rank of the first value of column c,
+ |                  so select(k) is a binary search over the columns plus
+ |                  one array access, O(log s), and min and max are O(1).
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * --------------------------------------------------------- Class: SlidingWindowSort
+ *
+ * Purpose: A sorted window over the last N values of a stream.
+ *
+ * Fields: - int window: N. - int[] arrivals / int oldest / int size: the
+ * values of the window in the order they came, as a ring. - int ROWS / COLS:
+ * the r x s shape for N. - int[][] columns / int[] sizes / int[] starts /
+ * int columnCount: the sorted columns, their sizes and the rank of their first
+ * values. - long added, splits, shifts, rebalances: counters for describe.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class SlidingWindowSort {
+
+	private int window; // Number of values kept (N)
+	private int[] arrivals; // The window in arrival order, as a ring
+	private int oldest; // Index in arrivals of the oldest value
+	private int size; // Values in the window, at most window
+
+	private int ROWS; // Rows of the r x s shape for window values (r)
+	private int COLS; // Columns of the r x s shape (s)
+	private int capacity; // Most values a column holds before it is split (2r)
+
+	private int[][] columns; // Sorted columns, each holding values no larger than the next
+	private int[] sizes; // Values in each column
+	private int[] starts; // Rank of the first value of each column
+	private int columnCount; // Columns in use
+
+	private long added; // Values added so far
+	private long splits; // Columns split for growing past capacity
+	private long shifts; // Neighbouring columns re-dealt for shrinking below r / 2
+	private long rebalances; // Full re-deals to the r x s shape
+
+	/*--------------------------------------------------- SlidingWindowSort -----
+	 |  Constructor SlidingWindowSort
+	 |
+	 |  Parameters:
+	 |      window (IN) -- the number of most recent values to keep, at
+	 |          least 1.
+	 *-------------------------------------------------------------------*/
+	SlidingWindowSort(int window) {
+		this.window = window;
+		this.arrivals = new int[window];
+
+		int[] shape = readFile.calculateRowsCols(window);
+		this.ROWS = shape[0];
+		this.COLS = shape[1];
+		this.capacity = 2 * this.ROWS;
+
+		int most = 2 * this.COLS + 2; // Columns hold at least r / 2 values, so there are never more
+		this.columns = new int[most][];
+		this.sizes = new int[most];
+		this.starts = new int[most];
+		this.columns[0] = new int[this.capacity + 1];
+		this.columnCount = 1;
+	}
+
+	/*--------------------------------------------------- add -----
+	 |  Method add
+	 |
+	 |  Purpose:  Adds the next value of the stream. Once the window is
+	 |      full, the oldest value leaves it first.
+	 |
+	 |  Parameters:
+	 |      value (IN) -- the value.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void add(int value) {
+
+		if (this.size == this.window) {
+			delete(this.arrivals[this.oldest]);
+			this.arrivals[this.oldest] = value;
+			this.oldest = (this.oldest + 1) % this.window;
+		} else {
+			this.arrivals[this.size++] = value;
+		}
+		insert(value);
+
+		this.added++;
+		if (this.added % this.window == 0) {
+			rebalance();
+		}
+	}
+
+	/*--------------------------------------------------- size -----
+	 |  Method size
+	 |
+	 |  Returns:  The number of values in the window.
+	 *-------------------------------------------------------------------*/
+	int size() {
+		return this.size;
+	}
+
+	/*--------------------------------------------------- getAdded -----
+	 |  Method getAdded
+	 |
+	 |  Returns:  The number of values added so far.
+	 *-------------------------------------------------------------------*/
+	long getAdded() {
+		return this.added;
+	}
+
+	/*--------------------------------------------------- min -----
+	 |  Method min
+	 |
+	 |  Pre-condition: The window is not empty.
+	 |
+	 |  Returns:  The smallest value in the window.
+	 *-------------------------------------------------------------------*/
+	int min() {
+		return this.columns[0][0];
+	}
+
+	/*--------------------------------------------------- max -----
+	 |  Method max
+	 |
+	 |  Pre-condition: The window is not empty.
+	 |
+	 |  Returns:  The largest value in the window.
+	 *-------------------------------------------------------------------*/
+	int max() {
+		int last = this.columnCount - 1;
+		return this.columns[last][this.sizes[last] - 1];
+	}
+
+	/*--------------------------------------------------- select -----
+	 |  Method select
+	 |
+	 |  Purpose:  Finds the value of a given rank: the last column
+	 |      starting at or before it, then the offset within that column.
+	 |
+	 |  Parameters:
+	 |      rank (IN) -- 0 for the smallest value, size() - 1 for the
+	 |          largest.
+	 |
+	 |  Returns:  The value with that rank.
+	 *-------------------------------------------------------------------*/
+	int select(int rank) {
+
+		int low = 0;
+		int high = this.columnCount - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (this.starts[middle] <= rank) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return this.columns[low][rank - this.starts[low]];
+	}
+
+	/*--------------------------------------------------- percentile -----
+	 |  Method percentile
+	 |
+	 |  Purpose:  Finds a percentile of the window by the nearest-rank
+	 |      method: the smallest value at least percent of the window is no
+	 |      larger than.
+	 |
+	 |  Pre-condition: The window is not empty.
+	 |
+	 |  Parameters:
+	 |      percent (IN) -- between 0 and 100.
+	 |
+	 |  Returns:  The value.
+	 *-------------------------------------------------------------------*/
+	int percentile(double percent) {
+		int rank = (int) Math.ceil(percent / 100.0 * this.size) - 1;
+		return select(Math.max(0, Math.min(this.size - 1, rank)));
+	}
+
+	/*--------------------------------------------------- forEachSorted -----
+	 |  Method forEachSorted
+	 |
+	 |  Purpose:  Hands every value of the window to action in ascending
+	 |      order, reading the columns in CMO.
+	 |
+	 |  Parameters:
+	 |      action (IN) -- what to do with each value.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void forEachSorted(IntConsumer action) {
+		for (int col = 0; col < this.columnCount; col++) {
+			for (int row = 0; row < this.sizes[col]; row++) {
+				action.accept(this.columns[col][row]);
+			}
+		}
+	}
+
+	/*--------------------------------------------------- forEachArrival -----
+	 |  Method forEachArrival
+	 |
+	 |  Purpose:  Hands every value of the window to action in the order
+	 |      the values came, for checking the sorted window against.
+	 |
+	 |  Parameters:
+	 |      action (IN) -- what to do with each value.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void forEachArrival(IntConsumer action) {
+		for (int index = 0; index < this.size; index++) {
+			action.accept(this.arrivals[(this.oldest + index) % this.window]);
+		}
+	}
+
+	/*--------------------------------------------------- describe -----
+	 |  Method describe
+	 |
+	 |  Returns:  A summary line such as "Window = 1000 of 5000 values in
+	 |      11 columns (r = 100, s = 10), 3 splits, 2 shifts, 5
+	 |      rebalances".
+	 *-------------------------------------------------------------------*/
+	String describe() {
+		return "Window = " + this.size + " of " + this.added + " values in " + this.columnCount + " columns (r = "
+				+ this.ROWS + ", s = " + this.COLS + "), " + this.splits + " splits, " + this.shifts + " shifts, "
+				+ this.rebalances + " rebalances";
+	}
+
+	/*--------------------------------------------------- insert -----
+	 |  Method insert
+	 |
+	 |  Purpose:  Puts a value into the column whose range covers it,
+	 |      after any equal values, and splits the column if it is now
+	 |      over capacity.
+	 |
+	 |  Parameters:
+	 |      value (IN) -- the value.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void insert(int value) {
+
+		int col = columnFor(value);
+		int[] column = this.columns[col];
+		int row = upperBound(column, this.sizes[col], value);
+
+		System.arraycopy(column, row, column, row + 1, this.sizes[col] - row);
+		column[row] = value;
+		this.sizes[col]++;
+		for (int after = col + 1; after < this.columnCount; after++) {
+			this.starts[after]++;
+		}
+
+		if (this.sizes[col] > this.capacity) {
+			split(col);
+		}
+	}
+
+	/*--------------------------------------------------- delete -----
+	 |  Method delete
+	 |
+	 |  Purpose:  Takes one copy of a value out of its column, and shifts
+	 |      the column with a neighbour if it is now below r / 2.
+	 |
+	 |  Pre-condition: The value is in the window.
+	 |
+	 |  Parameters:
+	 |      value (IN) -- the value.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void delete(int value) {
+
+		int col = columnFor(value);
+		int[] column = this.columns[col];
+		int row = upperBound(column, this.sizes[col], value - 1L);
+
+		if (row == this.sizes[col] || column[row] != value) {
+			throw new IllegalStateException("Value " + value + " is not in the window");
+		}
+
+		System.arraycopy(column, row + 1, column, row, this.sizes[col] - row - 1);
+		this.sizes[col]--;
+		for (int after = col + 1; after < this.columnCount; after++) {
+			this.starts[after]--;
+		}
+
+		if (this.sizes[col] < this.ROWS / 2 && this.columnCount > 1) {
+			shift(col);
+		}
+	}
+
+	/*--------------------------------------------------- columnFor -----
+	 |  Method columnFor
+	 |
+	 |  Purpose:  Finds the first column whose largest value is at least
+	 |      the given one. Every column but the last of an empty window
+	 |      holds values, so the maxima are in ascending order.
+	 |
+	 |  Parameters:
+	 |      value (IN) -- the value.
+	 |
+	 |  Returns:  That column, or the last column if there is none.
+	 *-------------------------------------------------------------------*/
+	private int columnFor(int value) {
+
+		int low = 0;
+		int high = this.columnCount - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.columns[middle][this.sizes[middle] - 1] >= value) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+
+	/*--------------------------------------------------- split -----
+	 |  Method split
+	 |
+	 |  Purpose:  Moves the upper half of an overfull column into a new
+	 |      column right after it.
+	 |
+	 |  Parameters:
+	 |      col (IN) -- the column.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void split(int col) {
+
+		if (this.columnCount == this.columns.length) {
+			rebalance(); // Cannot happen while columns hold at least r / 2 values, but stay safe
+			return;
+		}
+
+		int half = this.sizes[col] / 2;
+		int[] upper = new int[this.capacity + 1];
+		System.arraycopy(this.columns[col], half, upper, 0, this.sizes[col] - half);
+
+		openColumn(col + 1);
+		this.columns[col + 1] = upper;
+		this.sizes[col + 1] = this.sizes[col] - half;
+		this.starts[col + 1] = this.starts[col] + half;
+		this.sizes[col] = half;
+		this.splits++;
+	}
+
+	/*--------------------------------------------------- shift -----
+	 |  Method shift
+	 |
+	 |  Purpose:  Re-deals a short column together with its smaller
+	 |      neighbour. The two are adjacent in CMO, so their values,
+	 |      one after the other, are already sorted. If they fit in one
+	 |      column they become one; otherwise they are split evenly.
+	 |
+	 |  Parameters:
+	 |      col (IN) -- the short column.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void shift(int col) {
+
+		int left = col == 0 || (col + 1 < this.columnCount && this.sizes[col + 1] < this.sizes[col - 1]) ? col
+				: col - 1;
+		int right = left + 1;
+		int total = this.sizes[left] + this.sizes[right];
+
+		int[] merged = new int[total];
+		System.arraycopy(this.columns[left], 0, merged, 0, this.sizes[left]);
+		System.arraycopy(this.columns[right], 0, merged, this.sizes[left], this.sizes[right]);
+
+		if (total <= this.capacity) {
+			System.arraycopy(merged, 0, this.columns[left], 0, total);
+			this.sizes[left] = total;
+			closeColumn(right);
+		} else {
+			int half = total / 2;
+			System.arraycopy(merged, 0, this.columns[left], 0, half);
+			System.arraycopy(merged, half, this.columns[right], 0, total - half);
+			this.sizes[left] = half;
+			this.sizes[right] = total - half;
+			this.starts[right] = this.starts[left] + half;
+		}
+		this.shifts++;
+	}
+
+	/*--------------------------------------------------- rebalance -----
+	 |  Method rebalance
+	 |
+	 |  Purpose:  Re-deals the whole window into columns of r values, the
+	 |      r x s shape the column sort would give it. Runs every N
+	 |      updates, so its O(N) copy costs O(1) per update.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void rebalance() {
+
+		int[] sorted = new int[this.size];
+		int[] next = { 0 };
+		forEachSorted(value -> sorted[next[0]++] = value);
+
+		int count = Math.max(1, (this.size + this.ROWS - 1) / this.ROWS);
+		for (int col = 0; col < count; col++) {
+			if (this.columns[col] == null) {
+				this.columns[col] = new int[this.capacity + 1];
+			}
+			int from = col * this.ROWS;
+			int length = Math.min(this.ROWS, this.size - from);
+			System.arraycopy(sorted, from, this.columns[col], 0, Math.max(0, length));
+			this.sizes[col] = Math.max(0, length);
+			this.starts[col] = from;
+		}
+		for (int col = count; col < this.columnCount; col++) {
+			this.columns[col] = null;
+		}
+		this.columnCount = count;
+		this.rebalances++;
+	}
+
+	/*--------------------------------------------------- openColumn -----
+	 |  Method openColumn
+	 |
+	 |  Purpose:  Moves the columns from col on one place right, leaving
+	 |      col free.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void openColumn(int col) {
+		int moved = this.columnCount - col;
+		System.arraycopy(this.columns, col, this.columns, col + 1, moved);
+		System.arraycopy(this.sizes, col, this.sizes, col + 1, moved);
+		System.arraycopy(this.starts, col, this.starts, col + 1, moved);
+		this.columnCount++;
+	}
+
+	/*--------------------------------------------------- closeColumn -----
+	 |  Method closeColumn
+	 |
+	 |  Purpose:  Removes an emptied column, moving the ones after it one
+	 |      place left.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private void closeColumn(int col) {
+		int moved = this.columnCount - col - 1;
+		System.arraycopy(this.columns, col + 1, this.columns, col, moved);
+		System.arraycopy(this.sizes, col + 1, this.sizes, col, moved);
+		System.arraycopy(this.starts, col + 1, this.starts, col, moved);
+		this.columnCount--;
+		this.columns[this.columnCount] = null;
+	}
+
+	/*--------------------------------------------------- upperBound -----
+	 |  Method upperBound
+	 |
+	 |  Parameters:
+	 |      column (IN) -- a sorted column.
+	 |      size (IN) -- the values in use.
+	 |      value (IN) -- the value to look for.
+	 |
+	 |  Returns:  The index of the first value greater than value, or
+	 |      size if there is none.
+	 *-------------------------------------------------------------------*/
+	private static int upperBound(int[] column, int size, long value) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (column[middle] <= value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/*--------------------------------------------------- parsePercentiles -----
+	 |  Method parsePercentiles
+	 |
+	 |  Purpose:  Reads a comma separated list of percentiles such as
+	 |      "50,90,99.9".
+	 |
+	 |  Post-condition: If one is not a number from 0 to 100, a message is
+	 |      printed and the program terminates.
+	 |
+	 |  Parameters:
+	 |      list (IN) -- the list.
+	 |
+	 |  Returns:  The percentiles, in the order given.
+	 *-------------------------------------------------------------------*/
+	static double[] parsePercentiles(String list) {
+
+		double[] percents = new double[0];
+		try {
+			percents = Arrays.stream(list.split(",")).mapToDouble(Double::parseDouble).toArray();
+		} catch (NumberFormatException e) {
+			percents = new double[] { -1 };
+		}
+		for (double percent : percents) {
+			if (!(percent >= 0 && percent <= 100)) {
+				System.out.println("-percentiles needs numbers from 0 to 100");
+				System.exit(0);
+			}
+		}
+		return percents;
+	}
+
+}
@@ -0,0 +1,155 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  A cheap check that a sort neither lost, invented nor
+ |                  misordered any value. The loaders add every value they
+ |                  read to one SortChecksum, and the engines add every value
+ |                  of their final, column-major write to another, which also
+ |                  checks that each value is at least the one before it.
+ |                  The two must then agree on the count and on two checksums
+ |                  that do not depend on the order the values were added in.
+ |
+ |   Techniques:  The checksums are the plain 64-bit sum of the values and
+ |                  the 64-bit sum of a mixed (SplitMix64 finalizer) copy of
+ |                  each value. Addition makes both independent of order but
+ |                  sensitive to how often each value occurs, and the mixed
+ |                  sum makes it very unlikely that a lost value and a
+ |                  changed one cancel out. Everything is O(1) per value, so
+ |                  the check costs one extra add and compare per value.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+/**
+ * --------------------------------------------------------- Class: SortChecksum
+ *
+ * Purpose: Accumulates the count, the order and two order-independent
+ * checksums of a stream of values, and compares an input stream with an
+ * output stream.
+ *
+ * Fields: - long count: values added. - long sum: sum of the values. - long
+ * hash: sum of the mixed values. - long firstOutOfOrder: position of the first
+ * value smaller than the one before it, or -1. - int previous: the last value
+ * added in order.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class SortChecksum {
+
+	long count; // Values added
+	long sum; // Sum of the values
+	long hash; // Sum of the mixed values
+
+	private long firstOutOfOrder = -1; // Position of the first out of order value, or -1
+	private int previous; // Last value given to addInOrder
+
+	/*--------------------------------------------------- add -----
+	 |  Method add
+	 |
+	 |  Purpose:  Adds a value whose position does not matter, such as a
+	 |      value being loaded.
+	 |
+	 |  Parameters:
+	 |      value (IN) -- the value.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void add(int value) {
+		this.count++;
+		this.sum += value;
+		this.hash += mix(value);
+	}
+
+	/*--------------------------------------------------- addInOrder -----
+	 |  Method addInOrder
+	 |
+	 |  Purpose:  Adds the next value of a sorted output, noting the first
+	 |      place where it is smaller than the value before it.
+	 |
+	 |  Parameters:
+	 |      value (IN) -- the value.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void addInOrder(int value) {
+		if (this.count > 0 && value < this.previous && this.firstOutOfOrder < 0) {
+			this.firstOutOfOrder = this.count;
+		}
+		this.previous = value;
+		add(value);
+	}
+
+	/*--------------------------------------------------- compare -----
+	 |  Method compare
+	 |
+	 |  Purpose:  Compares this input checksum with the checksum of the
+	 |      sorted output.
+	 |
+	 |  Parameters:
+	 |      output (IN) -- the checksum of the output, built with
+	 |          addInOrder.
+	 |
+	 |  Returns:  null if the output is in order and holds the same values
+	 |      as the input, otherwise a description of the problem.
+	 *-------------------------------------------------------------------*/
+	String compare(SortChecksum output) {
+		if (output.firstOutOfOrder >= 0) {
+			return "output value " + output.firstOutOfOrder + " is smaller than the one before it";
+		}
+		if (output.count != this.count) {
+			return "read " + this.count + " values but wrote " + output.count;
+		}
+		if (output.sum != this.sum || output.hash != this.hash) {
+			return "the values written are not the values read";
+		}
+		return null;
+	}
+
+	/*--------------------------------------------------- verify -----
+	 |  Method verify
+	 |
+	 |  Purpose:  Compares this input checksum with the output checksum
+	 |      and, if they disagree, fails loudly: the problem is printed to
+	 |      the error stream and the program exits with status 1, so a
+	 |      wrong result can never pass for a correct one.
+	 |
+	 |  Parameters:
+	 |      output (IN) -- the checksum of the output.
+	 |
+	 |  Returns:  None; returns only if the output is correct.
+	 *-------------------------------------------------------------------*/
+	void verify(SortChecksum output) {
+		String problem = compare(output);
+		if (problem != null) {
+			System.out.flush();
+			System.err.println("Sort verification failed: " + problem);
+			System.exit(1);
+		}
+	}
+
+	/*--------------------------------------------------- mix -----
+	 |  Method mix
+	 |
+	 |  Purpose:  Spreads the bits of a value over a long with the
+	 |      SplitMix64 finalizer.
+	 |
+	 |  Parameters:
+	 |      value (IN) -- the value.
+	 |
+	 |  Returns:  The mixed value.
+	 *-------------------------------------------------------------------*/
+	static long mix(int value) {
+		long z = value * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}
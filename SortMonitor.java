@@ -0,0 +1,551 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -metrics=<port>
+ |                                  java -XX:StartFlightRecording=filename=sort.jfr
+ |                                       ColumnSortSelection
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Makes a running sort observable. Every load, column sort
+ |                  step and output phase is recorded as a Java Flight
+ |                  Recorder event, and the running jobs' progress plus
+ |                  counters summed over every job of the run are kept here
+ |                  for an optional local HTTP endpoint.
+ |
+ |        Input:  Calls from the engines as they load, sort and print.
+ |
+ |       Output:  JFR events ColumnSort.Load, ColumnSort.Step and
+ |                  ColumnSort.Output (in the "Column Sort" category), each
+ |                  carrying the engine, n, r, s, the bytes moved and the
+ |                  kernel. With -metrics=<port>, http://127.0.0.1:<port>/
+ |                  answers with the progress and counters in the Prometheus
+ |                  text format.
+ |
+ |   Techniques:  The events are only built into the recording when JFR is
+ |                  on; otherwise commit is a no-op the JIT removes. The
+ |                  progress is held in atomics, so sorting threads update it
+ |                  without locks and the endpoint reads it without stopping
+ |                  them. Each thread keeps its own job, so two sorts run
+ |                  at once (as -join does) never step each other's jobs;
+ |                  work handed to other threads carries its job along (see
+ |                  job and columnDone(Job)). The endpoint only listens on the loopback address
+ |                  and its thread is a daemon, so it never keeps the program
+ |                  running once the sort is done.
+ |
+ |   Known Bugs:  While two jobs run at once, the endpoint shows the one
+ |                  begun last; the totals cover both.
+ |
+ *===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * --------------------------------------------------------- Class: SortMonitor
+ *
+ * Purpose: Records the JFR events and progress of the sort jobs of this run.
+ * An engine calls beginJob once it knows its shape, wraps each of its steps in
+ * step, and reports its load and output with load and output.
+ *
+ * Fields: - each thread's job in progress (engine, n, r, s, step, columns
+ * done), the jobs running and the counters of every job so far, all static since one program run is one
+ * process. - HttpServer server: the endpoint, or null.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class SortMonitor {
+
+	final static String CATEGORY = "Column Sort"; // JFR category of the events
+
+	private static final ThreadLocal<Job> current = ThreadLocal.withInitial(SortMonitor::idle); // Each thread's innermost job in progress, or its last one
+	private static final ConcurrentLinkedDeque<Job> running = new ConcurrentLinkedDeque<Job>(); // Jobs begun and not ended, oldest first
+	private static final AtomicReference<Job> last = new AtomicReference<Job>(idle()); // Job begun last, shown once none runs
+
+	private static final AtomicLong jobsStarted = new AtomicLong(); // Counters over every job of the run
+	private static final AtomicLong jobsFinished = new AtomicLong();
+	private static final AtomicLong stepsFinished = new AtomicLong();
+	private static final AtomicLong columnsSorted = new AtomicLong();
+	private static final AtomicLong piecesSorted = new AtomicLong();
+	private static final AtomicLong rangesStolen = new AtomicLong();
+	private static final AtomicLong bytesMoved = new AtomicLong();
+	private static final AtomicLong bytesLoaded = new AtomicLong();
+	private static final AtomicLong bytesOutput = new AtomicLong();
+	private static final AtomicLong stepNanos = new AtomicLong();
+
+	private static HttpServer server; // The -metrics endpoint, or null
+
+	/**
+	 * A sort job and its progress. Jobs nest on one thread: the sample sort
+	 * runs a column sort on its sample, and the outer job carries on when the
+	 * inner one ends. Jobs on different threads are independent.
+	 */
+	static class Job {
+		final String engine; // Such as "column"
+		final long n; // Values sorted
+		final long rows; // r, or 0 if the engine has no shape
+		final long cols; // s, or 0 if the engine has no shape
+		final int steps; // Steps the job runs
+		final Job parent; // The job this one runs inside, or null
+		volatile boolean finished; // true once endJob has been called
+		volatile int step; // Step in progress, 0 before the first
+		volatile int stepColumns; // Columns the step in progress works on
+		final AtomicLong columnsDone = new AtomicLong(); // Columns of the step in progress finished
+
+		Job(String engine, long n, long rows, long cols, int steps, Job parent) {
+			this.engine = engine;
+			this.n = n;
+			this.rows = rows;
+			this.cols = cols;
+			this.steps = steps;
+			this.parent = parent;
+		}
+	}
+
+	/**
+	 * Fields shared by the three events.
+	 */
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static abstract class SortEvent extends Event {
+		@Label("Engine")
+		String engine;
+
+		@Label("Values")
+		long n;
+
+		@Label("Rows")
+		long r;
+
+		@Label("Columns")
+		long s;
+
+		@Label("Bytes Moved")
+		@DataAmount
+		long bytesMoved;
+
+		@Label("Kernel")
+		String kernel;
+	}
+
+	/**
+	 * One column sort step.
+	 */
+	@Name("ColumnSort.Step")
+	@Label("Sort Step")
+	@Description("One step of a sort job; bytes moved counts 4 bytes per value the step writes")
+	static class StepEvent extends SortEvent {
+		@Label("Step")
+		int step;
+	}
+
+	/**
+	 * Reading the input.
+	 */
+	@Name("ColumnSort.Load")
+	@Label("Load")
+	@Description("Reading the input; bytes moved is the size of the file")
+	static class LoadEvent extends SortEvent {
+		@Label("File")
+		String file;
+	}
+
+	/**
+	 * Writing the sorted values.
+	 */
+	@Name("ColumnSort.Output")
+	@Label("Output")
+	@Description("Printing the sorted values; bytes moved counts the characters written")
+	static class OutputEvent extends SortEvent {
+	}
+
+	/**
+	 * One phase of work, run by step.
+	 */
+	interface Phase {
+		void run();
+	}
+
+	/*--------------------------------------------------- serve -----
+	 |  Method serve
+	 |
+	 |  Purpose:  Starts the -metrics endpoint on the loopback address.
+	 |      Any path answers with the output of metrics().
+	 |
+	 |  Post-condition: If the port cannot be bound, a message is printed
+	 |      and the program terminates.
+	 |
+	 |  Parameters:
+	 |      port (IN) -- the TCP port, or 0 for any free one.
+	 |
+	 |  Returns:  The port the endpoint listens on.
+	 *-------------------------------------------------------------------*/
+	static int serve(int port) {
+
+		try {
+			server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println("Could not open the metrics port " + port + ": " + e.getMessage());
+			System.exit(0);
+		}
+		server.createContext("/", SortMonitor::answer);
+
+		// The dispatcher thread takes its daemon status from the thread that
+		// starts the server, so start it from a daemon thread
+		Thread starter = new Thread(server::start, "metrics-start");
+		starter.setDaemon(true);
+		starter.start();
+		try {
+			starter.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return server.getAddress().getPort();
+	}
+
+	/*--------------------------------------------------- answer -----
+	 |  Method answer
+	 |
+	 |  Purpose:  Sends metrics() to an HTTP client.
+	 |
+	 |  Parameters:
+	 |      exchange (IN) -- the request.
+	 |
+	 |  Throws: IOException if the client goes away.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private static void answer(HttpExchange exchange) throws IOException {
+
+		byte[] body = metrics().getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/*--------------------------------------------------- metrics -----
+	 |  Method metrics
+	 |
+	 |  Purpose:  Describes the job in progress begun last (or the last
+	 |      job, once none runs), the counters of the
+	 |      run and the memory reservations (see MemoryGovernor), one
+	 |      "columnsort_<name> <value>" line each.
+	 |
+	 |  Returns:  The text.
+	 *-------------------------------------------------------------------*/
+	static String metrics() {
+
+		StringBuilder text = new StringBuilder();
+		Job job = running.peekLast();
+		if (job == null) {
+			job = last.get();
+		}
+
+		text.append("# Job in progress\n");
+		text.append("columnsort_job_info{engine=\"").append(job.engine).append("\"} 1\n");
+		text.append("columnsort_job_values ").append(job.n).append('\n');
+		text.append("columnsort_job_rows ").append(job.rows).append('\n');
+		text.append("columnsort_job_columns ").append(job.cols).append('\n');
+		text.append("columnsort_job_steps ").append(job.steps).append('\n');
+		text.append("columnsort_job_step ").append(job.step).append('\n');
+		text.append("columnsort_job_step_columns ").append(job.stepColumns).append('\n');
+		text.append("columnsort_job_step_columns_done ").append(job.columnsDone.get()).append('\n');
+
+		text.append("# Totals of the run\n");
+		text.append("columnsort_jobs_started_total ").append(jobsStarted.get()).append('\n');
+		text.append("columnsort_jobs_finished_total ").append(jobsFinished.get()).append('\n');
+		text.append("columnsort_steps_finished_total ").append(stepsFinished.get()).append('\n');
+		text.append("columnsort_columns_sorted_total ").append(columnsSorted.get()).append('\n');
+		text.append("columnsort_pieces_sorted_total ").append(piecesSorted.get()).append('\n');
+		text.append("columnsort_ranges_stolen_total ").append(rangesStolen.get()).append('\n');
+		text.append("columnsort_step_seconds_total ")
+				.append(ColumnSortSelection.formatToThreeDecimals(stepNanos.get() / ColumnSortSelection.BILLION))
+				.append('\n');
+		text.append("columnsort_bytes_moved_total ").append(bytesMoved.get()).append('\n');
+		text.append("columnsort_bytes_loaded_total ").append(bytesLoaded.get()).append('\n');
+		text.append("columnsort_bytes_output_total ").append(bytesOutput.get()).append('\n');
+
+		text.append(MemoryGovernor.metrics());
+
+		return text.toString();
+	}
+
+	/*--------------------------------------------------- idle -----
+	 |  Method idle
+	 |
+	 |  Returns:  The finished, empty job shown before the first one.
+	 *-------------------------------------------------------------------*/
+	private static Job idle() {
+		Job none = new Job("none", 0, 0, 0, 0, null);
+		none.finished = true;
+		return none;
+	}
+
+	/*--------------------------------------------------- beginJob -----
+	 |  Method beginJob
+	 |
+	 |  Purpose:  Starts tracking a sort job on the calling thread, inside
+	 |      the thread's current one if a job is already running there.
+	 |
+	 |  Parameters:
+	 |      name (IN) -- the engine, such as "column".
+	 |      values (IN) -- n.
+	 |      r (IN) -- the rows of the shape, or 0 if it has none.
+	 |      s (IN) -- the columns of the shape, or 0 if it has none.
+	 |      stepCount (IN) -- the steps the job will run.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void beginJob(String name, long values, long r, long s, int stepCount) {
+		Job parent = current.get();
+		Job job = new Job(name, values, r, s, stepCount, parent.finished ? null : parent);
+		current.set(job);
+		running.add(job);
+		last.set(job);
+		jobsStarted.incrementAndGet();
+	}
+
+	/*--------------------------------------------------- endJob -----
+	 |  Method endJob
+	 |
+	 |  Purpose:  Marks the calling thread's current job finished. The job
+	 |      it ran inside, if any, becomes current again; otherwise it stays
+	 |      the thread's job, for its output.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void endJob() {
+		Job job = current.get();
+		job.finished = true;
+		running.remove(job);
+		if (job.parent != null) {
+			current.set(job.parent);
+		}
+		jobsFinished.incrementAndGet();
+	}
+
+	/*--------------------------------------------------- step -----
+	 |  Method step
+	 |
+	 |  Purpose:  Runs one step of the calling thread's current job,
+	 |      publishing it as the step in progress and recording a
+	 |      ColumnSort.Step event for it. Column kernels call columnDone as
+	 |      they go; when the step ends all of its columns count as done.
+	 |
+	 |  Parameters:
+	 |      number (IN) -- the step, from 1.
+	 |      kernel (IN) -- what the step does, such as "library" or
+	 |          "transpose".
+	 |      columns (IN) -- the columns the step works on.
+	 |      values (IN) -- the values the step writes.
+	 |      work (IN) -- the step itself.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void step(int number, String kernel, int columns, long values, Phase work) {
+
+		StepEvent event = new StepEvent();
+		event.begin();
+		long start = System.nanoTime();
+
+		Job job = current.get();
+		job.columnsDone.set(0);
+		job.stepColumns = columns;
+		job.step = number;
+
+		work.run();
+
+		job.columnsDone.set(columns);
+		stepNanos.addAndGet(System.nanoTime() - start);
+		stepsFinished.incrementAndGet();
+		bytesMoved.addAndGet(values * Integer.BYTES);
+
+		event.end();
+		if (event.shouldCommit()) {
+			fill(event, job, values * Integer.BYTES, kernel);
+			event.step = number;
+			event.commit();
+		}
+	}
+
+	/*--------------------------------------------------- job -----
+	 |  Method job
+	 |
+	 |  Purpose:  Hands the calling thread's current job to work it passes
+	 |      to other threads, which report to it with columnDone(Job).
+	 |
+	 |  Returns:  The job.
+	 *-------------------------------------------------------------------*/
+	static Job job() {
+		return current.get();
+	}
+
+	/*--------------------------------------------------- columnDone -----
+	 |  Method columnDone
+	 |
+	 |  Purpose:  Counts one finished column of the step in progress on
+	 |      the calling thread's job.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void columnDone() {
+		columnDone(current.get());
+	}
+
+	/*--------------------------------------------------- columnDone -----
+	 |  Method columnDone
+	 |
+	 |  Purpose:  Counts one finished column of the step in progress on
+	 |      job. Safe to call from several threads at once.
+	 |
+	 |  Parameters:
+	 |      job (IN) -- the job, from job() on the thread running the step.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void columnDone(Job job) {
+		job.columnsDone.incrementAndGet();
+		columnsSorted.incrementAndGet();
+	}
+
+	/*--------------------------------------------------- pieceDone -----
+	 |  Method pieceDone
+	 |
+	 |  Purpose:  Counts one piece sorted by ColumnScheduler.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void pieceDone() {
+		piecesSorted.incrementAndGet();
+	}
+
+	/*--------------------------------------------------- stolen -----
+	 |  Method stolen
+	 |
+	 |  Purpose:  Counts one range of pieces stolen by ColumnScheduler.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void stolen() {
+		rangesStolen.incrementAndGet();
+	}
+
+	/*--------------------------------------------------- beginPhase -----
+	 |  Method beginPhase
+	 |
+	 |  Purpose:  Starts timing a load or output phase.
+	 |
+	 |  Parameters:
+	 |      event (IN) -- a new LoadEvent or OutputEvent.
+	 |
+	 |  Returns:  The event, to hand to load or output at the end.
+	 *-------------------------------------------------------------------*/
+	static <E extends SortEvent> E beginPhase(E event) {
+		event.begin();
+		return event;
+	}
+
+	/*--------------------------------------------------- load -----
+	 |  Method load
+	 |
+	 |  Purpose:  Ends a ColumnSort.Load event for reading a file. The
+	 |      engine, n, r and s are those of the loader, since no job has
+	 |      begun yet.
+	 |
+	 |  Parameters:
+	 |      event (IN) -- the event from beginPhase.
+	 |      loader (IN) -- the loader, such as "text".
+	 |      file (IN) -- the file read.
+	 |      values (IN) -- the values read.
+	 |      r (IN) -- the rows of the shape built, or 0.
+	 |      s (IN) -- the columns of the shape built, or 0.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void load(LoadEvent event, String loader, File file, long values, long r, long s) {
+
+		bytesLoaded.addAndGet(file.length());
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.engine = loader;
+			event.n = values;
+			event.r = r;
+			event.s = s;
+			event.bytesMoved = file.length();
+			event.kernel = loader;
+			event.file = file.getPath();
+			event.commit();
+		}
+	}
+
+	/*--------------------------------------------------- output -----
+	 |  Method output
+	 |
+	 |  Purpose:  Ends a ColumnSort.Output event for printing the sorted
+	 |      values of the calling thread's last job.
+	 |
+	 |  Parameters:
+	 |      event (IN) -- the event from beginPhase.
+	 |      bytes (IN) -- the characters written.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void output(OutputEvent event, long bytes) {
+
+		bytesOutput.addAndGet(bytes);
+
+		event.end();
+		if (event.shouldCommit()) {
+			fill(event, current.get(), bytes, "println");
+			event.commit();
+		}
+	}
+
+	/*--------------------------------------------------- fill -----
+	 |  Method fill
+	 |
+	 |  Purpose:  Copies a job's engine and shape into an event.
+	 |
+	 |  Parameters:
+	 |      event (OUT) -- the event.
+	 |      job (IN) -- the job.
+	 |      bytes (IN) -- the bytes moved.
+	 |      kernel (IN) -- the kernel.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private static void fill(SortEvent event, Job job, long bytes, String kernel) {
+		event.engine = job.engine;
+		event.n = job.n;
+		event.r = job.rows;
+		event.s = job.cols;
+		event.bytesMoved = bytes;
+		event.kernel = kernel;
+	}
+
+}
@@ -0,0 +1,253 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: ./build.sh
+ |                             Run: java -cp build/columnsort.jar StartupBenchmark
+ |                                       [-jar=build/columnsort.jar]
+ |                                       [-archive=build/columnsort.jsa]
+ |                                       [-input=TestCase1.txt] [-runs=10]
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Measures how long the packaged program takes to answer
+ |                  for a small input, where starting the JVM and loading
+ |                  classes cost more than the sort. Every run is a new JVM
+ |                  started on the jar, given the input file name on
+ |                  standard input, in three setups:
+ |                    no CDS     - -Xshare:off, every class loaded from its
+ |                                 jar or module
+ |                    JDK CDS    - the default: the JDK's own classes come
+ |                                 from its base archive
+ |                    AppCDS     - the archive build.sh made, which adds
+ |                                 this program's classes
+ |
+ |        Input:  Options only; the jar and archive come from build.sh.
+ |
+ |       Output:  One line per setup with the min, median and max time to
+ |                  first output (the "n = " line, the first thing printed
+ |                  after the sort) and to exit, then the speedup of each
+ |                  setup over no CDS.
+ |
+ |   Techniques:  The setups take turns run by run, so a change in machine
+ |                  load affects all three alike, after one untimed run of
+ |                  each to warm the file cache. AppCDS runs use
+ |                  -Xshare:on, so an archive that does not match the jar
+ |                  fails the run instead of silently timing the JDK CDS
+ |                  setup again.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * --------------------------------------------------------- Class: StartupBenchmark
+ *
+ * Purpose: Times fresh JVMs running the jar, with and without class data
+ * sharing.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+public class StartupBenchmark {
+
+	final static String DEFAULT_JAR = "build/columnsort.jar"; // Jar built by build.sh
+	final static String DEFAULT_ARCHIVE = "build/columnsort.jsa"; // AppCDS archive built by build.sh
+	final static String DEFAULT_INPUT = "TestCase1.txt"; // Small input, so startup dominates
+	final static int DEFAULT_RUNS = 10; // Timed runs per setup
+	final static String FIRST_OUTPUT = "n = "; // Start of the first line printed after the sort
+
+	final static String[] SETUPS = { "no CDS", "JDK CDS", "AppCDS" }; // Compared setups, baseline first
+
+	/*--------------------------------------------------- main -----
+	 |  Method main
+	 |
+	 |  Purpose:  Parses the options, runs every setup in turn and prints
+	 |      the summary.
+	 |
+	 |  Parameters:
+	 |      args (IN) -- the options listed in the header.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public static void main(String[] args) {
+
+		File jar = new File(option(args, "-jar=", DEFAULT_JAR));
+		File archive = new File(option(args, "-archive=", DEFAULT_ARCHIVE));
+		String input = option(args, "-input=", DEFAULT_INPUT);
+		int runs = 0;
+
+		try {
+			runs = Integer.parseInt(option(args, "-runs=", "" + DEFAULT_RUNS));
+		} catch (NumberFormatException e) {
+			fail("-runs must be an integer");
+		}
+		if (runs < 1) {
+			fail("-runs must be at least 1");
+		}
+		if (!jar.isFile() || !archive.isFile()) {
+			fail("Missing " + (jar.isFile() ? archive : jar) + "; run ./build.sh first");
+		}
+		if (!new File(input).isFile()) {
+			fail("Missing input " + input);
+		}
+
+		long[][] firstOutput = new long[SETUPS.length][runs];
+		long[][] exit = new long[SETUPS.length][runs];
+
+		for (int run = -1; run < runs; run++) {
+			for (int setup = 0; setup < SETUPS.length; setup++) {
+				long[] times = time(command(setup, jar, archive), input);
+				if (run >= 0) {
+					firstOutput[setup][run] = times[0];
+					exit[setup][run] = times[1];
+				}
+			}
+		}
+
+		System.out.println("Startup of " + jar + " on " + input + ", " + runs + " runs per setup");
+		for (int setup = 0; setup < SETUPS.length; setup++) {
+			Arrays.sort(firstOutput[setup]);
+			Arrays.sort(exit[setup]);
+			System.out.println(String.format("%-8s first output ms min %s  median %s  max %s   exit ms median %s",
+					SETUPS[setup], millis(firstOutput[setup][0]), millis(firstOutput[setup][runs / 2]),
+					millis(firstOutput[setup][runs - 1]), millis(exit[setup][runs / 2])));
+		}
+
+		StringBuilder line = new StringBuilder("Speedup over " + SETUPS[0] + ", first output:");
+		for (int setup = 1; setup < SETUPS.length; setup++) {
+			line.append(String.format(Locale.ROOT, "  %s %.2fx", SETUPS[setup],
+					(double) firstOutput[0][runs / 2] / Math.max(1, firstOutput[setup][runs / 2])));
+		}
+		System.out.println(line);
+	}
+
+	/*--------------------------------------------------- command -----
+	 |  Method command
+	 |
+	 |  Purpose:  Builds the command line that starts the jar in one
+	 |      setup, with the java of the running JDK.
+	 |
+	 |  Parameters:
+	 |      setup (IN) -- the index of the setup in SETUPS.
+	 |      jar (IN) -- the jar to run.
+	 |      archive (IN) -- the AppCDS archive.
+	 |
+	 |  Returns:  The command.
+	 *-------------------------------------------------------------------*/
+	private static List<String> command(int setup, File jar, File archive) {
+
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+
+		if (setup == 0) {
+			command.add("-Xshare:off");
+		} else if (setup == 2) {
+			command.add("-Xshare:on");
+			command.add("-XX:SharedArchiveFile=" + archive.getPath());
+		}
+		command.add("-jar");
+		command.add(jar.getPath());
+		command.add("-columnsort");
+		return command;
+	}
+
+	/*--------------------------------------------------- time -----
+	 |  Method time
+	 |
+	 |  Purpose:  Starts one JVM, types the input file name at its prompt
+	 |      and times it.
+	 |
+	 |  Post-condition: If the JVM fails or never prints FIRST_OUTPUT, a
+	 |      message is printed and the program terminates.
+	 |
+	 |  Parameters:
+	 |      command (IN) -- the command line.
+	 |      input (IN) -- the input file name.
+	 |
+	 |  Returns:  { nanoseconds to first output, nanoseconds to exit }.
+	 *-------------------------------------------------------------------*/
+	private static long[] time(List<String> command, String input) {
+
+		long[] times = { -1, -1 };
+
+		try {
+			long start = System.nanoTime();
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+			try (OutputStream stdin = process.getOutputStream()) {
+				stdin.write((input + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+			}
+
+			BufferedReader stdout = new BufferedReader(
+					new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+			String line;
+			String first = null;
+			while ((line = stdout.readLine()) != null) {
+				if (times[0] < 0 && line.contains(FIRST_OUTPUT)) {
+					times[0] = System.nanoTime() - start;
+				} else if (first == null) {
+					first = line;
+				}
+			}
+
+			int status = process.waitFor();
+			times[1] = System.nanoTime() - start;
+
+			if (status != 0 || times[0] < 0) {
+				fail("Run failed (" + String.join(" ", command) + "): " + first);
+			}
+
+		} catch (IOException e) {
+			fail("Could not start java: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail("Interrupted");
+		}
+		return times;
+	}
+
+	/*--------------------------------------------------- millis -----
+	 |  Method millis
+	 |
+	 |  Returns:  The nanoseconds as milliseconds with one decimal.
+	 *-------------------------------------------------------------------*/
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+	}
+
+	/*--------------------------------------------------- option -----
+	 |  Method option
+	 |
+	 |  Returns:  The value of the option with the given prefix, or
+	 |      fallback if it was not given.
+	 *-------------------------------------------------------------------*/
+	private static String option(String[] args, String prefix, String fallback) {
+		String value = ColumnSortSelection.optionValue(args, prefix);
+		return value != null ? value : fallback;
+	}
+
+	/*--------------------------------------------------- fail -----
+	 |  Method fail
+	 |
+	 |  Purpose:  Prints a message and terminates the program.
+	 |
+	 |  Returns:  None; the program exits.
+	 *-------------------------------------------------------------------*/
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(0);
+	}
+
+}
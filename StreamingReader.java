@@ -0,0 +1,361 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection -stream
+ |                                  java ColumnSortSelection -binary
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Streaming ingestion for ColumnSortSelection. readFile has
+ |                  to read every value before calculateRowsCols can pick
+ |                  a shape, and only then does sorting begin. When n is
+ |                  known up front, this reader picks the shape first and
+ |                  fills the matrix one column at a time, handing each
+ |                  finished column to a worker thread that sorts it
+ |                  (step 1) while the next columns are still being parsed.
+ |
+ |        Input:  Either a text file whose first line is a header of the
+ |                  form "n = <count>" followed by <count> integers, or
+ |                  (with -binary) a file of raw 32-bit big-endian integers,
+ |                  as written by DataOutputStream.writeInt, in which case
+ |                  n is the file size divided by 4.
+ |
+ |       Output:  The filled matrix, with every column already sorted.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * --------------------------------------------------------- Class: StreamingReader
+ *
+ * Purpose: This class reads the number of values from the head of a file and,
+ * if it is there, builds the 2D array column by column while the columns that
+ * are already full get sorted in the background. It has the same sortCol,
+ * numItems, ROWS and COLS fields as readFile so main can use either one.
+ *
+ * The matrix is filled in Column-Major Order rather than row by row as
+ * build2DArray does; the column sort gives the same result for any starting
+ * arrangement, and filling by column is what lets a column be sorted as soon
+ * as its last value arrives.
+ *
+ * Fields: - Integer[][] sortCol: the 2D array being filled. - int numItems:
+ * the number of values, or -1 if the file has no header. - int ROWS: the
+ * number of rows. - int COLS: the number of columns. - long firstColumnTime:
+ * nanoseconds from the start of reading to the first sorted column.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+class StreamingReader {
+
+	final static String HEADER = "n"; // First token of a text header, as in "n = 4100"
+
+	Integer[][] sortCol; // 2D array used for sorting columns of integers
+
+	int numItems; // Total number of items, or -1 when not known up front
+	int ROWS; // Number of rows in the 2D array
+	int COLS; // Number of columns in the 2D array
+
+	long firstColumnTime; // Nanoseconds from the start of reading to the first sorted column
+	SortChecksum checksum = new SortChecksum(); // Checksum of the values read, to verify the sort
+
+	private long startTime; // When reading started
+	private boolean binary; // true for raw int32 input
+	private File file; // The input file
+
+	private BufferedReader text; // Text input, positioned after the header
+	private String[] tokens; // Tokens of the current text line
+	private int tokenAt; // Next token of the current text line
+
+	private DataInputStream data; // Binary input
+
+	/*--------------------------------------------------- StreamingReader -----
+	 |  Constructor StreamingReader
+	 |
+	 |  Purpose:  Opens the file and works out n from the header or the
+	 |      file size. If n is known, picks the shape with
+	 |      readFile.calculateRowsCols and allocates the 2D array; the
+	 |      values themselves are read by streamInto.
+	 |
+	 |  Pre-condition: The input file must exist and be accessible.
+	 |
+	 |  Post-condition: numItems is n, or -1 if a text file has no
+	 |      header; in that case the file is closed again.
+	 |
+	 |  Parameters:
+	 |      file (IN) -- the input file.
+	 |      binary (IN) -- true if the file holds raw 32-bit integers.
+	 |
+	 |  Throws: FileNotFoundException if the specified file does not
+	 |      exist or is not accessible.
+	 *-------------------------------------------------------------------*/
+	StreamingReader(File file, boolean binary) throws FileNotFoundException {
+
+		this.startTime = System.nanoTime();
+		this.binary = binary;
+		this.file = file;
+		this.numItems = -1;
+
+		if (binary) {
+
+			this.data = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+
+			long bytes = file.length();
+			if (bytes % 4 != 0 || bytes / 4 > Integer.MAX_VALUE) {
+				fail("File is not a list of 32-bit integers");
+			}
+			this.numItems = (int) (bytes / 4);
+
+		} else {
+
+			this.text = new BufferedReader(new FileReader(file), 1 << 16);
+			this.numItems = readHeader();
+		}
+
+		if (this.numItems == 0) {
+			fail("File Contains no Integer Values");
+		}
+
+		if (this.numItems > 0) {
+			int[] shape = readFile.calculateRowsCols(this.numItems);
+			this.ROWS = shape[0];
+			this.COLS = shape[1];
+			this.sortCol = new Integer[this.ROWS][this.COLS];
+		}
+	}
+
+	/*--------------------------------------------------- readHeader -----
+	 |  Method readHeader
+	 |
+	 |  Purpose:  Reads the first line of a text file and, if it is an
+	 |      "n = <count>" header, returns the count.
+	 |
+	 |  Pre-condition: The text reader is at the start of the file.
+	 |
+	 |  Post-condition: If there is no header the file is closed.
+	 |
+	 |  Returns: The count from the header, or -1 if there is none.
+	 *-------------------------------------------------------------------*/
+	private int readHeader() {
+
+		try {
+			String line = this.text.readLine();
+
+			if (line != null) {
+				String[] header = line.trim().split("\\s*=\\s*|\\s+");
+
+				if (header.length == 2 && header[0].equals(HEADER)) {
+					try {
+						return Integer.parseInt(header[1]);
+					} catch (NumberFormatException e) {
+						fail("File has an invalid header: " + line);
+					}
+				}
+			}
+			this.text.close();
+
+		} catch (IOException e) {
+			fail("Could not read the file: " + e.getMessage());
+		}
+		return -1;
+	}
+
+	/*--------------------------------------------------- streamInto -----
+	 |  Method streamInto
+	 |
+	 |  Purpose:  Reads the values into sortCol in Column-Major Order. Each
+	 |      time a column is full, it is handed to a pool of worker threads
+	 |      that sort it with ColumnSortSelection.sortColumn while this
+	 |      thread keeps parsing. One core is left to the parser.
+	 |
+	 |  Pre-condition: numItems is known and columnSort was built on
+	 |      sortCol.
+	 |
+	 |  Post-condition: Every column of sortCol, including any holding 
+	 |      virtual padding, is sorted (step 1 is
+	 |      done), firstColumnTime is set and the file is closed. If the
+	 |      file holds a non-integer, or a different number of values than
+	 |      its header says, a message is printed and the program exits.
+	 |
+	 |  Parameters:
+	 |      columnSort (IN) -- the sorter whose columns are being filled.
+	 |
+	 |  Returns: This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	void streamInto(ColumnSortSelection columnSort) {
+
+		SortMonitor.LoadEvent event = SortMonitor.beginPhase(new SortMonitor.LoadEvent());
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		ExecutorService sorters = Executors.newFixedThreadPool(threads);
+		AtomicLong firstColumn = new AtomicLong(-1);
+
+		int row = 0;
+		int col = 0;
+
+		for (int index = 0; index < this.numItems; index++) {
+
+			this.sortCol[row][col] = nextValue();
+			this.checksum.add(this.sortCol[row][col]);
+			row++;
+
+			// The column is full, so it can be sorted while the next one is read
+			if (row == this.ROWS) {
+				final int full = col;
+				sorters.execute(() -> {
+					columnSort.sortColumn(full);
+					firstColumn.compareAndSet(-1, System.nanoTime() - this.startTime);
+				});
+				row = 0;
+				col++;
+			}
+		}
+
+		if (hasMoreValues()) {
+			fail("File contains more than the " + this.numItems + " values its header says");
+		}
+		close();
+
+		// The columns holding virtual padding never fill up, so sort them now
+		for (; col < this.COLS; col++) {
+			final int padded = col;
+			sorters.execute(() -> columnSort.sortColumn(padded));
+		}
+
+		sorters.shutdown();
+		try {
+			sorters.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail("Interrupted while sorting columns");
+		}
+
+		this.firstColumnTime = firstColumn.get();
+
+		// Step 1 overlaps the read, so the load event covers both
+		SortMonitor.load(event, this.binary ? "binary" : "stream", this.file, this.numItems, this.ROWS, this.COLS);
+	}
+
+	/*--------------------------------------------------- nextValue -----
+	 |  Method nextValue
+	 |
+	 |  Purpose:  Reads the next integer from the file.
+	 |
+	 |  Pre-condition: The file is open.
+	 |
+	 |  Post-condition: If the file ends early or holds a non-integer, a
+	 |      message is printed and the program exits.
+	 |
+	 |  Returns: The next integer.
+	 *-------------------------------------------------------------------*/
+	private int nextValue() {
+
+		try {
+			if (this.binary) {
+				return this.data.readInt();
+			}
+
+			while (this.tokens == null || this.tokenAt == this.tokens.length) {
+				String line = this.text.readLine();
+				if (line == null) {
+					throw new EOFException();
+				}
+				line = line.trim();
+				this.tokens = line.isEmpty() ? null : line.split("\\s+");
+				this.tokenAt = 0;
+			}
+			return Integer.parseInt(this.tokens[this.tokenAt++]);
+
+		} catch (EOFException e) {
+			fail("File contains fewer than the " + this.numItems + " values its header says");
+		} catch (NumberFormatException e) {
+			fail("File Contains a non-Integer Value");
+		} catch (IOException e) {
+			fail("Could not read the file: " + e.getMessage());
+		}
+		return 0;
+	}
+
+	/*--------------------------------------------------- hasMoreValues -----
+	 |  Method hasMoreValues
+	 |
+	 |  Purpose:  Checks for values past the count given by the header.
+	 |
+	 |  Returns: true if the file holds anything other than whitespace
+	 |      after the last expected value.
+	 *-------------------------------------------------------------------*/
+	private boolean hasMoreValues() {
+
+		try {
+			if (this.binary) {
+				return this.data.read() != -1;
+			}
+
+			if (this.tokens != null && this.tokenAt < this.tokens.length) {
+				return true;
+			}
+			String line;
+			while ((line = this.text.readLine()) != null) {
+				if (!line.trim().isEmpty()) {
+					return true;
+				}
+			}
+
+		} catch (IOException e) {
+			fail("Could not read the file: " + e.getMessage());
+		}
+		return false;
+	}
+
+	/*--------------------------------------------------- close -----
+	 |  Method close
+	 |
+	 |  Purpose:  Closes the input file.
+	 |
+	 |  Returns: This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private void close() {
+		try {
+			if (this.binary) {
+				this.data.close();
+			} else {
+				this.text.close();
+			}
+		} catch (IOException e) {
+			// Everything has been read already, so there is nothing to recover
+		}
+	}
+
+	/*--------------------------------------------------- fail -----
+	 |  Method fail
+	 |
+	 |  Purpose:  Prints a message and terminates the program, the way
+	 |      readFile handles a bad input file.
+	 |
+	 |  Parameters:
+	 |      message (IN) -- the message to print.
+	 |
+	 |  Returns: This method does not return; the program exits.
+	 *-------------------------------------------------------------------*/
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(0);
+	}
+
+}
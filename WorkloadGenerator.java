@@ -0,0 +1,294 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac WorkloadGenerator.java
+ |                             Run: java WorkloadGenerator <distribution> <n>
+ |                                       <file> [-seed=<seed>] [-binary]
+ |                                       [-header] [-shared]
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  Generates reproducible input files for ColumnSortSelection.
+ |                  The same distribution, n and seed always give the same
+ |                  values, so a slow or failing run can be repeated exactly.
+ |
+ |        Input:  The distribution name, the number of values, the output
+ |                  file and optionally a seed (default 1).
+ |
+ |       Output:  A text file of one integer per line (with -header, led by
+ |                  an "n = <count>" line for -stream), or with -binary a
+ |                  file of raw 32-bit big-endian integers for -binary, or
+ |                  with -shared a shared input file for -shared=<file>
+ |                  (see SharedMemorySort).
+ |
+ |   Techniques:  Every value comes from a SplittableRandom seeded with the
+ |                  given seed. The distributions are:
+ |                    uniform  - any int, equally likely
+ |                    zipf     - ZIPF_VALUES distinct values, the k-th most
+ |                               common drawn with weight 1 / k^ZIPF_EXPONENT
+ |                    few      - FEW_VALUES distinct values, equally likely,
+ |                               like an ID feed with heavy duplicates
+ |                    sorted   - uniform values in ascending order
+ |                    reversed - uniform values in descending order
+ |                    sawtooth - ascending runs of about sqrt(n) values
+ |                    equal    - one value n times
+ |                    extremes - values within EXTREME_SPAN of
+ |                               Integer.MIN_VALUE or Integer.MAX_VALUE,
+ |                               including both limits themselves
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * --------------------------------------------------------- Class: WorkloadGenerator
+ *
+ * Purpose: Builds seeded workloads in memory (generate) and writes them in the
+ * text or binary input format (write). LoadTest uses the same methods for its
+ * size sweep.
+ *
+ * Author: Chance Krueger Date: 10/19/2026
+ * ---------------------------------------------------------
+ */
+public class WorkloadGenerator {
+
+	final static String[] DISTRIBUTIONS = { "uniform", "zipf", "few", "sorted", "reversed", "sawtooth", "equal",
+			"extremes" }; // Names accepted by generate
+
+	final static long DEFAULT_SEED = 1; // Seed when -seed is not given
+	final static int ZIPF_VALUES = 1 << 16; // Distinct values of the zipf distribution
+	final static double ZIPF_EXPONENT = 1.1; // Skew of the zipf distribution
+	final static int FEW_VALUES = 16; // Distinct values of the few distribution
+	final static int EXTREME_SPAN = 1000; // Distance from the int limits of the extremes distribution
+
+	/*--------------------------------------------------- generate -----
+	 |  Method generate
+	 |
+	 |  Purpose:  Builds n values of the named distribution.
+	 |
+	 |  Pre-condition: n >= 0.
+	 |
+	 |  Post-condition: If the distribution is unknown, a message is
+	 |      printed and the program terminates.
+	 |
+	 |  Parameters:
+	 |      distribution (IN) -- one of DISTRIBUTIONS.
+	 |      n (IN) -- the number of values.
+	 |      seed (IN) -- the random seed.
+	 |
+	 |  Returns:  The values, in file order.
+	 *-------------------------------------------------------------------*/
+	static int[] generate(String distribution, int n, long seed) {
+
+		SplittableRandom random = new SplittableRandom(seed);
+		int[] values = new int[n];
+
+		switch (distribution) {
+
+		case "uniform":
+			for (int index = 0; index < n; index++) {
+				values[index] = random.nextInt();
+			}
+			break;
+
+		case "zipf":
+			zipf(values, random);
+			break;
+
+		case "few":
+			int[] few = new int[FEW_VALUES];
+			for (int index = 0; index < FEW_VALUES; index++) {
+				few[index] = random.nextInt();
+			}
+			for (int index = 0; index < n; index++) {
+				values[index] = few[random.nextInt(FEW_VALUES)];
+			}
+			break;
+
+		case "sorted":
+		case "reversed":
+			for (int index = 0; index < n; index++) {
+				values[index] = random.nextInt();
+			}
+			Arrays.sort(values);
+			if (distribution.equals("reversed")) {
+				for (int low = 0, high = n - 1; low < high; low++, high--) {
+					int temp = values[low];
+					values[low] = values[high];
+					values[high] = temp;
+				}
+			}
+			break;
+
+		case "sawtooth":
+			int period = Math.max(2, (int) Math.sqrt(n));
+			int base = random.nextInt(Integer.MAX_VALUE - period);
+			for (int index = 0; index < n; index++) {
+				values[index] = base + index % period;
+			}
+			break;
+
+		case "equal":
+			Arrays.fill(values, random.nextInt());
+			break;
+
+		case "extremes":
+			for (int index = 0; index < n; index++) {
+				int offset = random.nextInt(EXTREME_SPAN);
+				values[index] = random.nextBoolean() ? Integer.MIN_VALUE + offset : Integer.MAX_VALUE - offset;
+			}
+			// Make sure both limits are there, whatever the seed
+			if (n > 0) {
+				values[random.nextInt(n)] = Integer.MIN_VALUE;
+				values[random.nextInt(n)] = Integer.MAX_VALUE;
+			}
+			break;
+
+		default:
+			System.out.println("Unknown distribution " + distribution + "; expected one of "
+					+ String.join(", ", DISTRIBUTIONS));
+			System.exit(0);
+		}
+		return values;
+	}
+
+	/*--------------------------------------------------- zipf -----
+	 |  Method zipf
+	 |
+	 |  Purpose:  Fills values with draws from a Zipf distribution over
+	 |      ZIPF_VALUES ranks. The ranks are mapped to values spread over
+	 |      the whole int range, so the most common values are not simply
+	 |      the smallest ones.
+	 |
+	 |  Parameters:
+	 |      values (OUT) -- the array to fill.
+	 |      random (IN) -- the seeded generator.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	private static void zipf(int[] values, SplittableRandom random) {
+
+		// Cumulative weights of the ranks, for inverse transform sampling
+		double[] cumulative = new double[ZIPF_VALUES];
+		double total = 0;
+		for (int rank = 0; rank < ZIPF_VALUES; rank++) {
+			total += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+			cumulative[rank] = total;
+		}
+
+		int[] rankValue = new int[ZIPF_VALUES];
+		for (int rank = 0; rank < ZIPF_VALUES; rank++) {
+			rankValue[rank] = (int) SortChecksum.mix(rank);
+		}
+
+		for (int index = 0; index < values.length; index++) {
+			int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+			rank = rank < 0 ? -rank - 1 : rank;
+			values[index] = rankValue[Math.min(rank, ZIPF_VALUES - 1)];
+		}
+	}
+
+	/*--------------------------------------------------- write -----
+	 |  Method write
+	 |
+	 |  Purpose:  Writes values in one of the program's input formats.
+	 |
+	 |  Parameters:
+	 |      values (IN) -- the values.
+	 |      file (IN) -- the file to write.
+	 |      binary (IN) -- true for raw 32-bit big-endian integers.
+	 |      header (IN) -- true to start a text file with "n = <count>".
+	 |
+	 |  Throws: IOException if the file cannot be written.
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	static void write(int[] values, File file, boolean binary, boolean header) throws IOException {
+
+		if (binary) {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+				for (int value : values) {
+					out.writeInt(value);
+				}
+			}
+			return;
+		}
+
+		try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16),
+				false)) {
+			if (header) {
+				out.println(StreamingReader.HEADER + " = " + values.length);
+			}
+			for (int value : values) {
+				out.println(value);
+			}
+			if (out.checkError()) {
+				throw new IOException("Could not write " + file);
+			}
+		}
+	}
+
+	/*--------------------------------------------------- main -----
+	 |  Method main
+	 |
+	 |  Purpose:  Generates one workload file from the command line.
+	 |
+	 |  Parameters:
+	 |      args (IN) -- <distribution> <n> <file> [-seed=<seed>]
+	 |          [-binary] [-header] [-shared]
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	public static void main(String[] args) {
+
+		String[] positional = Arrays.stream(args).filter(arg -> !arg.startsWith("-")).toArray(String[]::new);
+
+		if (positional.length != 3) {
+			System.out.println("Usage: java WorkloadGenerator <distribution> <n> <file> [-seed=<seed>] [-binary] "
+					+ "[-header] [-shared]\n  distributions: " + String.join(", ", DISTRIBUTIONS));
+			System.exit(0);
+		}
+
+		String seedValue = ColumnSortSelection.optionValue(args, "-seed=");
+		int[] values = null;
+		long seed = DEFAULT_SEED;
+
+		try {
+			seed = seedValue == null ? DEFAULT_SEED : Long.parseLong(seedValue);
+			values = generate(positional[0], Integer.parseInt(positional[1]), seed);
+		} catch (NumberFormatException e) {
+			System.out.println("n and the seed must be integers");
+			System.exit(0);
+		} catch (NegativeArraySizeException e) {
+			System.out.println("n must not be negative");
+			System.exit(0);
+		}
+
+		File file = new File(positional[2]);
+		try {
+			if (ColumnSortSelection.hasOption(args, "-shared")) {
+				SharedMemorySort.publish(values, file);
+			} else {
+				write(values, file, ColumnSortSelection.hasOption(args, "-binary"),
+						ColumnSortSelection.hasOption(args, "-header"));
+			}
+		} catch (IOException e) {
+			System.out.println("Could not write " + file + ": " + e.getMessage());
+			System.exit(0);
+		}
+
+		System.out.println("Wrote " + values.length + " " + positional[0] + " values (seed " + seed + ") to " + file);
+	}
+
+}
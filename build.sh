@@ -0,0 +1,48 @@
+#!/bin/sh
+#==============================================================================
+#       Author:  Chance Krueger chancekrueger@arizona.edu
+#     Language:  POSIX shell
+#          Run:  ./build.sh            build the jar and the CDS archive
+#                ./build.sh bench      ... then run StartupBenchmark
+#
+#  Description:  Builds build/columnsort.jar, a runnable jar of every class
+#                  (Main-Class ColumnSortSelection), and build/columnsort.jsa,
+#                  an AppCDS archive of the classes one sort of
+#                  TestCase1.txt loads. Starting the jar with
+#                    java -XX:SharedArchiveFile=build/columnsort.jsa
+#                         -jar build/columnsort.jar
+#                  maps those classes in already parsed and verified instead
+#                  of loading them from the jar, which is most of the wall
+#                  time of a small sort.
+#
+#   Techniques:  The archive is a dynamic one (-XX:ArchiveClassesAtExit,
+#                  JDK 13+), written at the end of a training run on top of
+#                  the JDK's own base archive, so no class list has to be
+#                  kept up to date by hand. The JVM only uses it with the
+#                  exact jar it was made from, so both are rebuilt together.
+#==============================================================================
+
+set -e
+
+cd "$(dirname "$0")"
+
+BUILD=build
+JAR=$BUILD/columnsort.jar
+ARCHIVE=$BUILD/columnsort.jsa
+TRAINING=TestCase1.txt
+
+rm -rf "$BUILD"
+mkdir -p "$BUILD/classes"
+
+echo "Compiling"
+javac -encoding UTF-8 -d "$BUILD/classes" *.java
+
+echo "Packaging $JAR"
+jar --create --file "$JAR" --main-class ColumnSortSelection -C "$BUILD/classes" .
+
+echo "Archiving the classes loaded by a sort of $TRAINING into $ARCHIVE"
+echo "$TRAINING" | java -XX:ArchiveClassesAtExit="$ARCHIVE" -jar "$JAR" -columnsort > /dev/null
+
+if [ "$1" = "bench" ]; then
+	java -cp "$JAR" StartupBenchmark -jar="$JAR" -archive="$ARCHIVE" -input="$TRAINING"
+fi
@@ -0,0 +1,508 @@
+/*=============================================================================
+ |       Author:  Chance Krueger chancekrueger@arizona.edu
+ |     Language:  Java
+ |     Packages:  No packages.
+ |  Compile/Run:  JDK:     Compile: javac ColumnSortSelection.java
+ |                             Run: java ColumnSortSelection
+ |
+ +-----------------------------------------------------------------------------
+ |
+ |  Description:  The loader of ColumnSortSelection: prompts for the input
+ |                  file, reads its integers and arranges them into the
+ |                  r x s matrix the column sort works on. Its shape helpers
+ |                  (calculateRowsCols, paddedRows, fittingShape) and the
+ |                  prompt are shared by the other engines, so they all
+ |                  pick shapes and ask for files the same way.
+ |
+ |        Input:  One integer per line (any whitespace separates values).
+ |
+ |       Output:  The filled matrix, n, r and s, and the statistics used to
+ |                  pick the sorting engine.
+ |
+ |   Known Bugs:  None; the program operates correctly.
+ |
+ *===========================================================================*/
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ * --------------------------------------------------------- Class: readFile
+ *
+ * Purpose: This class is responsible for reading integer data from a specified
+ * file and processing that data to create a 2D array suitable for sorting
+ * operations. It handles user input for the filename, reads the file content,
+ * and manages the conversion of read values into an array format.
+ *
+ * The class includes methods for: - Reading integer values from a file while
+ * handling non-integer values gracefully. - Calculating the number of rows and
+ * columns for the 2D array based on the number of integers read. - Building a
+ * 2D array from a list of integers.
+ *
+ * Fields: - int numItems: The total number of integers read from the file. -
+ * int ROWS: The number of rows determined for the 2D array. - int COLS: The
+ * number of columns determined for the 2D array. - Integer[][] sortCol: A 2D
+ * array to store sorted integer values. - int min, max, distinct: statistics
+ * gathered while reading, used to pick the sorting engine.
+ *
+ * Author: Chance Krueger Date: 10/26/2024
+ * ---------------------------------------------------------
+ */
+class readFile {
+
+	final static int DISTINCT_LIMIT = 1 << 16; // Distinct values counted exactly before giving up
+	final static int EMPTY = Integer.MIN_VALUE; // Marks an unused slot of the distinct table
+
+	Integer[][] sortCol; // 2D array used for sorting columns of integers
+
+	int numItems; // Total number of items processed or read
+	int ROWS; // Number of rows in the 2D array
+	int COLS; // Number of columns in the 2D array
+
+	int min = Integer.MAX_VALUE; // Smallest value read
+	int max = Integer.MIN_VALUE; // Largest value read
+	int distinct; // Number of distinct values read, or -1 if more than DISTINCT_LIMIT
+	SortChecksum checksum = new SortChecksum(); // Checksum of the values read, to verify the sort
+
+	private int[] seen; // Open addressing hash table of the distinct values read
+	private boolean seenEmpty; // true if the EMPTY marker value itself has been read
+
+	/*--------------------------------------------------- readFile -----
+	 |  Constructor readFile
+	 |
+	 |  Purpose:  This constructor prompts the user to enter a file name 
+	 |      and attempts to read integers from the specified file. It 
+	 |      initializes instance variables for the number of items, 
+	 |      rows, and columns. After reading the integers, it calculates 
+	 |      the appropriate number of rows and columns and builds a 2D 
+	 |      array to store the data.
+	 |
+	 |  Pre-condition: The input file must exist and be accessible 
+	 |      for reading; otherwise, a FileNotFoundException will be thrown.
+	 |
+	 |  Post-condition: The instance variables `numItems`, `ROWS`, and 
+	 |      `COLS` are initialized, and a 2D array is constructed based 
+	 |      on the integers read from the file.
+	 |
+	 |  Parameters: 
+	 |      None
+	 |
+	 |  Throws: FileNotFoundException if the specified file does not 
+	 |      exist or is not accessible.
+	 *-------------------------------------------------------------------*/
+	public readFile() throws FileNotFoundException {
+		this(new File(promptFileName()));
+	}
+
+	/*--------------------------------------------------- readFile -----
+	 |  Constructor readFile
+	 |
+	 |  Purpose:  Reads the integers of an already chosen file and builds 
+	 |      the 2D array, without prompting. The streaming loader uses 
+	 |      this when the file has no header giving n up front.
+	 |
+	 |  Pre-condition: The input file must exist and be accessible 
+	 |      for reading.
+	 |
+	 |  Post-condition: Same as readFile().
+	 |
+	 |  Parameters: 
+	 |      file (IN) -- the input file.
+	 |
+	 |  Throws: FileNotFoundException if the specified file does not 
+	 |      exist or is not accessible.
+	 *-------------------------------------------------------------------*/
+	readFile(File file) throws FileNotFoundException {
+
+		this.numItems = 0;
+		this.ROWS = 0;
+		this.COLS = 0;
+		this.distinct = 0;
+		this.seen = new int[DISTINCT_LIMIT * 2];
+		Arrays.fill(this.seen, EMPTY);
+
+		SortMonitor.LoadEvent event = SortMonitor.beginPhase(new SortMonitor.LoadEvent());
+
+		ArrayList<Integer> build2D = readAndBuild(file);
+
+		this.seen = null; // Only needed while reading
+
+		calculateRowsCols();
+
+		build2DArray(build2D);
+
+		SortMonitor.load(event, "text", file, this.numItems, this.ROWS, this.COLS);
+
+	}
+
+	/*--------------------------------------------------- promptFileName -----
+	 |  Method promptFileName 
+	 |
+	 |  Purpose:  Prompts the user for the name of the input file and 
+	 |      reads it from the console. Every loader goes through this 
+	 |      method so the prompt is the same whichever one is used.
+	 |
+	 |  Pre-condition: None.
+	 |
+	 |  Post-condition: The console Scanner is closed; the prompt can 
+	 |      only be shown once per run.
+	 |
+	 |  Parameters: 
+	 |      None
+	 |
+	 |  Returns: The file name typed by the user.
+	 *-------------------------------------------------------------------*/
+	static String promptFileName() {
+
+		System.out.print("Enter File Name: ");
+
+		Scanner scanner = new Scanner(System.in);
+
+		String fileName = scanner.nextLine();
+
+		scanner.close();
+
+		return fileName;
+	}
+
+	/*--------------------------------------------------- calculateRowsCols -----
+	 |  Method calculateRowsCols 
+	 |
+	 |  Purpose:  This method calculates the number of rows and columns 
+	 |      for a 2D array based on the total number of items. It 
+	 |      attempts to find a suitable configuration that maximizes 
+	 |      the number of columns while ensuring that all of the items 
+	 |      fit into the calculated rows and columns.
+	 |
+	 |  Pre-condition: The `numItems` variable must be a positive integer 
+	 |      representing the total number of items to be organized into 
+	 |      rows and columns.
+	 |
+	 |  Post-condition: The calculated values for `ROWS` and `COLS` are 
+	 |      stored in the corresponding instance variables, allowing 
+	 |      for subsequent operations on the 2D array structure.
+	 |
+	 |  Parameters: 
+	 |      None
+	 |
+	 |  Returns:  This method does not return a value; it updates 
+	 |      instance variables `ROWS` and `COLS` directly.
+	 *-------------------------------------------------------------------*/
+	private void calculateRowsCols() {
+
+		int[] shape = calculateRowsCols(this.numItems);
+
+		this.ROWS = shape[0];
+		this.COLS = shape[1];
+	}
+
+	/*--------------------------------------------------- calculateRowsCols -----
+	 |  Method calculateRowsCols 
+	 |
+	 |  Purpose:  Does the work of calculateRowsCols() for a given 
+	 |      number of items, so loaders that know n before reading the 
+	 |      values can pick the shape up front. It takes the largest s 
+	 |      for which paddedRows gives a valid r. s no longer has to 
+	 |      divide n: the r * s - n cells left over are virtual padding, 
+	 |      null cells that sort after every value, so they end up at 
+	 |      the tail and are never printed. Without padding a prime n 
+	 |      could only be sorted as one O(n^2) selection sorted column. 
+	 |      Since r >= 2(s - 1)^2 means n > 2(s - 1)^3, the search starts 
+	 |      just above the cube root of n / 2, and all of the arithmetic 
+	 |      is done in longs so large s cannot overflow.
+	 |
+	 |  Pre-condition: numItems is a positive integer.
+	 |
+	 |  Post-condition: None.
+	 |
+	 |  Parameters: 
+	 |      numItems (IN) -- the total number of items.
+	 |
+	 |  Returns:  A two element array { ROWS, COLS } with 
+	 |      ROWS * COLS >= numItems.
+	 *-------------------------------------------------------------------*/
+	static int[] calculateRowsCols(int numItems) {
+
+		for (long s = (long) Math.cbrt(numItems / 2.0) + 2; s >= 2; s--) {
+
+			long r = paddedRows(numItems, s);
+
+			if (r > 0) {
+				return new int[] { (int) r, (int) s };
+			}
+		}
+
+		// Handle special case when there are too few items for two columns
+		return new int[] { numItems, 1 };
+	}
+
+	/*--------------------------------------------------- paddedRows -----
+	 |  Method paddedRows 
+	 |
+	 |  Purpose:  Finds the number of rows for n items in s columns: the 
+	 |      smallest multiple of s (step 2 deals each column out over s 
+	 |      blocks of r / s rows) with r * s >= n, as long as it also meets 
+	 |      Leighton's condition r >= 2(s - 1)^2.
+	 |
+	 |  Parameters: 
+	 |      numItems (IN) -- the total number of items.
+	 |      s (IN) -- the number of columns, at least 1.
+	 |
+	 |  Returns:  r, or -1 if s columns are too many for n items or r 
+	 |      would not fit in an int.
+	 *-------------------------------------------------------------------*/
+	static long paddedRows(long numItems, long s) {
+
+		long perColumn = (numItems + s - 1) / s; // Items per column, rounded up
+		long r = (perColumn + s - 1) / s * s; // Rounded up to a multiple of s
+
+		if (r < 2 * (s - 1) * (s - 1) || r * s > Integer.MAX_VALUE - 8) {
+			return -1;
+		}
+		return r;
+	}
+
+	/*--------------------------------------------------- fittingShape -----
+	 |  Method fittingShape 
+	 |
+	 |  Purpose:  This method picks a shape for a block of values whose 
+	 |      size the caller may round down, such as a sample or a chunk of 
+	 |      a larger file. Unlike calculateRowsCols it does not need s to 
+	 |      divide the size exactly, so it never falls back to a single 
+	 |      column for a large block. s starts just above the cube root of 
+	 |      half the size (since size >= r * s >= 2s(s - 1)^2) and r is the 
+	 |      largest multiple of s that fits, as step 2 needs.
+	 |
+	 |  Pre-condition: size is a positive integer.
+	 |
+	 |  Post-condition: None.
+	 |
+	 |  Parameters: 
+	 |      size (IN) -- the most values the shape may hold.
+	 |
+	 |  Returns:  A two element array { ROWS, COLS } with 
+	 |      ROWS * COLS <= size, or { size, 1 } for very small sizes.
+	 *-------------------------------------------------------------------*/
+	static int[] fittingShape(int size) {
+
+		for (long s = (long) Math.cbrt(size / 2.0) + 1; s >= 2; s--) {
+
+			long r = size / s / s * s; // Largest multiple of s with r * s <= size
+
+			if (r > 0 && r >= 2 * (s - 1) * (s - 1)) {
+				return new int[] { (int) r, (int) s };
+			}
+		}
+		return new int[] { size, 1 };
+	}
+
+	/*--------------------------------------------------- build2DArray -----
+	 |  Method build2DArray 
+	 |
+	 |  Purpose:  This method constructs a 2D array from a given 
+	 |      ArrayList of integers. It populates the array with values 
+	 |      from the ArrayList in a row-wise manner, and leaves any 
+	 |      remaining spaces in the array null (virtual padding, see 
+	 |      calculateRowsCols) when the ArrayList does not contain 
+	 |      enough elements. A real Integer.MAX_VALUE could not be told 
+	 |      apart from the old MAX_VALUE filler.
+	 |
+	 |  Pre-condition: The `build2D` ArrayList must be initialized 
+	 |      and may contain zero or more integer values. The 
+	 |      `ROWS` and `COLS` instance variables must be set prior 
+	 |      to calling this method.
+	 |
+	 |  Post-condition: The `sortCol` 2D array is populated with 
+	 |      integers from the `build2D` ArrayList, with null padding 
+	 |      where necessary.
+	 |
+	 |  Parameters: 
+	 |      build2D (IN) -- an ArrayList of integers used to 
+	 |      populate the 2D array.
+	 |
+	 |  Returns:  This method does not return a value; it updates 
+	 |      the instance variable `sortCol` directly.
+	 *-------------------------------------------------------------------*/
+	private void build2DArray(ArrayList<Integer> build2D) {
+
+		this.sortCol = new Integer[this.ROWS][this.COLS];
+
+		int curIndex = 0;
+
+		// Fill the 2D array row-by-row
+		for (int row = 0; row < this.ROWS; row++) {
+			for (int col = 0; col < this.COLS; col++) {
+
+				// Cells past the last value are virtual padding and stay null
+				if (curIndex > build2D.size() - 1) {
+					this.sortCol[row][col] = null;
+				} else {
+					this.sortCol[row][col] = build2D.get(curIndex); // Fill with ArrayList value
+				}
+				curIndex++;
+			}
+		}
+	}
+
+	/*--------------------------------------------------- reshape -----
+	 |  Method reshape
+	 |
+	 |  Purpose:  Rebuilds sortCol with a different shape, keeping the 
+	 |      values in the row-by-row order build2DArray put them in. Used 
+	 |      when AutoTuner picks a shape other than calculateRowsCols. The 
+	 |      padding is rebuilt for the new shape.
+	 |
+	 |  Pre-condition: rows * cols >= numItems.
+	 |
+	 |  Post-condition: sortCol is rows x cols and ROWS and COLS match.
+	 |
+	 |  Parameters:
+	 |      rows (IN) -- the new number of rows
+	 |      cols (IN) -- the new number of columns
+	 |
+	 |  Returns:  None.
+	 *-------------------------------------------------------------------*/
+	void reshape(int rows, int cols) {
+
+		if (rows == this.ROWS && cols == this.COLS) {
+			return;
+		}
+
+		Integer[][] reshaped = new Integer[rows][cols];
+
+		int index = 0;
+		for (int row = 0; row < this.ROWS; row++) {
+			for (int col = 0; col < this.COLS; col++) {
+				if (this.sortCol[row][col] != null) {
+					reshaped[index / cols][index % cols] = this.sortCol[row][col];
+					index++;
+				}
+			}
+		}
+
+		this.sortCol = reshaped;
+		this.ROWS = rows;
+		this.COLS = cols;
+	}
+
+	/*--------------------------------------------------- readAndBuild -----
+	 |  Method readAndBuild 
+	 |
+	 |  Purpose:  This method reads integers from a specified file and 
+	 |      constructs an ArrayList containing these integers. It also 
+	 |      keeps track of the total number of integers read. If a 
+	 |      non-integer value is encountered in the file, or none at all, 
+	 |      the method prints an error message and terminates the program.
+	 |
+	 |  Pre-condition: The `file` parameter must refer to a valid file 
+	 |      that exists and is accessible for reading.
+	 |
+	 |  Post-condition: An ArrayList containing all valid integers read 
+	 |      from the file is returned. The instance variable `numItems` 
+	 |      is incremented for each integer read, and `min`, `max` and 
+	 |      `distinct` describe the values read.
+	 |
+	 |  Parameters: 
+	 |      file (IN) -- a File object representing the input file 
+	 |      from which integers will be read.
+	 |
+	 |  Returns: An ArrayList of Integer objects constructed from 
+	 |      the values read from the file.
+	 *-------------------------------------------------------------------*/
+	private ArrayList<Integer> readAndBuild(File file) throws FileNotFoundException {
+
+		ArrayList<Integer> buildArrayStart = new ArrayList<Integer>();
+
+		Scanner scanner = new Scanner(file);
+
+		// Reads each item in the file
+		while (scanner.hasNext()) {
+			String curNum = scanner.next();
+			this.numItems++;
+
+			try {
+				Integer newNum = Integer.parseInt(curNum); // Parse string to integer
+				buildArrayStart.add(newNum);
+
+				// Keep the statistics used to pick the sorting engine
+				this.min = Math.min(this.min, newNum);
+				this.max = Math.max(this.max, newNum);
+				countDistinct(newNum);
+				this.checksum.add(newNum);
+
+			} catch (NumberFormatException e) {
+				// Handle non-integer values
+				System.out.println("File Contains a non-Integer Value");
+				System.exit(0); // Terminate program if a non-integer is found
+			}
+
+		}
+
+		scanner.close();
+
+		if (this.numItems == 0) {
+			// Nothing to sort, and min and max were never set
+			System.out.println("File Contains no Integer Values");
+			System.exit(0);
+		}
+
+		return buildArrayStart;
+	}
+
+	/*--------------------------------------------------- countDistinct -----
+	 |  Method countDistinct 
+	 |
+	 |  Purpose:  This method counts a value towards the number of 
+	 |      distinct values read. The values seen so far are kept in an 
+	 |      open addressing hash table of primitive ints; once more than 
+	 |      DISTINCT_LIMIT distinct values have been seen the count is 
+	 |      given up, since the input is then clearly not low-cardinality.
+	 |
+	 |  Pre-condition: `seen` is allocated and filled with EMPTY.
+	 |
+	 |  Post-condition: `distinct` is the number of distinct values 
+	 |      counted, or -1 if there are more than DISTINCT_LIMIT.
+	 |
+	 |  Parameters: 
+	 |      value (IN) -- the value just read.
+	 |
+	 |  Returns:  This method does not return a value.
+	 *-------------------------------------------------------------------*/
+	private void countDistinct(int value) {
+
+		if (this.distinct < 0) {
+			return;
+		}
+
+		if (value == EMPTY) {
+
+			// The marker value itself cannot be stored in the table
+			if (!this.seenEmpty) {
+				this.seenEmpty = true;
+				this.distinct++;
+			}
+
+		} else {
+
+			int mask = this.seen.length - 1;
+			int slot = (value * 0x9E3779B9) >>> 15 & mask; // Spread clustered values over the table
+
+			while (this.seen[slot] != EMPTY) {
+				if (this.seen[slot] == value) {
+					return; // Already counted
+				}
+				slot = (slot + 1) & mask;
+			}
+			this.seen[slot] = value;
+			this.distinct++;
+		}
+
+		if (this.distinct > DISTINCT_LIMIT) {
+			this.distinct = -1;
+		}
+	}
+
+}